@@ -4,19 +4,78 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class BazaDAO {
 
-    /** Buduje ścieżkę do pliku w katalogu resources/DB. */
+    // Fragmenty mniejsze niż 1 MB nie rekompensują kosztu przekazania zadania do puli.
+    private static final long MIN_ROZMIAR_FRAGMENTU = 1024L * 1024L;
+    private static final int FRAGMENTY_NA_WATEK = 4;
+
+    private static ForkJoinPool pulaParsowania;
+
+    // Nazwa parsera -> klasa DAO, która go zarejestrowała.
+    private static final Map<String, Class<?>> PARSERY = new ConcurrentHashMap<>();
+
+    /**
+     * Parser tabeli z nazwą, pod którą PamiecTabel trzyma jego rekordy (wpis = ścieżka pliku + nazwa parsera).
+     * Tworzony przez zarejestrujParser.
+     */
+    static final class ParserTabeli<T> {
+        final String nazwa;
+        final Function<LiniaCsv, T> funkcja;
+
+        private ParserTabeli(String nazwa, Function<LiniaCsv, T> funkcja) {
+            this.nazwa = nazwa;
+            this.funkcja = funkcja;
+        }
+    }
+
+    /**
+     * Rejestruje parser pod nazwą unikalną w całej bazie. Ta sama nazwa może być rejestrowana wielokrotnie
+     * (każda instancja DAO robi to w polu), ale tylko przez jedną klasę DAO.
+     */
+    <T> ParserTabeli<T> zarejestrujParser(String nazwa, Function<LiniaCsv, T> funkcja) {
+        Class<?> wlasciciel = PARSERY.putIfAbsent(nazwa, getClass());
+        if (wlasciciel != null && wlasciciel != getClass()) {
+            throw new IllegalStateException("Parser '" + nazwa + "' jest już zarejestrowany przez "
+                    + wlasciciel.getSimpleName());
+        }
+        return new ParserTabeli<>(nazwa, funkcja);
+    }
+
+    /** Buduje ścieżkę do pliku w katalogu bazy (domyślnie resources/DB, zob. KonfiguracjaBazy.getKatalogBazy). */
     protected String sciezkaDoPliku(String nazwaPliku) {
-        return "src/main/resources/DB/" + nazwaPliku;
+        return KonfiguracjaBazy.getKatalogBazy() + "/" + nazwaPliku;
     }
 
     /** Wczytuje wszystkie linie z pliku. Gdy plik nie istnieje, zwraca pustą listę. */
@@ -39,17 +98,570 @@ public abstract class BazaDAO {
         return linie;
     }
 
-    /** Zapisuje linie do pliku (nadpisuje). */
+    /**
+     * Wczytuje rekordy z pliku CSV (z pominięciem nagłówka i pustych linii).
+     * Parser dostaje wycinek bajtów linii; zwrócenie null oznacza pominięcie rekordu.
+     * Duże pliki są dzielone na fragmenty parsowane równolegle - wynik zachowuje kolejność z pliku,
+     * więc parser musi być bezstanowy (może być wywoływany z wielu wątków naraz).
+     */
+    <T> List<T> wczytajRekordy(String sciezka, Function<LiniaCsv, T> parser) {
+        List<T> rekordy = new ArrayList<>();
+
+        try (FileChannel kanal = FileChannel.open(Path.of(sciezka), StandardOpenOption.READ)) {
+            long rozmiar = kanal.size();
+            if (rozmiar == 0) {
+                return rekordy;
+            }
+
+            if (czyParsowacRownolegle(rozmiar)) {
+                MappedByteBuffer mapa = kanal.map(FileChannel.MapMode.READ_ONLY, 0, rozmiar);
+                return parsujRownolegle(mapa, (int) rozmiar, parser);
+            }
+
+            przegladajKanal(kanal, rozmiar, linia -> {
+                T rekord = parser.apply(linia);
+                if (rekord != null) {
+                    rekordy.add(rekord);
+                }
+            });
+        } catch (NoSuchFileException e) {
+            // brak pliku = brak danych
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return rekordy;
+    }
+
+    /**
+     * Zwraca leniwy strumień rekordów - linie są czytane i parsowane dopiero przy pobieraniu kolejnych elementów,
+     * więc w pamięci jest tylko bieżący fragment pliku. Plik pozostaje otwarty do zamknięcia strumienia
+     * (try-with-resources). Parser zwracający null pomija rekord.
+     */
+    <T> Stream<T> strumienRekordow(String sciezka, Function<LiniaCsv, T> parser) {
+        FileChannel kanal;
+        try {
+            kanal = FileChannel.open(Path.of(sciezka), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            return Stream.empty();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return Stream.empty();
+        }
+
+        CzytnikLinii czytnik = new CzytnikLinii(kanal);
+        Spliterator<T> rekordy = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> akcja) {
+                try {
+                    LiniaCsv linia;
+                    while ((linia = czytnik.nastepna()) != null) {
+                        T rekord = parser.apply(linia);
+                        if (rekord != null) {
+                            akcja.accept(rekord);
+                            return true;
+                        }
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                return false;
+            }
+        };
+
+        return StreamSupport.stream(rekordy, false).onClose(() -> {
+            try {
+                kanal.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Jak wczytajRekordy, ale z pamięci podręcznej (PamiecTabel), dopóki plik się nie zmienił.
+     * Wpis w pamięci to para (plik, nazwa parsera): wszystkie odczyty i wyszukiwania jednej tabeli tym samym
+     * zarejestrowanym parserem korzystają z jednego wpisu, a różne parsery tego samego pliku mają osobne wpisy.
+     * Rekordy modelu są mutowalne, więc wywołujący zawsze dostaje kopie utworzone funkcją kopia.
+     */
+    <T> List<T> wczytajRekordy(String sciezka, ParserTabeli<T> parser, UnaryOperator<T> kopia) {
+        if (!KonfiguracjaBazy.isPamiecTabel()) {
+            return wczytajRekordy(sciezka, parser.funkcja);
+        }
+
+        List<T> zapamietane = PamiecTabel.pobierz(sciezka, parser, () -> wczytajRekordy(sciezka, parser.funkcja));
+
+        List<T> kopie = new ArrayList<>(zapamietane.size());
+        for (T rekord : zapamietane) {
+            kopie.add(kopia.apply(rekord));
+        }
+        return kopie;
+    }
+
+    /**
+     * Wyszukuje rekord po kluczu głównym. Z włączoną pamięcią tabel korzysta z indeksu (HashMap) budowanego raz
+     * po wczytaniu pliku i uzupełnianego przy dopisywaniu, więc kolejne wyszukiwania nie czytają pliku.
+     */
+    <T> T znajdzRekord(String sciezka, ParserTabeli<T> parser, UnaryOperator<T> kopia,
+                       Function<T, ?> klucz, Object wartosc) {
+        if (!KonfiguracjaBazy.isPamiecTabel()) {
+            return wczytajRekordy(sciezka, parser.funkcja).stream()
+                    .filter(r -> wartosc.equals(klucz.apply(r)))
+                    .findFirst()
+                    .orElse(null);
+        }
+
+        T rekord = PamiecTabel.znajdz(sciezka, parser, () -> wczytajRekordy(sciezka, parser.funkcja), klucz, wartosc);
+        return rekord == null ? null : kopia.apply(rekord);
+    }
+
+    /**
+     * Wyszukuje rekord po ID. Gdy tabela jest już w pamięci, używa indeksu PamiecTabel; w przeciwnym razie
+     * (np. zaraz po starcie procesu) czyta tylko jeden wiersz przez indeks pozycji na dysku (IndeksPozycji),
+     * zamiast wczytywać cały plik.
+     */
+    <T> T znajdzRekordPoId(String sciezka, ParserTabeli<T> parser, UnaryOperator<T> kopia,
+                           Function<T, ?> klucz, long id) {
+        if (KonfiguracjaBazy.isPamiecTabel() && PamiecTabel.czyAktualny(sciezka, parser)) {
+            return znajdzRekord(sciezka, parser, kopia, klucz, id);
+        }
+
+        try {
+            ByteBuffer wiersz = IndeksPozycji.czytajWiersz(Path.of(sciezka), id);
+            if (wiersz == null) {
+                return null;
+            }
+            LiniaCsv linia = new LiniaCsv();
+            linia.ustaw(wiersz, 0, wiersz.limit(), 0); // numer linii nie jest znany bez czytania pliku
+            return parser.funkcja.apply(linia);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return znajdzRekord(sciezka, parser, kopia, klucz, id);
+        }
+    }
+
+    /**
+     * Przekazuje kolejne linie danych (bez nagłówka i pustych linii) do konsumenta.
+     * Tryb odczytu (strumień / mapowanie pliku) wybierany jest wg KonfiguracjaBazy.
+     */
+    void przegladajLinie(String sciezka, Consumer<LiniaCsv> konsument) {
+        try (FileChannel kanal = FileChannel.open(Path.of(sciezka), StandardOpenOption.READ)) {
+            long rozmiar = kanal.size();
+            if (rozmiar > 0) {
+                przegladajKanal(kanal, rozmiar, konsument);
+            }
+        } catch (NoSuchFileException e) {
+            // brak pliku = brak danych
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void przegladajKanal(FileChannel kanal, long rozmiar, Consumer<LiniaCsv> konsument) throws IOException {
+        if (czyMapowac(rozmiar)) {
+            MappedByteBuffer mapa = kanal.map(FileChannel.MapMode.READ_ONLY, 0, rozmiar);
+            przegladajBufor(mapa, 0, (int) rozmiar, 1, konsument);
+        } else {
+            przegladajStrumien(kanal, konsument);
+        }
+    }
+
+    /**
+     * Zapisuje linie do pliku (nadpisuje).
+     * Dane trafiają najpierw do pliku tymczasowego w tym samym katalogu, który następnie atomowo
+     * zastępuje plik docelowy - przerwany zapis nie zostawia obciętego pliku.
+     */
     protected void zapiszLinie(String sciezka, List<String> linie) {
-        try (BufferedWriter writer = new BufferedWriter(
-                new OutputStreamWriter(new FileOutputStream(sciezka), StandardCharsets.UTF_8))) {
+        Path plik = Path.of(sciezka).toAbsolutePath();
+        Path katalog = plik.getParent();
+
+        synchronized (KoordynatorZapisu.dla(plik).blokada()) {
+            Path tymczasowy = null;
+            try {
+                Files.createDirectories(katalog);
+                tymczasowy = utworzPlikTymczasowy(plik);
 
-            for (String linia : linie) {
-                writer.write(linia);
-                writer.newLine();
+                try (FileChannel kanal = FileChannel.open(tymczasowy, StandardOpenOption.WRITE);
+                     BufferedWriter writer = new BufferedWriter(
+                             new OutputStreamWriter(Channels.newOutputStream(kanal), StandardCharsets.UTF_8))) {
+
+                    for (String linia : linie) {
+                        writer.write(linia);
+                        writer.newLine();
+                    }
+                    writer.flush();
+
+                    if (KonfiguracjaBazy.getTrybSynchronizacji() != TrybSynchronizacji.BRAK) {
+                        kanal.force(false);
+                    }
+                }
+
+                podmienPlik(tymczasowy, plik);
+                PamiecTabel.uniewaznij(sciezka);
+                IndeksPozycji.usun(plik);
+                tymczasowy = null;
+            } catch (IOException e) {
+                e.printStackTrace();
+            } finally {
+                if (tymczasowy != null) {
+                    usunPlik(tymczasowy.toString());
+                }
             }
+        }
+    }
+
+    /**
+     * Dopisuje linię na końcu pliku. Gdy plik nie istnieje lub jest pusty, najpierw zapisuje nagłówek.
+     * Jeśli ostatnia linia pliku nie kończy się znakiem nowej linii, dopisuje go przed nowym wierszem.
+     */
+    protected void dopiszLinie(String sciezka, String naglowek, String linia) {
+        dopiszLinie(sciezka, naglowek, linia, null);
+    }
+
+    /** Jak dopiszLinie, ale dodatkowo uzupełnia indeks pozycji pliku (IndeksPozycji) o wiersz z podanym ID. */
+    protected void dopiszWiersz(String sciezka, String naglowek, String linia, long id) {
+        dopiszLinie(sciezka, naglowek, linia, (rozmiarPrzed, przesuniecie, dlugosc) ->
+                IndeksPozycji.dopisano(Path.of(sciezka), rozmiarPrzed, id, przesuniecie, dlugosc));
+    }
+
+    /** Wywoływane pod blokadą pliku po dopisaniu linii: rozmiar pliku przed zapisem oraz pozycja i długość linii w bajtach. */
+    @FunctionalInterface
+    private interface PoDopisaniu {
+        void wykonaj(long rozmiarPrzed, long przesuniecie, int dlugosc);
+    }
+
+    private void dopiszLinie(String sciezka, String naglowek, String linia, PoDopisaniu poDopisaniu) {
+        Path plik = Path.of(sciezka);
+
+        try {
+            KoordynatorZapisu.dla(plik).zapisz(() -> {
+                PamiecTabel.Stempel przedZapisem = PamiecTabel.Stempel.odczytaj(sciezka);
+                try (FileChannel kanal = FileChannel.open(plik,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+
+                    StringBuilder sb = new StringBuilder();
+                    long rozmiar = kanal.size();
+                    if (rozmiar == 0) {
+                        sb.append(naglowek).append(System.lineSeparator());
+                    } else if (!czyKonczySieNowaLinia(plik, rozmiar)) {
+                        sb.append(System.lineSeparator());
+                    }
+                    long przesuniecie = rozmiar + sb.toString().getBytes(StandardCharsets.UTF_8).length;
+                    byte[] bajtyLinii = linia.getBytes(StandardCharsets.UTF_8);
+                    sb.append(linia).append(System.lineSeparator());
+
+                    ByteBuffer dane = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                    while (dane.hasRemaining()) {
+                        kanal.write(dane);
+                    }
+
+                    if (poDopisaniu != null) {
+                        poDopisaniu.wykonaj(rozmiar, przesuniecie, bajtyLinii.length);
+                    }
+                }
+                PamiecTabel.dopisano(sciezka, przedZapisem, linia);
+            });
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Nadpisuje w miejscu pole (numer od 0) wiersza o podanym ID, bez przepisywania pliku - wiersz jest wskazywany
+     * przez IndeksPozycji. Zwraca false, gdy wiersza nie ma albo wartość nie mieści się w szerokości pola
+     * (wtedy wywołujący powinien zapisać zmianę zwykłą ścieżką).
+     */
+    protected boolean nadpiszPole(String sciezka, long id, int numerPola, String wartosc) {
+        Path plik = Path.of(sciezka);
+        boolean[] nadpisane = new boolean[1];
+
+        try {
+            KoordynatorZapisu.dla(plik).zapisz(() -> {
+                nadpisane[0] = IndeksPozycji.nadpiszPole(plik, id, numerPola, wartosc);
+                if (nadpisane[0]) {
+                    // Rozmiar pliku się nie zmienia, a czas modyfikacji może - więc wpis trzeba unieważnić jawnie.
+                    PamiecTabel.uniewaznij(sciezka);
+                }
+            });
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return nadpisane[0];
+    }
+
+    /**
+     * Nakłada partię zmian na plik jednym nadpisaniem: linie o kluczach z mapy są podmieniane (wartość null = usunięcie),
+     * a klucze nieobecne w pliku dopisywane na końcu. Pozostałe linie są przepisywane bez zmian.
+     * Przy powtórzonym kluczu zmieniana jest tylko pierwsza linia.
+     */
+    protected void zapiszZmiany(String sciezka, String naglowek, Map<String, String> zmiany, int poleKlucza) {
+        List<String> linie = wczytajLinie(sciezka);
+        Map<String, String> pozostale = new LinkedHashMap<>(zmiany);
+
+        List<String> wynik = new ArrayList<>(linie.size() + zmiany.size());
+        wynik.add(linie.isEmpty() ? naglowek : linie.get(0));
+
+        for (int i = 1; i < linie.size(); i++) {
+            String linia = linie.get(i);
+            String klucz = pole(linia, poleKlucza);
+            if (!pozostale.containsKey(klucz)) {
+                wynik.add(linia);
+                continue;
+            }
+            String nowa = pozostale.remove(klucz);
+            if (nowa != null) {
+                wynik.add(nowa);
+            }
+        }
+
+        for (String nowa : pozostale.values()) {
+            if (nowa != null) {
+                wynik.add(nowa);
+            }
+        }
+
+        zapiszLinie(sciezka, wynik);
+    }
+
+    /** Zwraca pole o podanym numerze (od 0) z linii CSV, bez spacji na brzegach ("" gdy pola nie ma). */
+    private static String pole(String linia, int numer) {
+        int poczatek = 0;
+        for (int i = 0; i < numer; i++) {
+            poczatek = linia.indexOf(';', poczatek) + 1;
+            if (poczatek == 0) {
+                return "";
+            }
+        }
+        int koniec = linia.indexOf(';', poczatek);
+        return linia.substring(poczatek, koniec < 0 ? linia.length() : koniec).trim();
+    }
+
+    /** Zwraca rozmiar pliku w bajtach (0, gdy plik nie istnieje). */
+    protected long rozmiarPliku(String sciezka) {
+        try {
+            return Files.size(Path.of(sciezka));
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /** Usuwa plik, jeśli istnieje. */
+    protected void usunPlik(String sciezka) {
+        try {
+            Files.deleteIfExists(Path.of(sciezka));
+            PamiecTabel.uniewaznij(sciezka);
+            IndeksPozycji.usun(Path.of(sciezka));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Tworzy pusty plik tymczasowy obok pliku docelowego. Files.createTempFile nadaje prawa 0600, które po podmianie
+     * zostałyby prawami tabeli - dlatego plik jest tworzony z prawami domyślnymi (umask), a jeśli plik docelowy
+     * istnieje, dostaje jego uprawnienia POSIX.
+     */
+    private Path utworzPlikTymczasowy(Path plik) throws IOException {
+        Path tymczasowy = plik.resolveSibling(plik.getFileName() + "."
+                + Long.toUnsignedString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        Files.newByteChannel(tymczasowy, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE).close();
+
+        PosixFileAttributeView uprawnienia = Files.getFileAttributeView(plik, PosixFileAttributeView.class);
+        if (uprawnienia != null) { // null = system bez uprawnień POSIX (np. Windows)
+            try {
+                Files.setPosixFilePermissions(tymczasowy, uprawnienia.readAttributes().permissions());
+            } catch (NoSuchFileException e) {
+                // pierwszy zapis pliku - zostają prawa domyślne
+            } catch (IOException e) {
+                usunPlik(tymczasowy.toString());
+                throw e;
+            }
+        }
+        return tymczasowy;
+    }
+
+    /** Atomowo zastępuje plik docelowy plikiem tymczasowym i (poza trybem BRAK) utrwala wpis katalogu. */
+    private void podmienPlik(Path tymczasowy, Path plik) throws IOException {
+        try {
+            Files.move(tymczasowy, plik, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tymczasowy, plik, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        if (KonfiguracjaBazy.getTrybSynchronizacji() != TrybSynchronizacji.BRAK) {
+            try (FileChannel katalog = FileChannel.open(plik.getParent(), StandardOpenOption.READ)) {
+                katalog.force(true);
+            } catch (IOException ignored) {
+                // nie każdy system pozwala otworzyć katalog jako kanał (np. Windows)
+            }
+        }
+    }
+
+    private boolean czyKonczySieNowaLinia(Path plik, long rozmiar) throws IOException {
+        try (FileChannel kanal = FileChannel.open(plik, StandardOpenOption.READ)) {
+            ByteBuffer ostatni = ByteBuffer.allocate(1);
+            kanal.read(ostatni, rozmiar - 1);
+            return ostatni.get(0) == '\n';
+        }
+    }
+
+    /** Decyduje, czy plik o danym rozmiarze czytać przez mapowanie do pamięci. */
+    private boolean czyMapowac(long rozmiar) {
+        if (rozmiar > Integer.MAX_VALUE) {
+            return false; // pojedynczy MappedByteBuffer obsługuje maks. 2 GB
+        }
+
+        return switch (KonfiguracjaBazy.getTrybOdczytu()) {
+            case MAPOWANY -> true;
+            case STRUMIENIOWY -> false;
+            case AUTOMATYCZNY -> rozmiar >= KonfiguracjaBazy.getProgMapowaniaBajty();
+        };
+    }
+
+    /** Równoległe parsowanie wymaga mapowania pliku, więc w trybie STRUMIENIOWY zostaje ścieżka sekwencyjna. */
+    private boolean czyParsowacRownolegle(long rozmiar) {
+        return KonfiguracjaBazy.getTrybOdczytu() != TrybOdczytu.STRUMIENIOWY
+                && rozmiar <= Integer.MAX_VALUE
+                && rozmiar >= KonfiguracjaBazy.getProgRownoleglegoParsowania()
+                && KonfiguracjaBazy.getRownoleglosc() > 1;
+    }
+
+    /**
+     * Dzieli zmapowany plik na fragmenty na granicach linii i parsuje je równolegle w puli fork-join.
+     * Najpierw liczone są linie w każdym fragmencie, żeby parser znał numer linii w pliku (komunikaty błędów).
+     */
+    private <T> List<T> parsujRownolegle(ByteBuffer mapa, int rozmiar, Function<LiniaCsv, T> parser) {
+        int[] granice = graniceFragmentow(mapa, rozmiar);
+        int liczbaFragmentow = granice.length - 1;
+        ForkJoinPool pula = pulaParsowania();
+
+        List<ForkJoinTask<Long>> liczenia = new ArrayList<>();
+        for (int i = 0; i < liczbaFragmentow; i++) {
+            int od = granice[i];
+            int doIndeksu = granice[i + 1];
+            liczenia.add(pula.submit(() -> policzLinie(mapa, od, doIndeksu)));
+        }
+
+        long[] pierwszaLinia = new long[liczbaFragmentow];
+        long numer = 1;
+        for (int i = 0; i < liczbaFragmentow; i++) {
+            pierwszaLinia[i] = numer;
+            numer += liczenia.get(i).join();
+        }
+
+        List<ForkJoinTask<List<T>>> zadania = new ArrayList<>();
+        for (int i = 0; i < liczbaFragmentow; i++) {
+            int od = granice[i];
+            int doIndeksu = granice[i + 1];
+            long start = pierwszaLinia[i];
+            zadania.add(pula.submit(() -> {
+                List<T> fragment = new ArrayList<>();
+                przegladajBufor(mapa, od, doIndeksu, start, linia -> {
+                    T rekord = parser.apply(linia);
+                    if (rekord != null) {
+                        fragment.add(rekord);
+                    }
+                });
+                return fragment;
+            }));
+        }
+
+        List<T> rekordy = new ArrayList<>();
+        for (ForkJoinTask<List<T>> zadanie : zadania) {
+            rekordy.addAll(zadanie.join());
+        }
+        return rekordy;
+    }
+
+    /** Wyznacza początki fragmentów (zawsze tuż za znakiem nowej linii); ostatni element to rozmiar pliku. */
+    private int[] graniceFragmentow(ByteBuffer mapa, int rozmiar) {
+        int wgRozmiaru = (int) Math.max(1, rozmiar / MIN_ROZMIAR_FRAGMENTU);
+        int liczba = Math.min(KonfiguracjaBazy.getRownoleglosc() * FRAGMENTY_NA_WATEK, wgRozmiaru);
+
+        List<Integer> granice = new ArrayList<>();
+        granice.add(0);
+        for (int i = 1; i < liczba; i++) {
+            int pozycja = Math.max((int) ((long) rozmiar * i / liczba), granice.get(granice.size() - 1));
+            while (pozycja < rozmiar && mapa.get(pozycja) != '\n') {
+                pozycja++;
+            }
+            if (pozycja + 1 >= rozmiar) {
+                break;
+            }
+            if (pozycja + 1 > granice.get(granice.size() - 1)) {
+                granice.add(pozycja + 1);
+            }
+        }
+        granice.add(rozmiar);
+
+        return granice.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private long policzLinie(ByteBuffer mapa, int od, int doIndeksu) {
+        long linie = 0;
+        for (int i = od; i < doIndeksu; i++) {
+            if (mapa.get(i) == '\n') {
+                linie++;
+            }
+        }
+        return linie;
+    }
+
+    private static ForkJoinPool pulaParsowania() {
+        int rownoleglosc = KonfiguracjaBazy.getRownoleglosc();
+        synchronized (BazaDAO.class) {
+            if (pulaParsowania == null || pulaParsowania.getParallelism() != rownoleglosc) {
+                if (pulaParsowania != null) {
+                    pulaParsowania.shutdown();
+                }
+                pulaParsowania = new ForkJoinPool(rownoleglosc);
+            }
+            return pulaParsowania;
+        }
+    }
+
+    /**
+     * Dzieli zakres [od, doIndeksu) bufora na linie i przekazuje je konsumentowi.
+     * Linia o numerze 1 to nagłówek - jest pomijana. Zwraca numer kolejnej linii.
+     */
+    private long przegladajBufor(ByteBuffer bufor, int od, int doIndeksu, long numerLinii,
+                                 Consumer<LiniaCsv> konsument) {
+        LiniaCsv linia = new LiniaCsv();
+        int poczatek = od;
+
+        for (int i = od; i < doIndeksu; i++) {
+            if (bufor.get(i) == '\n') {
+                przekazLinie(linia, bufor, poczatek, i, numerLinii++, konsument);
+                poczatek = i + 1;
+            }
+        }
+
+        if (poczatek < doIndeksu) {
+            przekazLinie(linia, bufor, poczatek, doIndeksu, numerLinii++, konsument);
+        }
+
+        return numerLinii;
+    }
+
+    /** Czyta plik porcjami do bufora na stercie; linia dłuższa niż bufor powoduje jego powiększenie. */
+    private void przegladajStrumien(FileChannel kanal, Consumer<LiniaCsv> konsument) throws IOException {
+        CzytnikLinii czytnik = new CzytnikLinii(kanal);
+        LiniaCsv linia;
+        while ((linia = czytnik.nastepna()) != null) {
+            konsument.accept(linia);
+        }
+    }
+
+    private void przekazLinie(LiniaCsv linia, ByteBuffer bufor, int poczatek, int koniec, long numer,
+                              Consumer<LiniaCsv> konsument) {
+        if (numer == 1) {
+            return; // nagłówek
+        }
+
+        linia.ustaw(bufor, poczatek, koniec, numer);
+        if (!linia.czyPusta()) {
+            konsument.accept(linia);
+        }
+    }
+}
@@ -11,23 +11,11 @@ public class CennikDAO extends BazaDAO {
     private static final String PLIK = "cenniki.csv";
     private static final String HEADER = "id;kategoria;stawkaZaDobe;procentDodatkowyKierowca";
 
+    private final ParserTabeli<Cennik> parser = zarejestrujParser("cenniki", this::parseLinia);
+
     /**  Odczytuje wszystkie rekordy cennika z CSV. */
     public List<Cennik> wczytajWszystkie() {
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
-        List<Cennik> cenniki = new ArrayList<>();
-
-        if (linie.size() <= 1) {
-            return cenniki; // brak danych lub sam nagłówek
-        }
-
-        for (int i = 1; i < linie.size(); i++) {
-            Cennik c = parseLinia(linie.get(i));
-            if (c != null) {
-                cenniki.add(c);
-            }
-        }
-
-        return cenniki;
+        return wczytajRekordy(sciezkaDoPliku(PLIK), parser, this::kopia);
     }
 
     /** Zapisuje wszystkie rekordy do CSV (nadpisuje plik). */
@@ -44,43 +32,42 @@ public class CennikDAO extends BazaDAO {
         zapiszLinie(sciezkaDoPliku(PLIK), linie);
     }
 
-    /** Wyszukuje cennik po ID (wykonuje pełny odczyt pliku). */
+    /** Wyszukuje cennik po ID (indeks klucza głównego). */
     public Cennik znajdzPoId(Long id) {
         if (id == null) {
             throw new IllegalArgumentException("ID nie może być null");
         }
 
-        return wczytajWszystkie().stream()
-                .filter(c -> id.equals(c.getId()))
-                .findFirst()
-                .orElse(null);
+        return znajdzRekord(sciezkaDoPliku(PLIK), parser, this::kopia, Cennik::getId, id);
     }
 
-    /** Wyszukuje cennik po kategorii (wykonuje pełny odczyt pliku). */
+    /** Wyszukuje cennik po kategorii (indeks kategorii w PamiecTabel; przy powtórzonej kategorii pierwszy z pliku). */
     public Cennik znajdzPoKategorii(KategoriaSamochodu kategoria) {
         if (kategoria == null) {
             throw new IllegalArgumentException("Kategoria nie może być null");
         }
 
-        return wczytajWszystkie().stream()
-                .filter(c -> c.getKategoria() == kategoria)
-                .findFirst()
-                .orElse(null);
+        return znajdzRekord(sciezkaDoPliku(PLIK), parser, this::kopia, Cennik::getKategoria, kategoria);
+    }
+
+    /** Kopia cennika (wczytane rekordy są współdzielone przez PamiecTabel). */
+    private Cennik kopia(Cennik c) {
+        return new Cennik(c.getId(), c.getKategoria(), c.getStawkaZaDobe(), c.getProcentDodatkowyKierowca());
     }
 
     /** Parsuje pojedynczą linię CSV do obiektu Cennik. */
-    private Cennik parseLinia(String linia) {
+    private Cennik parseLinia(LiniaCsv linia) {
         try {
-            String[] dane = linia.split(";", -1);
+            KursorCsv pola = linia.kursor();
 
-            Long id = Long.parseLong(dane[0]);
-            KategoriaSamochodu kategoria = KategoriaSamochodu.valueOf(dane[1]);
-            BigDecimal stawkaZaDobe = new BigDecimal(dane[2]);
-            BigDecimal procent = new BigDecimal(dane[3]);
+            Long id = pola.nastepnyLong();
+            KategoriaSamochodu kategoria = pola.nastepnyEnum(KategoriaSamochodu.class);
+            BigDecimal stawkaZaDobe = pola.nastepnyDecimal();
+            BigDecimal procent = pola.nastepnyDecimal();
 
             return new Cennik(id, kategoria, stawkaZaDobe, procent);
         } catch (Exception e) {
-            System.err.println("Błąd podczas wczytywania cennika: " + e.getMessage());
+            System.err.println("Błąd podczas wczytywania cennika (linia " + linia.numer() + "): " + e.getMessage());
             return null;
         }
     }
@@ -0,0 +1,93 @@
+package pl.pjatk.mas.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Czyta plik CSV linia po linii "na żądanie" (pull) przez bufor na stercie o stałym rozmiarze.
+ * Pomija nagłówek (linia 1) i puste linie. Zwracany obiekt LiniaCsv jest przestawiany przy każdym wywołaniu.
+ */
+final class CzytnikLinii {
+
+    private static final int ROZMIAR_BUFORA = 64 * 1024;
+
+    private final InputStream in;
+    private final LiniaCsv linia = new LiniaCsv();
+
+    private byte[] dane = new byte[ROZMIAR_BUFORA];
+    private ByteBuffer widok = ByteBuffer.wrap(dane);
+
+    private int poczatek;
+    private int skan;
+    private int wypelnienie;
+    private long numerLinii;
+    private boolean koniecPliku;
+
+    CzytnikLinii(FileChannel kanal) {
+        this.in = Channels.newInputStream(kanal);
+    }
+
+    /** Zwraca kolejną linię danych albo null na końcu pliku. */
+    LiniaCsv nastepna() throws IOException {
+        while (true) {
+            while (skan < wypelnienie) {
+                if (dane[skan] == '\n') {
+                    int od = poczatek;
+                    int doIndeksu = skan;
+                    poczatek = ++skan;
+                    if (ustawLinie(od, doIndeksu)) {
+                        return linia;
+                    }
+                } else {
+                    skan++;
+                }
+            }
+
+            if (koniecPliku) {
+                if (poczatek < wypelnienie) {
+                    int od = poczatek;
+                    poczatek = wypelnienie;
+                    if (ustawLinie(od, wypelnienie)) {
+                        return linia;
+                    }
+                }
+                return null;
+            }
+
+            doczytaj();
+        }
+    }
+
+    private boolean ustawLinie(int od, int doIndeksu) {
+        if (++numerLinii == 1) {
+            return false; // nagłówek
+        }
+        linia.ustaw(widok, od, doIndeksu, numerLinii);
+        return !linia.czyPusta();
+    }
+
+    /** Przesuwa niedokończoną linię na początek bufora (lub go powiększa) i dopełnia bufor z pliku. */
+    private void doczytaj() throws IOException {
+        int reszta = wypelnienie - poczatek;
+        if (poczatek == 0 && reszta == dane.length) {
+            dane = Arrays.copyOf(dane, dane.length * 2);
+            widok = ByteBuffer.wrap(dane);
+        } else if (poczatek > 0) {
+            System.arraycopy(dane, poczatek, dane, 0, reszta);
+        }
+        poczatek = 0;
+        skan = reszta;
+        wypelnienie = reszta;
+
+        int n = in.read(dane, wypelnienie, dane.length - wypelnienie);
+        if (n == -1) {
+            koniecPliku = true;
+        } else {
+            wypelnienie += n;
+        }
+    }
+}
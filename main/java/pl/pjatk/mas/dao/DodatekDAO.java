@@ -6,30 +6,21 @@ import pl.pjatk.mas.model.TypRozliczaniaDodatku;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class DodatekDAO extends BazaDAO {
     private static final String PLIK = "dodatki.csv";
     private static final String HEADER = "id;nazwa;cena;typRozliczania;kategorie";
 
+    private final ParserTabeli<Dodatek> parser = zarejestrujParser("dodatki", this::parseLinia);
+
     /** Odczytuje wszystkie dodatki z CSV. */
     public List<Dodatek> wczytajWszystkie() {
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
-        List<Dodatek> dodatki = new ArrayList<>();
-
-        if (linie.size() <= 1) {
-            return dodatki; // brak danych lub sam nagłówek
-        }
-
-        for (int i = 1; i < linie.size(); i++) {
-            Dodatek d = parseLinia(linie.get(i));
-            if (d != null) {
-                dodatki.add(d);
-            }
-        }
-
-        return dodatki;
+        return wczytajRekordy(sciezkaDoPliku(PLIK), parser, this::kopia);
     }
 
     /** Zapisuje dodatki do CSV (nadpisuje plik). */
@@ -46,16 +37,22 @@ public class DodatekDAO extends BazaDAO {
         zapiszLinie(sciezkaDoPliku(PLIK), linie);
     }
 
-    /** Wyszukuje dodatek po ID (wykonuje pełny odczyt pliku). */
+    /** Dopisuje nowy dodatek na końcu pliku (bez przepisywania istniejących rekordów). */
+    public void dodaj(Dodatek dodatek) {
+        if (dodatek == null) {
+            throw new IllegalArgumentException("Dodatek nie może być null");
+        }
+
+        dopiszLinie(sciezkaDoPliku(PLIK), HEADER, toLinia(dodatek));
+    }
+
+    /** Wyszukuje dodatek po ID (indeks klucza głównego). */
     public Dodatek znajdzPoId(Long id) {
         if (id == null) {
             throw new IllegalArgumentException("ID dodatku nie może być null");
         }
 
-        return wczytajWszystkie().stream()
-                .filter(d -> id.equals(d.getId()))
-                .findFirst()
-                .orElse(null);
+        return znajdzRekord(sciezkaDoPliku(PLIK), parser, this::kopia, Dodatek::getId, id);
     }
 
     /** Aktualizuje dodatek (podmienia rekord o tym samym ID). */
@@ -88,21 +85,42 @@ public class DodatekDAO extends BazaDAO {
         zapiszWszystkie(dodatki);
     }
 
+    /** Zapisuje partię zmian jednym nadpisaniem pliku: dodatki z listy są podmieniane lub dopisywane, ID z kolekcji usuwane. */
+    public void zapiszZmiany(List<Dodatek> zapisane, Collection<Long> usuniete) {
+        Map<String, String> zmiany = new LinkedHashMap<>();
+        for (Long id : usuniete) {
+            zmiany.put(String.valueOf(id), null);
+        }
+        for (Dodatek d : zapisane) {
+            zmiany.put(String.valueOf(d.getId()), toLinia(d));
+        }
+        zapiszZmiany(sciezkaDoPliku(PLIK), HEADER, zmiany, 0);
+    }
+
+    /** Kopia dodatku z własną listą kategorii (wczytane rekordy są współdzielone przez PamiecTabel). */
+    private Dodatek kopia(Dodatek d) {
+        return new Dodatek(d.getId(), d.getNazwa(), d.getCena(), d.getTypRozliczania(),
+                new ArrayList<>(d.getDostepneKategorie()));
+    }
+
     /** Parsuje pojedynczą linię CSV do obiektu Dodatek. */
-    private Dodatek parseLinia(String linia) {
+    private Dodatek parseLinia(LiniaCsv linia) {
         try {
-            String[] dane = linia.split(";", -1);
+            KursorCsv pola = linia.kursor();
 
-            Long id = Long.parseLong(dane[0]);
-            String nazwa = dane[1];
-            BigDecimal cena = new BigDecimal(dane[2]);
-            TypRozliczaniaDodatku typ = TypRozliczaniaDodatku.valueOf(dane[3]);
+            Long id = pola.nastepnyLong();
+            String nazwa = pola.nastepnyTekst();
+            BigDecimal cena = pola.nastepnyDecimal();
+            TypRozliczaniaDodatku typ = pola.nastepnyEnum(TypRozliczaniaDodatku.class);
 
-            List<KategoriaSamochodu> kategorie = parseKategorie(dane.length > 4 ? dane[4] : "");
+            // Puste pole (lub jego brak) oznacza "dostępny dla wszystkich".
+            List<KategoriaSamochodu> kategorie = pola.maPole()
+                    ? pola.nastepnaListaEnum(KategoriaSamochodu.class)
+                    : new ArrayList<>();
 
             return new Dodatek(id, nazwa, cena, typ, kategorie);
         } catch (Exception e) {
-            System.err.println("Błąd podczas wczytywania dodatku: " + e.getMessage());
+            System.err.println("Błąd podczas wczytywania dodatku (linia " + linia.numer() + "): " + e.getMessage());
             return null;
         }
     }
@@ -119,20 +137,4 @@ public class DodatekDAO extends BazaDAO {
                 d.getTypRozliczania() + ";" +
                 kategorieStr;
     }
-
-    /** Zamienia zapis CSV "SUV,SEDAN" na listę z enum. Pusty string oznacza "dostępny dla wszystkich". */
-    private List<KategoriaSamochodu> parseKategorie(String csv) {
-        List<KategoriaSamochodu> kategorie = new ArrayList<>();
-        if (csv == null || csv.isBlank()) {
-            return kategorie;
-        }
-
-        String[] parts = csv.split(",");
-        for (String p : parts) {
-            if (!p.isBlank()) {
-                kategorie.add(KategoriaSamochodu.valueOf(p.trim()));
-            }
-        }
-        return kategorie;
-    }
 }
\ No newline at end of file
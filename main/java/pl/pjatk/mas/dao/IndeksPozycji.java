@@ -0,0 +1,451 @@
+package pl.pjatk.mas.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Indeks pozycji wierszy na dysku: plik "<plik danych>.idx" obok pliku CSV, mapujący ID (pierwsze pole wiersza)
+ * na przesunięcie i długość wiersza w bajtach. Pozwala odczytać jeden wiersz pozycyjnym FileChannel.read
+ * (albo nadpisać w nim pole pozycyjnym FileChannel.write) bez parsowania całego pliku.
+ * <p>
+ * Format (big-endian): nagłówek [magic int, wersja int, długość pliku danych long, CRC32 linii nagłówka CSV int,
+ * posortowany int, liczba wpisów long], potem wpisy [id long, przesunięcie long, długość int] w kolejności z pliku.
+ * Indeks, którego zapamiętana długość lub CRC nagłówka nie zgadza się z plikiem danych, jest przebudowywany.
+ * Wszystkie operacje wykonywane są pod blokadą zapisu pliku danych (KoordynatorZapisu).
+ */
+final class IndeksPozycji {
+
+    private static final int MAGIC = 0x4D415349; // "MASI"
+    private static final int WERSJA = 1;
+    private static final int ROZMIAR_NAGLOWKA = 32;
+    private static final int ROZMIAR_WPISU = 20;
+    private static final int ROZMIAR_BUFORA = 64 * 1024;
+
+    private IndeksPozycji() {
+    }
+
+    /**
+     * Zwraca bajty wiersza o podanym ID (bez znaku nowej linii) albo null, gdy takiego wiersza nie ma.
+     * Brakujący lub nieaktualny indeks jest najpierw budowany od nowa.
+     */
+    static ByteBuffer czytajWiersz(Path plikDanych, long id) throws IOException {
+        Wiersz wiersz = znajdzWiersz(plikDanych, id);
+        return (wiersz == null) ? null : wiersz.bajty;
+    }
+
+    /**
+     * Nadpisuje w miejscu pole o podanym numerze (od 0) w wierszu o podanym ID - jednym pozycyjnym FileChannel.write.
+     * Wartość jest dopełniana spacjami do szerokości pola; gdy się nie mieści (albo wiersza nie ma), nic nie jest
+     * zapisywane i zwracane jest false. Długość pliku się nie zmienia, więc indeks pozostaje aktualny.
+     * Wywoływane pod blokadą zapisu pliku danych; utrwalenie zapisu należy do wywołującego (KoordynatorZapisu).
+     */
+    static boolean nadpiszPole(Path plikDanych, long id, int numerPola, String wartosc) throws IOException {
+        synchronized (KoordynatorZapisu.dla(plikDanych).blokada()) {
+            Wiersz wiersz = znajdzWiersz(plikDanych, id);
+            if (wiersz == null) {
+                return false;
+            }
+
+            ByteBuffer bajty = wiersz.bajty;
+            int poczatek = 0;
+            for (int pole = 0; pole < numerPola; pole++) {
+                while (poczatek < bajty.limit() && bajty.get(poczatek) != ';') {
+                    poczatek++;
+                }
+                if (poczatek == bajty.limit()) {
+                    return false;
+                }
+                poczatek++;
+            }
+            int koniec = poczatek;
+            while (koniec < bajty.limit() && bajty.get(koniec) != ';') {
+                koniec++;
+            }
+
+            byte[] nowe = wartosc.getBytes(StandardCharsets.UTF_8);
+            int szerokosc = koniec - poczatek;
+            if (nowe.length > szerokosc) {
+                return false;
+            }
+
+            ByteBuffer pole = ByteBuffer.allocate(szerokosc);
+            pole.put(nowe);
+            while (pole.hasRemaining()) {
+                pole.put((byte) ' ');
+            }
+            pole.flip();
+
+            try (FileChannel dane = FileChannel.open(plikDanych, StandardOpenOption.WRITE)) {
+                zapiszPelne(dane, pole, wiersz.przesuniecie + poczatek);
+            }
+            return true;
+        }
+    }
+
+    private static Wiersz znajdzWiersz(Path plikDanych, long id) throws IOException {
+        synchronized (KoordynatorZapisu.dla(plikDanych).blokada()) {
+            if (!Files.exists(plikDanych)) {
+                return null;
+            }
+
+            boolean przebudowany = false;
+            if (!czyAktualny(plikDanych)) {
+                zbuduj(plikDanych);
+                przebudowany = true;
+            }
+
+            Wiersz wiersz = czytajWierszZIndeksu(plikDanych, id);
+            // Wiersz pod zapamiętaną pozycją musi zaczynać się od szukanego ID - inaczej plik zmienił się
+            // z zachowaniem długości (np. edycja poza aplikacją) i indeks trzeba zbudować jeszcze raz.
+            if (wiersz != null && !zaczynaSieOdId(wiersz.bajty, id) && !przebudowany) {
+                zbuduj(plikDanych);
+                wiersz = czytajWierszZIndeksu(plikDanych, id);
+            }
+            return (wiersz != null && zaczynaSieOdId(wiersz.bajty, id)) ? wiersz : null;
+        }
+    }
+
+    /**
+     * Dopisuje wpis po dopisaniu wiersza na końcu pliku danych (wywoływane pod blokadą zapisu).
+     * Gdy indeks nie opisywał pliku sprzed zapisu, jest usuwany - zostanie zbudowany przy najbliższym wyszukaniu.
+     */
+    static void dopisano(Path plikDanych, long rozmiarPrzed, long id, long przesuniecie, int dlugosc) {
+        Path plik = plikIndeksu(plikDanych);
+        if (!Files.exists(plik)) {
+            return;
+        }
+
+        boolean nieaktualny = false;
+        try (FileChannel kanal = FileChannel.open(plik, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer naglowek = czytajNaglowek(kanal);
+            if (rozmiarPrzed == 0 || naglowek == null || naglowek.getLong(8) != rozmiarPrzed) {
+                nieaktualny = true; // usuwany po zamknięciu kanału
+                return;
+            }
+
+            long liczba = naglowek.getLong(24);
+            boolean posortowany = naglowek.getInt(20) == 1;
+            if (posortowany && liczba > 0) {
+                ByteBuffer ostatnieId = ByteBuffer.allocate(Long.BYTES);
+                czytajPelne(kanal, ostatnieId, ROZMIAR_NAGLOWKA + (liczba - 1) * ROZMIAR_WPISU);
+                posortowany = id > ostatnieId.getLong(0);
+            }
+
+            ByteBuffer wpis = ByteBuffer.allocate(ROZMIAR_WPISU);
+            wpis.putLong(id).putLong(przesuniecie).putInt(dlugosc).flip();
+            zapiszPelne(kanal, wpis, ROZMIAR_NAGLOWKA + liczba * ROZMIAR_WPISU);
+
+            naglowek.putLong(8, Files.size(plikDanych));
+            naglowek.putInt(20, posortowany ? 1 : 0);
+            naglowek.putLong(24, liczba + 1);
+            naglowek.rewind();
+            zapiszPelne(kanal, naglowek, 0);
+        } catch (IOException e) {
+            e.printStackTrace();
+            nieaktualny = true;
+        } finally {
+            if (nieaktualny) {
+                usun(plikDanych);
+            }
+        }
+    }
+
+    /** Usuwa indeks pliku danych (po nadpisaniu lub usunięciu pliku pozycje przestają być prawdziwe). */
+    static void usun(Path plikDanych) {
+        try {
+            Files.deleteIfExists(plikIndeksu(plikDanych));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static Path plikIndeksu(Path plikDanych) {
+        return plikDanych.resolveSibling(plikDanych.getFileName() + ".idx");
+    }
+
+    private static boolean czyAktualny(Path plikDanych) throws IOException {
+        try (FileChannel kanal = FileChannel.open(plikIndeksu(plikDanych), StandardOpenOption.READ)) {
+            ByteBuffer naglowek = czytajNaglowek(kanal);
+            return naglowek != null
+                    && naglowek.getLong(8) == Files.size(plikDanych)
+                    && naglowek.getInt(16) == crcNaglowka(plikDanych)
+                    && kanal.size() == ROZMIAR_NAGLOWKA + naglowek.getLong(24) * ROZMIAR_WPISU;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    /** Nagłówek indeksu albo null, gdy plik jest za krótki lub ma inny format/wersję. */
+    private static ByteBuffer czytajNaglowek(FileChannel kanal) throws IOException {
+        if (kanal.size() < ROZMIAR_NAGLOWKA) {
+            return null;
+        }
+        ByteBuffer naglowek = ByteBuffer.allocate(ROZMIAR_NAGLOWKA);
+        czytajPelne(kanal, naglowek, 0);
+        return (naglowek.getInt(0) == MAGIC && naglowek.getInt(4) == WERSJA) ? naglowek : null;
+    }
+
+    /** CRC32 pierwszej linii pliku danych (nagłówka CSV). */
+    private static int crcNaglowka(Path plikDanych) throws IOException {
+        CRC32 crc = new CRC32();
+        try (FileChannel kanal = FileChannel.open(plikDanych, StandardOpenOption.READ)) {
+            ByteBuffer bufor = ByteBuffer.allocate(4096);
+            long pozycja = 0;
+            int n;
+            while ((n = kanal.read(bufor, pozycja)) > 0) {
+                bufor.flip();
+                for (int i = 0; i < n; i++) {
+                    if (bufor.get(i) == '\n') {
+                        bufor.limit(i);
+                        crc.update(bufor);
+                        return (int) crc.getValue();
+                    }
+                }
+                crc.update(bufor);
+                bufor.clear();
+                pozycja += n;
+            }
+        }
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Buduje indeks jednym przebiegiem po bajtach pliku danych - parsowane jest tylko pierwsze pole (ID).
+     * Nagłówek CSV, puste linie i linie bez liczbowego ID są pomijane. Nowy indeks atomowo zastępuje stary.
+     */
+    private static void zbuduj(Path plikDanych) throws IOException {
+        Path plik = plikIndeksu(plikDanych);
+        Path tymczasowy = Files.createTempFile(plik.toAbsolutePath().getParent(), plik.getFileName().toString(), ".tmp");
+
+        try (FileChannel dane = FileChannel.open(plikDanych, StandardOpenOption.READ);
+             FileChannel indeks = FileChannel.open(tymczasowy, StandardOpenOption.WRITE)) {
+
+            long rozmiar = dane.size();
+            ByteBuffer wejscie = ByteBuffer.allocate(ROZMIAR_BUFORA);
+            ByteBuffer wyjscie = ByteBuffer.allocate(ROZMIAR_BUFORA / ROZMIAR_WPISU * ROZMIAR_WPISU);
+            indeks.position(ROZMIAR_NAGLOWKA);
+
+            long liczba = 0;
+            long poprzednieId = Long.MIN_VALUE;
+            boolean posortowany = true;
+
+            long numerLinii = 1;
+            long poczatekLinii = 0;
+            long id = 0;
+            int cyfry = 0;
+            boolean wPierwszymPolu = true;
+            boolean poprawne = true;
+            byte poprzedni = 0;
+
+            long pozycja = 0;
+            while (pozycja <= rozmiar) {
+                int n = (pozycja < rozmiar) ? dane.read(wejscie.clear(), pozycja) : 0;
+                boolean koniec = n <= 0;
+
+                for (int i = 0; i <= n; i++) {
+                    boolean koniecLinii;
+                    long koniecWiersza;
+                    if (i < n) {
+                        byte b = wejscie.get(i);
+                        koniecLinii = b == '\n';
+                        koniecWiersza = pozycja + i - (poprzedni == '\r' ? 1 : 0);
+                        if (!koniecLinii) {
+                            if (wPierwszymPolu) {
+                                if (b >= '0' && b <= '9') {
+                                    id = id * 10 + (b - '0');
+                                    cyfry++;
+                                } else if (b == ';') {
+                                    wPierwszymPolu = false;
+                                } else if (b != ' ' && b != '\t' && b != '\r') {
+                                    poprawne = false;
+                                }
+                            }
+                            poprzedni = b;
+                            continue;
+                        }
+                    } else if (koniec && poczatekLinii < rozmiar) {
+                        // ostatnia linia bez znaku nowej linii
+                        koniecLinii = true;
+                        koniecWiersza = rozmiar - (poprzedni == '\r' ? 1 : 0);
+                    } else {
+                        break;
+                    }
+
+                    if (numerLinii > 1 && poprawne && cyfry > 0) {
+                        if (!wyjscie.hasRemaining()) {
+                            zapiszPelne(indeks, wyjscie.flip());
+                            wyjscie.clear();
+                        }
+                        wyjscie.putLong(id).putLong(poczatekLinii).putInt((int) (koniecWiersza - poczatekLinii));
+                        posortowany &= id > poprzednieId;
+                        poprzednieId = id;
+                        liczba++;
+                    }
+
+                    numerLinii++;
+                    poczatekLinii = koniec ? rozmiar : pozycja + i + 1;
+                    id = 0;
+                    cyfry = 0;
+                    wPierwszymPolu = true;
+                    poprawne = true;
+                    poprzedni = 0;
+                }
+
+                if (koniec) {
+                    break;
+                }
+                pozycja += n;
+            }
+            zapiszPelne(indeks, wyjscie.flip());
+
+            ByteBuffer naglowek = ByteBuffer.allocate(ROZMIAR_NAGLOWKA);
+            naglowek.putInt(MAGIC).putInt(WERSJA).putLong(rozmiar).putInt(crcNaglowka(plikDanych))
+                    .putInt(posortowany ? 1 : 0).putLong(liczba).flip();
+            zapiszPelne(indeks, naglowek, 0);
+        } catch (IOException e) {
+            Files.deleteIfExists(tymczasowy);
+            throw e;
+        }
+
+        try {
+            Files.move(tymczasowy, plik, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tymczasowy, plik, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Wyszukuje wpis w indeksie pozycyjnymi odczytami (wyszukiwanie binarne, gdy ID rosną, inaczej przegląd
+     * wpisów porcjami) i czyta wiersz pozycyjnie z pliku danych. Indeks nie jest mapowany - mapowanie
+     * zwalnia pamięć dopiero przy GC, a tu na jedno wyszukanie przypada kilka odczytów.
+     */
+    private static Wiersz czytajWierszZIndeksu(Path plikDanych, long id) throws IOException {
+        ByteBuffer wpis;
+
+        try (FileChannel kanal = FileChannel.open(plikIndeksu(plikDanych), StandardOpenOption.READ)) {
+            ByteBuffer naglowek = czytajNaglowek(kanal);
+            if (naglowek == null) {
+                return null;
+            }
+            long liczba = naglowek.getLong(24);
+            wpis = naglowek.getInt(20) == 1 ? szukajBinarnie(kanal, liczba, id) : szukajLiniowo(kanal, liczba, id);
+            if (wpis == null) {
+                return null;
+            }
+        }
+
+        long przesuniecie = wpis.getLong(8);
+        int dlugosc = wpis.getInt(16);
+        try (FileChannel dane = FileChannel.open(plikDanych, StandardOpenOption.READ)) {
+            if (przesuniecie + dlugosc > dane.size()) {
+                return new Wiersz(przesuniecie, ByteBuffer.allocate(0));
+            }
+            ByteBuffer wiersz = ByteBuffer.allocate(dlugosc);
+            czytajPelne(dane, wiersz, przesuniecie);
+            return new Wiersz(przesuniecie, wiersz);
+        }
+    }
+
+    private static ByteBuffer szukajBinarnie(FileChannel kanal, long liczba, long id) throws IOException {
+        ByteBuffer wpis = ByteBuffer.allocate(ROZMIAR_WPISU);
+        long lewy = 0;
+        long prawy = liczba - 1;
+        while (lewy <= prawy) {
+            long srodek = (lewy + prawy) >>> 1;
+            czytajPelne(kanal, wpis.clear(), ROZMIAR_NAGLOWKA + srodek * ROZMIAR_WPISU);
+            long klucz = wpis.getLong(0);
+            if (klucz < id) {
+                lewy = srodek + 1;
+            } else if (klucz > id) {
+                prawy = srodek - 1;
+            } else {
+                return wpis;
+            }
+        }
+        return null;
+    }
+
+    // Przy powtórzonym ID wygrywa pierwszy wiersz - tak jak w indeksie PamiecTabel.
+    private static ByteBuffer szukajLiniowo(FileChannel kanal, long liczba, long id) throws IOException {
+        ByteBuffer porcja = ByteBuffer.allocate(ROZMIAR_BUFORA / ROZMIAR_WPISU * ROZMIAR_WPISU);
+        long wczytane = 0;
+        while (wczytane < liczba) {
+            int wpisy = (int) Math.min(liczba - wczytane, porcja.capacity() / ROZMIAR_WPISU);
+            porcja.clear().limit(wpisy * ROZMIAR_WPISU);
+            czytajPelne(kanal, porcja, ROZMIAR_NAGLOWKA + wczytane * ROZMIAR_WPISU);
+            for (int i = 0; i < wpisy; i++) {
+                if (porcja.getLong(i * ROZMIAR_WPISU) == id) {
+                    return porcja.position(i * ROZMIAR_WPISU).limit((i + 1) * ROZMIAR_WPISU).slice();
+                }
+            }
+            wczytane += wpisy;
+        }
+        return null;
+    }
+
+    // Pole ID może być dopełnione spacjami z obu stron (np. układ o stałej szerokości pól).
+    private static boolean zaczynaSieOdId(ByteBuffer wiersz, long id) {
+        String oczekiwany = Long.toString(id);
+        int i = pominSpacje(wiersz, 0);
+        if (wiersz.limit() - i < oczekiwany.length()) {
+            return false;
+        }
+        for (int j = 0; j < oczekiwany.length(); j++) {
+            if (wiersz.get(i + j) != oczekiwany.charAt(j)) {
+                return false;
+            }
+        }
+        i = pominSpacje(wiersz, i + oczekiwany.length());
+        return i < wiersz.limit() && wiersz.get(i) == ';';
+    }
+
+    private static int pominSpacje(ByteBuffer wiersz, int i) {
+        while (i < wiersz.limit() && (wiersz.get(i) == ' ' || wiersz.get(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    /** Wiersz pliku danych: przesunięcie w bajtach i zawartość (bez znaku nowej linii). */
+    private static final class Wiersz {
+        private final long przesuniecie;
+        private final ByteBuffer bajty;
+
+        private Wiersz(long przesuniecie, ByteBuffer bajty) {
+            this.przesuniecie = przesuniecie;
+            this.bajty = bajty;
+        }
+    }
+
+    private static void czytajPelne(FileChannel kanal, ByteBuffer bufor, long pozycja) throws IOException {
+        while (bufor.hasRemaining()) {
+            int n = kanal.read(bufor, pozycja);
+            if (n < 0) {
+                throw new IOException("Nieoczekiwany koniec pliku");
+            }
+            pozycja += n;
+        }
+        bufor.flip();
+    }
+
+    private static void zapiszPelne(FileChannel kanal, ByteBuffer bufor, long pozycja) throws IOException {
+        while (bufor.hasRemaining()) {
+            pozycja += kanal.write(bufor, pozycja);
+        }
+    }
+
+    private static void zapiszPelne(FileChannel kanal, ByteBuffer bufor) throws IOException {
+        while (bufor.hasRemaining()) {
+            kanal.write(bufor);
+        }
+    }
+}
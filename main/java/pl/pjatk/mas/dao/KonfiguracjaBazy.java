@@ -0,0 +1,221 @@
+package pl.pjatk.mas.dao;
+
+/**
+ * Ustawienia warstwy plikowej (DAO).
+ * Wartości początkowe można podać jako właściwości systemowe (-Dmas.db.*), a w trakcie działania zmienić setterami.
+ */
+public final class KonfiguracjaBazy {
+
+    // Katalog z plikami tabel (względny wobec katalogu roboczego albo bezwzględny).
+    private static volatile String katalogBazy = System.getProperty("mas.db.katalog", "src/main/resources/DB");
+
+    private static volatile TrybOdczytu trybOdczytu =
+            TrybOdczytu.valueOf(System.getProperty("mas.db.odczyt", TrybOdczytu.AUTOMATYCZNY.name()));
+
+    // Poniżej progu mapowanie się nie opłaca (koszt mmap/munmap > koszt zwykłego odczytu).
+    private static volatile long progMapowaniaBajty = Long.getLong("mas.db.progMapowania", 1024L * 1024L);
+
+    // Tryb dziennika: zmiany rezerwacji dopisywane są jako wpisy delta zamiast przepisywania pliku.
+    private static volatile boolean dziennikRezerwacji = Boolean.getBoolean("mas.db.dziennik");
+
+    // Rozmiar dziennika, po którym jest on automatycznie wpisywany do pliku bazowego.
+    private static volatile long progKompaktowaniaDziennika = Long.getLong("mas.db.progKompaktowania", 1024L * 1024L);
+
+    private static volatile TrybSynchronizacji trybSynchronizacji =
+            TrybSynchronizacji.valueOf(System.getProperty("mas.db.fsync", TrybSynchronizacji.GRUPOWY.name()));
+
+    // Jak długo lider grupowego commitu czeka na kolejne zapisy przed wykonaniem force.
+    private static volatile long oknoCommituMs = Long.getLong("mas.db.oknoCommitu", 2L);
+
+    // Pliki od tego rozmiaru są dzielone na fragmenty parsowane równolegle.
+    private static volatile long progRownoleglegoParsowania = Long.getLong("mas.db.progRownoleglosci", 8L * 1024L * 1024L);
+
+    private static volatile int rownoleglosc =
+            Integer.getInteger("mas.db.rownoleglosc", Runtime.getRuntime().availableProcessors());
+
+    // Rezerwacje w partycjach miesięcznych (rezerwacje/RRRR-MM.csv); włączenie powoduje migrację przy pierwszym użyciu.
+    private static volatile boolean partycjonowanieRezerwacji = Boolean.getBoolean("mas.db.partycje");
+
+    // Pamięć podręczna sparsowanych tabel (PamiecTabel), unieważniana zmianą pliku.
+    private static volatile boolean pamiecTabel = Boolean.parseBoolean(System.getProperty("mas.db.pamiec", "true"));
+
+    // Zapis odroczony (write-behind): serwisy zmieniają stan w pamięci, a zapis do plików wykonuje wątek w tle.
+    private static volatile boolean zapisOdroczony = Boolean.getBoolean("mas.db.zapisOdroczony");
+
+    // Co ile wątek zapisu odroczonego zapisuje zebrane zmiany.
+    private static volatile long interwalZapisuMs = Long.getLong("mas.db.interwalZapisu", 500L);
+
+    // Ile zmian może czekać na zapis; przy pełnej kolejce zmieniający wątek czeka (odczytywane przy utworzeniu kolejki).
+    private static volatile int pojemnoscKolejkiZapisu = Integer.getInteger("mas.db.kolejkaZapisu", 10_000);
+
+    // Rezerwacje w układzie o stałej szerokości pól (status pod stałym przesunięciem) - zmiana statusu nadpisuje pole w miejscu.
+    private static volatile boolean stalaSzerokoscRezerwacji = Boolean.getBoolean("mas.db.stalaSzerokosc");
+
+    // Rezerwacje w repozytorium z leniwymi relacjami: klienci i dodatki wczytywani dopiero przy pierwszym dostępie.
+    private static volatile boolean leniweRelacje = Boolean.getBoolean("mas.db.leniweRelacje");
+
+    private KonfiguracjaBazy() {
+    }
+
+    public static String getKatalogBazy() {
+        return katalogBazy;
+    }
+
+    /** Zmienia katalog tabel; repozytorium trzeba potem przeładować, żeby wczytało pliki z nowego katalogu. */
+    public static void setKatalogBazy(String katalog) {
+        if (katalog == null || katalog.isBlank()) {
+            throw new IllegalArgumentException("Katalog bazy nie może być pusty");
+        }
+        katalogBazy = katalog;
+    }
+
+    public static TrybOdczytu getTrybOdczytu() {
+        return trybOdczytu;
+    }
+
+    public static void setTrybOdczytu(TrybOdczytu tryb) {
+        if (tryb == null) {
+            throw new IllegalArgumentException("Tryb odczytu nie może być null");
+        }
+        trybOdczytu = tryb;
+    }
+
+    public static long getProgMapowaniaBajty() {
+        return progMapowaniaBajty;
+    }
+
+    public static void setProgMapowaniaBajty(long prog) {
+        if (prog < 0) {
+            throw new IllegalArgumentException("Próg mapowania nie może być ujemny");
+        }
+        progMapowaniaBajty = prog;
+    }
+
+    public static boolean isDziennikRezerwacji() {
+        return dziennikRezerwacji;
+    }
+
+    public static void setDziennikRezerwacji(boolean dziennik) {
+        dziennikRezerwacji = dziennik;
+    }
+
+    public static long getProgKompaktowaniaDziennika() {
+        return progKompaktowaniaDziennika;
+    }
+
+    public static void setProgKompaktowaniaDziennika(long prog) {
+        if (prog <= 0) {
+            throw new IllegalArgumentException("Próg kompaktowania musi być większy od 0");
+        }
+        progKompaktowaniaDziennika = prog;
+    }
+
+    public static TrybSynchronizacji getTrybSynchronizacji() {
+        return trybSynchronizacji;
+    }
+
+    public static void setTrybSynchronizacji(TrybSynchronizacji tryb) {
+        if (tryb == null) {
+            throw new IllegalArgumentException("Tryb synchronizacji nie może być null");
+        }
+        trybSynchronizacji = tryb;
+    }
+
+    public static long getOknoCommituMs() {
+        return oknoCommituMs;
+    }
+
+    public static void setOknoCommituMs(long okno) {
+        if (okno < 0) {
+            throw new IllegalArgumentException("Okno commitu nie może być ujemne");
+        }
+        oknoCommituMs = okno;
+    }
+
+    public static long getProgRownoleglegoParsowania() {
+        return progRownoleglegoParsowania;
+    }
+
+    public static void setProgRownoleglegoParsowania(long prog) {
+        if (prog < 0) {
+            throw new IllegalArgumentException("Próg równoległego parsowania nie może być ujemny");
+        }
+        progRownoleglegoParsowania = prog;
+    }
+
+    public static int getRownoleglosc() {
+        return rownoleglosc;
+    }
+
+    public static void setRownoleglosc(int liczbaWatkow) {
+        if (liczbaWatkow < 1) {
+            throw new IllegalArgumentException("Równoległość musi wynosić co najmniej 1");
+        }
+        rownoleglosc = liczbaWatkow;
+    }
+
+    public static boolean isPartycjonowanieRezerwacji() {
+        return partycjonowanieRezerwacji;
+    }
+
+    public static void setPartycjonowanieRezerwacji(boolean partycjonowanie) {
+        partycjonowanieRezerwacji = partycjonowanie;
+    }
+
+    public static boolean isPamiecTabel() {
+        return pamiecTabel;
+    }
+
+    public static void setPamiecTabel(boolean pamiec) {
+        pamiecTabel = pamiec;
+        if (!pamiec) {
+            PamiecTabel.wyczysc();
+        }
+    }
+
+    public static boolean isZapisOdroczony() {
+        return zapisOdroczony;
+    }
+
+    public static void setZapisOdroczony(boolean odroczony) {
+        zapisOdroczony = odroczony;
+    }
+
+    public static long getInterwalZapisuMs() {
+        return interwalZapisuMs;
+    }
+
+    public static void setInterwalZapisuMs(long interwal) {
+        if (interwal <= 0) {
+            throw new IllegalArgumentException("Interwał zapisu musi być większy od 0");
+        }
+        interwalZapisuMs = interwal;
+    }
+
+    public static int getPojemnoscKolejkiZapisu() {
+        return pojemnoscKolejkiZapisu;
+    }
+
+    public static void setPojemnoscKolejkiZapisu(int pojemnosc) {
+        if (pojemnosc < 1) {
+            throw new IllegalArgumentException("Pojemność kolejki zapisu musi wynosić co najmniej 1");
+        }
+        pojemnoscKolejkiZapisu = pojemnosc;
+    }
+
+    public static boolean isStalaSzerokoscRezerwacji() {
+        return stalaSzerokoscRezerwacji;
+    }
+
+    public static void setStalaSzerokoscRezerwacji(boolean stalaSzerokosc) {
+        stalaSzerokoscRezerwacji = stalaSzerokosc;
+    }
+
+    public static boolean isLeniweRelacje() {
+        return leniweRelacje;
+    }
+
+    public static void setLeniweRelacje(boolean leniwe) {
+        leniweRelacje = leniwe;
+    }
+}
@@ -0,0 +1,147 @@
+package pl.pjatk.mas.dao;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Koordynuje zapisy do jednego pliku: serializuje je i realizuje grupowy commit (group commit).
+ * W trybie GRUPOWY pierwszy czekający wątek zostaje liderem - odczekuje okno commitu,
+ * wykonuje jedno FileChannel.force dla wszystkich zapisów zarejestrowanych do tej chwili
+ * i budzi pozostałych.
+ */
+final class KoordynatorZapisu {
+
+    /** Operacja zapisu wykonywana pod blokadą pliku. */
+    @FunctionalInterface
+    interface OperacjaZapisu {
+        void wykonaj() throws IOException;
+    }
+
+    private static final Map<Path, KoordynatorZapisu> KOORDYNATORZY = new ConcurrentHashMap<>();
+
+    private final Path plik;
+    private final Object blokadaZapisu = new Object();
+
+    // Numery kolejnych zapisów: zarejestrowane (są w cache systemu) i utrwalone (po force).
+    private long zarejestrowane;
+    private long utrwalone;
+    private boolean liderAktywny;
+
+    private KoordynatorZapisu(Path plik) {
+        this.plik = plik;
+    }
+
+    /** Zwraca koordynatora dla pliku (jeden na ścieżkę w obrębie procesu). */
+    static KoordynatorZapisu dla(Path plik) {
+        return KOORDYNATORZY.computeIfAbsent(plik.toAbsolutePath().normalize(), KoordynatorZapisu::new);
+    }
+
+    /** Blokada, pod którą wykonywane są wszystkie zapisy do pliku (także pełne nadpisania). */
+    Object blokada() {
+        return blokadaZapisu;
+    }
+
+    /**
+     * Wykonuje zapis pod blokadą pliku, a następnie czeka na jego utrwalenie zgodnie z trybem synchronizacji.
+     * Zapis musi zamknąć swój kanał przed powrotem - force wykonuje osobny kanał tego samego pliku.
+     */
+    void zapisz(OperacjaZapisu operacja) throws IOException {
+        long numer;
+        synchronized (blokadaZapisu) {
+            operacja.wykonaj();
+            synchronized (this) {
+                numer = ++zarejestrowane;
+            }
+        }
+
+        switch (KonfiguracjaBazy.getTrybSynchronizacji()) {
+            case BRAK -> oznaczUtrwalone(numer);
+            case KAZDY_ZAPIS -> {
+                wymusUtrwalenie();
+                MetrykiZapisu.zarejestrujCommit(1);
+                oznaczUtrwalone(numer);
+            }
+            case GRUPOWY -> czekajNaUtrwalenie(numer);
+        }
+    }
+
+    // Przy zmianie trybu na GRUPOWY wcześniejsze zapisy nie mogą być liczone do pierwszej partii.
+    private synchronized void oznaczUtrwalone(long numer) {
+        utrwalone = Math.max(utrwalone, numer);
+    }
+
+    private void czekajNaUtrwalenie(long numer) throws IOException {
+        synchronized (this) {
+            while (utrwalone < numer) {
+                if (!liderAktywny) {
+                    liderAktywny = true;
+                    break;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Przerwano oczekiwanie na utrwalenie zapisu", e);
+                }
+            }
+            if (utrwalone >= numer) {
+                return;
+            }
+        }
+
+        // Ten wątek jest liderem partii.
+        long cel;
+        long poprzednio;
+        IOException blad = null;
+        try {
+            odczekajOkno();
+            synchronized (this) {
+                cel = zarejestrowane;
+                poprzednio = utrwalone;
+            }
+            wymusUtrwalenie();
+        } catch (IOException e) {
+            blad = e;
+            cel = -1;
+            poprzednio = 0;
+        }
+
+        synchronized (this) {
+            if (blad == null) {
+                utrwalone = Math.max(utrwalone, cel);
+                MetrykiZapisu.zarejestrujCommit(cel - poprzednio);
+            }
+            // Przy błędzie nie przesuwamy "utrwalone" - kolejny czekający wątek ponowi force jako lider.
+            liderAktywny = false;
+            notifyAll();
+        }
+
+        if (blad != null) {
+            throw blad;
+        }
+    }
+
+    private void odczekajOkno() throws IOException {
+        long okno = KonfiguracjaBazy.getOknoCommituMs();
+        if (okno <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(okno);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Przerwano oczekiwanie na okno commitu", e);
+        }
+    }
+
+    private void wymusUtrwalenie() throws IOException {
+        // fsync na dowolnym deskryptorze utrwala wszystkie zbuforowane zapisy pliku.
+        try (FileChannel kanal = FileChannel.open(plik, StandardOpenOption.WRITE)) {
+            kanal.force(false);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package pl.pjatk.mas.dao;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+/**
+ * Kursor po polach jednej linii CSV (separator ';').
+ * Liczby, enumy, daty i kwoty są parsowane bezpośrednio z bajtów linii - bez split() i bez pośrednich Stringów.
+ * Tekst (np. marka, login) jest dekodowany z UTF-8 tylko dla pól, które go faktycznie zawierają.
+ * Kursor należy do LiniaCsv i jest przestawiany przy każdym jej użyciu - nie wolno go przechowywać.
+ */
+final class KursorCsv {
+
+    private static final byte SEPARATOR = ';';
+    private static final byte SEPARATOR_LISTY = ',';
+
+    // Długość, od której unscaled value kwoty mogłaby przekroczyć zakres long.
+    private static final int MAKS_CYFR_LONG = 18;
+
+    // Nazwy stałych enumów jako bajty (ASCII) - liczone raz na klasę.
+    private static final ClassValue<byte[][]> NAZWY_ENUMOW = new ClassValue<>() {
+        @Override
+        protected byte[][] computeValue(Class<?> typ) {
+            Object[] stale = typ.getEnumConstants();
+            byte[][] nazwy = new byte[stale.length][];
+            for (int i = 0; i < stale.length; i++) {
+                nazwy[i] = ((Enum<?>) stale[i]).name().getBytes(StandardCharsets.US_ASCII);
+            }
+            return nazwy;
+        }
+    };
+
+    // getEnumConstants() klonuje tablicę przy każdym wywołaniu - trzymamy własną kopię.
+    private static final ClassValue<Object[]> STALE_ENUMOW = new ClassValue<>() {
+        @Override
+        protected Object[] computeValue(Class<?> typ) {
+            return typ.getEnumConstants();
+        }
+    };
+
+    private LiniaCsv linia;
+    private ByteBuffer bufor;
+    private int pozycja;
+    private int koniec;
+    private boolean wyczerpany;
+
+    // Granice ostatnio odczytanego pola.
+    private int poczatekPola;
+    private int koniecPola;
+    private int numerPola;
+
+    /** Ustawia kursor na początek linii. */
+    KursorCsv ustaw(LiniaCsv linia) {
+        this.linia = linia;
+        this.bufor = linia.bufor();
+        this.pozycja = linia.poczatek();
+        this.koniec = linia.koniec();
+        this.wyczerpany = false;
+        this.numerPola = -1;
+        return this;
+    }
+
+    /** Czy w linii jest jeszcze co najmniej jedno pole (także puste, np. po końcowym ';'). */
+    boolean maPole() {
+        return !wyczerpany;
+    }
+
+    /** Liczba wszystkich pól w linii (jak długość wyniku split(";", -1)). */
+    int liczbaPol() {
+        int liczba = 1;
+        for (int i = linia.poczatek(); i < koniec; i++) {
+            if (bufor.get(i) == SEPARATOR) {
+                liczba++;
+            }
+        }
+        return liczba;
+    }
+
+    /** Pomija bieżące pole. */
+    KursorCsv pominPole() {
+        nastepnePole();
+        return this;
+    }
+
+    long nastepnyLong() {
+        nastepnePole();
+        return parseLong(poczatekPola, koniecPola);
+    }
+
+    int nastepnyInt() {
+        long wartosc = nastepnyLong();
+        if (wartosc < Integer.MIN_VALUE || wartosc > Integer.MAX_VALUE) {
+            throw blad("liczba poza zakresem int");
+        }
+        return (int) wartosc;
+    }
+
+    <E extends Enum<E>> E nastepnyEnum(Class<E> typ) {
+        nastepnePole();
+        return parseEnum(typ, poczatekPola, koniecPola);
+    }
+
+    /** Data w formacie ISO yyyy-MM-dd. */
+    LocalDate nastepnaData() {
+        nastepnePole();
+        int od = pominSpacjeOd(poczatekPola, koniecPola);
+        int doIndeksu = pominSpacjeDo(od, koniecPola);
+
+        if (doIndeksu - od != 10 || bufor.get(od + 4) != '-' || bufor.get(od + 7) != '-') {
+            throw blad("oczekiwano daty yyyy-MM-dd");
+        }
+
+        int rok = cyfry(od, od + 4);
+        int miesiac = cyfry(od + 5, od + 7);
+        int dzien = cyfry(od + 8, od + 10);
+
+        try {
+            return LocalDate.of(rok, miesiac, dzien);
+        } catch (RuntimeException e) {
+            throw blad("niepoprawna data");
+        }
+    }
+
+    /** Kwota dziesiętna, np. "1292.00", "-0.25", "100". */
+    BigDecimal nastepnyDecimal() {
+        nastepnePole();
+        int od = pominSpacjeOd(poczatekPola, koniecPola);
+        int doIndeksu = pominSpacjeDo(od, koniecPola);
+
+        boolean ujemna = false;
+        int i = od;
+        if (i < doIndeksu && (bufor.get(i) == '-' || bufor.get(i) == '+')) {
+            ujemna = bufor.get(i) == '-';
+            i++;
+        }
+
+        long wartosc = 0;
+        int skala = -1;
+        int liczbaCyfr = 0;
+        for (; i < doIndeksu; i++) {
+            byte b = bufor.get(i);
+            if (b == '.' && skala < 0) {
+                skala = 0;
+                continue;
+            }
+            if (b < '0' || b > '9') {
+                throw blad("niepoprawna kwota");
+            }
+            if (++liczbaCyfr > MAKS_CYFR_LONG) {
+                // Rzadki przypadek bardzo długiej kwoty - oddajemy parsowanie BigDecimal.
+                return new BigDecimal(linia.tekst(od, doIndeksu));
+            }
+            wartosc = wartosc * 10 + (b - '0');
+            if (skala >= 0) {
+                skala++;
+            }
+        }
+
+        if (liczbaCyfr == 0) {
+            throw blad("pusta kwota");
+        }
+
+        return BigDecimal.valueOf(ujemna ? -wartosc : wartosc, Math.max(skala, 0));
+    }
+
+    /** Pole tekstowe (UTF-8), bez obcinania spacji - jak String.split. */
+    String nastepnyTekst() {
+        nastepnePole();
+        return linia.tekst(poczatekPola, koniecPola);
+    }
+
+    /** Lista ID w formacie "1,2,3" w jednym polu. Puste pole oznacza pustą listę. */
+    List<Long> nastepnaListaId() {
+        List<Long> ids = new ArrayList<>();
+        nastepnaListaId(ids::add);
+        return ids;
+    }
+
+    /** Jak nastepnaListaId(), ale przekazuje kolejne ID do konsumenta - bez listy i bez opakowywania w Long. */
+    void nastepnaListaId(LongConsumer konsument) {
+        nastepnePole();
+
+        int od = poczatekPola;
+        for (int i = poczatekPola; i <= koniecPola; i++) {
+            if (i == koniecPola || bufor.get(i) == SEPARATOR_LISTY) {
+                if (!czyZakresPusty(od, i)) {
+                    konsument.accept(parseLong(od, i));
+                }
+                od = i + 1;
+            }
+        }
+    }
+
+    /** Lista stałych enuma w formacie "A,B,C" w jednym polu. Puste pole oznacza pustą listę. */
+    <E extends Enum<E>> List<E> nastepnaListaEnum(Class<E> typ) {
+        nastepnePole();
+        List<E> wartosci = new ArrayList<>();
+
+        int od = poczatekPola;
+        for (int i = poczatekPola; i <= koniecPola; i++) {
+            if (i == koniecPola || bufor.get(i) == SEPARATOR_LISTY) {
+                if (!czyZakresPusty(od, i)) {
+                    wartosci.add(parseEnum(typ, od, i));
+                }
+                od = i + 1;
+            }
+        }
+
+        return wartosci;
+    }
+
+    private void nastepnePole() {
+        if (wyczerpany) {
+            throw blad("brak kolejnego pola");
+        }
+
+        numerPola++;
+        poczatekPola = pozycja;
+        int i = pozycja;
+        while (i < koniec && bufor.get(i) != SEPARATOR) {
+            i++;
+        }
+        koniecPola = i;
+
+        if (i < koniec) {
+            pozycja = i + 1;
+        } else {
+            pozycja = koniec;
+            wyczerpany = true;
+        }
+    }
+
+    private long parseLong(int od, int doIndeksu) {
+        od = pominSpacjeOd(od, doIndeksu);
+        doIndeksu = pominSpacjeDo(od, doIndeksu);
+
+        boolean ujemna = false;
+        if (od < doIndeksu && (bufor.get(od) == '-' || bufor.get(od) == '+')) {
+            ujemna = bufor.get(od) == '-';
+            od++;
+        }
+        if (od == doIndeksu) {
+            throw blad("pusta liczba");
+        }
+
+        long wartosc = 0;
+        for (int i = od; i < doIndeksu; i++) {
+            byte b = bufor.get(i);
+            if (b < '0' || b > '9') {
+                throw blad("niepoprawna liczba");
+            }
+            wartosc = Math.addExact(Math.multiplyExact(wartosc, 10), b - '0');
+        }
+
+        return ujemna ? -wartosc : wartosc;
+    }
+
+    private <E extends Enum<E>> E parseEnum(Class<E> typ, int od, int doIndeksu) {
+        od = pominSpacjeOd(od, doIndeksu);
+        doIndeksu = pominSpacjeDo(od, doIndeksu);
+
+        byte[][] nazwy = NAZWY_ENUMOW.get(typ);
+        int dl = doIndeksu - od;
+
+        for (int n = 0; n < nazwy.length; n++) {
+            byte[] nazwa = nazwy[n];
+            if (nazwa.length != dl) {
+                continue;
+            }
+            boolean rowne = true;
+            for (int i = 0; i < dl; i++) {
+                if (bufor.get(od + i) != nazwa[i]) {
+                    rowne = false;
+                    break;
+                }
+            }
+            if (rowne) {
+                return typ.cast(STALE_ENUMOW.get(typ)[n]);
+            }
+        }
+
+        throw blad("nieznana wartość " + typ.getSimpleName() + ": " + linia.tekst(od, doIndeksu));
+    }
+
+    private int cyfry(int od, int doIndeksu) {
+        int wartosc = 0;
+        for (int i = od; i < doIndeksu; i++) {
+            byte b = bufor.get(i);
+            if (b < '0' || b > '9') {
+                throw blad("oczekiwano cyfry");
+            }
+            wartosc = wartosc * 10 + (b - '0');
+        }
+        return wartosc;
+    }
+
+    private boolean czyZakresPusty(int od, int doIndeksu) {
+        return pominSpacjeOd(od, doIndeksu) == doIndeksu;
+    }
+
+    private int pominSpacjeOd(int od, int doIndeksu) {
+        while (od < doIndeksu && bufor.get(od) == ' ') {
+            od++;
+        }
+        return od;
+    }
+
+    private int pominSpacjeDo(int od, int doIndeksu) {
+        while (doIndeksu > od && bufor.get(doIndeksu - 1) == ' ') {
+            doIndeksu--;
+        }
+        return doIndeksu;
+    }
+
+    private IllegalArgumentException blad(String opis) {
+        return new IllegalArgumentException("pole " + (numerPola + 1) + ": " + opis);
+    }
+}
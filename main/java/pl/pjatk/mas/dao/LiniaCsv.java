@@ -0,0 +1,90 @@
+package pl.pjatk.mas.dao;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Widok jednej linii pliku CSV jako wycinek bajtów (bez kopiowania).
+ * Obiekt jest wielokrotnego użytku - BazaDAO przestawia go na kolejne linie,
+ * więc parser nie może go przechowywać poza wywołaniem.
+ */
+final class LiniaCsv {
+
+    private ByteBuffer bufor;
+    private int poczatek;
+    private int koniec;
+    private long numer;
+    private KursorCsv kursor;
+
+    /** Ustawia widok na zakres [poczatek, koniec) bufora; numer to numer linii w pliku (od 1). */
+    void ustaw(ByteBuffer bufor, int poczatek, int koniec, long numer) {
+        this.bufor = bufor;
+        this.poczatek = poczatek;
+        // Obcinamy '\r' z plików zapisanych w formacie Windows.
+        this.koniec = (koniec > poczatek && bufor.get(koniec - 1) == '\r') ? koniec - 1 : koniec;
+        this.numer = numer;
+    }
+
+    ByteBuffer bufor() {
+        return bufor;
+    }
+
+    int poczatek() {
+        return poczatek;
+    }
+
+    int koniec() {
+        return koniec;
+    }
+
+    int dlugosc() {
+        return koniec - poczatek;
+    }
+
+    long numer() {
+        return numer;
+    }
+
+    boolean czyPusta() {
+        for (int i = poczatek; i < koniec; i++) {
+            byte b = bufor.get(i);
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Zwraca kursor po polach tej linii, ustawiony na pierwsze pole (jeden obiekt na LiniaCsv). */
+    KursorCsv kursor() {
+        if (kursor == null) {
+            kursor = new KursorCsv();
+        }
+        return kursor.ustaw(this);
+    }
+
+    /** Przesuwa początek widoku o podaną liczbę bajtów (np. pominięcie prefiksu wpisu dziennika). */
+    void pominPrefiks(int bajty) {
+        poczatek = Math.min(poczatek + bajty, koniec);
+    }
+
+    /** Dekoduje wycinek [od, do) jako UTF-8. */
+    String tekst(int od, int doIndeksu) {
+        int dl = doIndeksu - od;
+        if (dl <= 0) {
+            return "";
+        }
+        if (bufor.hasArray()) {
+            return new String(bufor.array(), bufor.arrayOffset() + od, dl, StandardCharsets.UTF_8);
+        }
+        byte[] bajty = new byte[dl];
+        bufor.get(od, bajty);
+        return new String(bajty, StandardCharsets.UTF_8);
+    }
+
+    /** Dekoduje całą linię (UTF-8). */
+    @Override
+    public String toString() {
+        return tekst(poczatek, koniec);
+    }
+}
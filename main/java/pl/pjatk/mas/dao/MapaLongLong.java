@@ -0,0 +1,155 @@
+package pl.pjatk.mas.dao;
+
+/**
+ * Mapa long -> long z adresowaniem otwartym (próbkowanie liniowe) na dwóch tablicach prymitywów:
+ * klucze i wartości nie są opakowywane w Long i nie ma obiektu wpisu na każdy element.
+ * Używana do map relacji budowanych jednym przebiegiem po pliku (ID rezerwacji -> ID klienta itd.),
+ * dlatego nie ma usuwania. Nie jest bezpieczna wątkowo.
+ */
+public final class MapaLongLong {
+
+    /** Odbiorca wpisów przy przeglądaniu mapy. */
+    @FunctionalInterface
+    public interface KonsumentWpisu {
+        void akceptuj(long klucz, long wartosc);
+    }
+
+    private static final int MIN_POJEMNOSC = 16;
+    private static final double MAKS_WYPELNIENIE = 0.75;
+
+    // Wolne miejsce w tablicy kluczy to 0; klucz 0 (w praktyce nieużywany jako ID) trzymany jest osobno.
+    private long[] klucze;
+    private long[] wartosci;
+    private int rozmiar;
+    private int prog;
+
+    private boolean maZero;
+    private long wartoscZera;
+
+    public MapaLongLong() {
+        this(MIN_POJEMNOSC);
+    }
+
+    /** Mapa przygotowana na podaną liczbę wpisów bez powiększania tablic. */
+    public MapaLongLong(int oczekiwanaLiczba) {
+        if (oczekiwanaLiczba < 0) {
+            throw new IllegalArgumentException("Oczekiwana liczba wpisów nie może być ujemna");
+        }
+        alokuj(pojemnoscDla(oczekiwanaLiczba));
+    }
+
+    /** Wstawia lub nadpisuje wartość dla klucza. */
+    public void wstaw(long klucz, long wartosc) {
+        if (klucz == 0) {
+            if (!maZero) {
+                maZero = true;
+                rozmiar++;
+            }
+            wartoscZera = wartosc;
+            return;
+        }
+
+        int i = pozycja(klucz);
+        if (klucze[i] == klucz) {
+            wartosci[i] = wartosc;
+            return;
+        }
+
+        klucze[i] = klucz;
+        wartosci[i] = wartosc;
+        if (++rozmiar > prog) {
+            powieksz();
+        }
+    }
+
+    /** Wartość dla klucza albo podana wartość domyślna, gdy klucza nie ma. */
+    public long pobierz(long klucz, long brak) {
+        if (klucz == 0) {
+            return maZero ? wartoscZera : brak;
+        }
+        int i = pozycja(klucz);
+        return klucze[i] == klucz ? wartosci[i] : brak;
+    }
+
+    public boolean zawiera(long klucz) {
+        if (klucz == 0) {
+            return maZero;
+        }
+        return klucze[pozycja(klucz)] == klucz;
+    }
+
+    public int rozmiar() {
+        return rozmiar;
+    }
+
+    public boolean czyPusta() {
+        return rozmiar == 0;
+    }
+
+    /** Przekazuje wszystkie wpisy do konsumenta (kolejność nieokreślona). */
+    public void przegladaj(KonsumentWpisu konsument) {
+        if (maZero) {
+            konsument.akceptuj(0, wartoscZera);
+        }
+        for (int i = 0; i < klucze.length; i++) {
+            if (klucze[i] != 0) {
+                konsument.akceptuj(klucze[i], wartosci[i]);
+            }
+        }
+    }
+
+    /** Pozycja klucza albo pierwszego wolnego miejsca w jego ciągu próbkowania. */
+    private int pozycja(long klucz) {
+        int maska = klucze.length - 1;
+        int i = mieszaj(klucz) & maska;
+        while (klucze[i] != 0 && klucze[i] != klucz) {
+            i = (i + 1) & maska;
+        }
+        return i;
+    }
+
+    private void powieksz() {
+        long[] stareKlucze = klucze;
+        long[] stareWartosci = wartosci;
+        alokuj(stareKlucze.length * 2);
+
+        for (int i = 0; i < stareKlucze.length; i++) {
+            if (stareKlucze[i] != 0) {
+                int j = pozycja(stareKlucze[i]);
+                klucze[j] = stareKlucze[i];
+                wartosci[j] = stareWartosci[i];
+            }
+        }
+    }
+
+    private void alokuj(int pojemnosc) {
+        klucze = new long[pojemnosc];
+        wartosci = new long[pojemnosc];
+        prog = (int) (pojemnosc * MAKS_WYPELNIENIE);
+    }
+
+    private static int pojemnoscDla(int liczba) {
+        long potrzebna = (long) Math.ceil(liczba / MAKS_WYPELNIENIE) + 1;
+        long pojemnosc = MIN_POJEMNOSC;
+        while (pojemnosc < potrzebna) {
+            pojemnosc <<= 1;
+        }
+        if (pojemnosc > 1 << 30) {
+            throw new IllegalArgumentException("Za duża liczba wpisów: " + liczba);
+        }
+        return (int) pojemnosc;
+    }
+
+    // Kolejne ID rezerwacji trafiałyby w sąsiednie miejsca - mieszanie rozprasza je po tablicy.
+    static int mieszaj(long klucz) {
+        long h = klucz * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        przegladaj((k, w) -> sb.append(sb.length() > 1 ? ", " : "").append(k).append('=').append(w));
+        return sb.append('}').toString();
+    }
+}
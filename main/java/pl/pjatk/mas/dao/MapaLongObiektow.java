@@ -0,0 +1,222 @@
+package pl.pjatk.mas.dao;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Mapa long -> obiekt zachowująca kolejność wstawiania (jak LinkedHashMap<Long, V>), bez opakowywania kluczy w Long
+ * i bez obiektu wpisu na każdy element: klucze i wartości leżą w kolejności wstawiania w dwóch tablicach,
+ * a tablica mieszająca (adresowanie otwarte, próbkowanie liniowe) trzyma tylko pozycje w tych tablicach.
+ * Nadpisanie klucza nie zmienia jego miejsca w kolejności. Usunięcie zostawia w tablicach dziurę,
+ * odzyskiwaną przy najbliższym powiększaniu. Wartości null nie są dozwolone. Nie jest bezpieczna wątkowo.
+ */
+public final class MapaLongObiektow<V> {
+
+    private static final int MIN_POJEMNOSC = 16;
+    private static final double MAKS_WYPELNIENIE = 0.75;
+
+    // Wpisy w kolejności wstawiania; wartość null oznacza wpis usunięty.
+    private long[] klucze;
+    private Object[] wartosci;
+    private int liczbaWpisow;
+    private int rozmiar;
+
+    // Pozycja wpisu + 1 (0 = wolne miejsce).
+    private int[] miejsca;
+
+    private final Collection<V> widokWartosci = new AbstractCollection<>() {
+        @Override
+        public Iterator<V> iterator() {
+            return new IteratorWartosci();
+        }
+
+        @Override
+        public int size() {
+            return rozmiar;
+        }
+    };
+
+    public MapaLongObiektow() {
+        przebuduj(MIN_POJEMNOSC);
+    }
+
+    /** Wartość dla klucza albo null, gdy klucza nie ma. */
+    public V pobierz(long klucz) {
+        int m = miejsca[miejsce(klucz)];
+        return m == 0 ? null : wartosc(m - 1);
+    }
+
+    public boolean zawiera(long klucz) {
+        return miejsca[miejsce(klucz)] != 0;
+    }
+
+    /** Wstawia lub nadpisuje wartość dla klucza; zwraca poprzednią wartość albo null. */
+    public V wstaw(long klucz, V wartosc) {
+        if (wartosc == null) {
+            throw new IllegalArgumentException("Wartość nie może być null");
+        }
+
+        int i = miejsce(klucz);
+        if (miejsca[i] != 0) {
+            int pozycja = miejsca[i] - 1;
+            V poprzednia = wartosc(pozycja);
+            wartosci[pozycja] = wartosc;
+            return poprzednia;
+        }
+
+        if (liczbaWpisow == klucze.length) {
+            przebuduj(Math.max(MIN_POJEMNOSC, rozmiar * 2));
+            i = miejsce(klucz);
+        }
+        klucze[liczbaWpisow] = klucz;
+        wartosci[liczbaWpisow] = wartosc;
+        miejsca[i] = ++liczbaWpisow;
+        rozmiar++;
+        return null;
+    }
+
+    /** Usuwa klucz; zwraca usuniętą wartość albo null, gdy klucza nie było. */
+    public V usun(long klucz) {
+        int i = miejsce(klucz);
+        if (miejsca[i] == 0) {
+            return null;
+        }
+
+        int pozycja = miejsca[i] - 1;
+        V usunieta = wartosc(pozycja);
+        wartosci[pozycja] = null;
+        rozmiar--;
+        zwolnijMiejsce(i);
+        return usunieta;
+    }
+
+    public int rozmiar() {
+        return rozmiar;
+    }
+
+    public boolean czyPusta() {
+        return rozmiar == 0;
+    }
+
+    public void wyczysc() {
+        liczbaWpisow = 0;
+        rozmiar = 0;
+        przebuduj(MIN_POJEMNOSC);
+    }
+
+    /**
+     * Wartości w kolejności wstawiania - widok tylko do odczytu. Mapy nie wolno zmieniać w trakcie przeglądania widoku.
+     */
+    public Collection<V> wartosci() {
+        return widokWartosci;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V wartosc(int pozycja) {
+        return (V) wartosci[pozycja];
+    }
+
+    /** Miejsce klucza w tablicy mieszającej albo pierwsze wolne miejsce w jego ciągu próbkowania. */
+    private int miejsce(long klucz) {
+        int maska = miejsca.length - 1;
+        int i = MapaLongLong.mieszaj(klucz) & maska;
+        while (miejsca[i] != 0 && klucze[miejsca[i] - 1] != klucz) {
+            i = (i + 1) & maska;
+        }
+        return i;
+    }
+
+    /**
+     * Zwalnia miejsce w tablicy mieszającej, przesuwając wstecz dalsze wpisy ciągu próbkowania,
+     * żeby wyszukiwanie nie zatrzymało się na powstałej luce.
+     */
+    private void zwolnijMiejsce(int wolne) {
+        int maska = miejsca.length - 1;
+        int j = wolne;
+        while (true) {
+            j = (j + 1) & maska;
+            if (miejsca[j] == 0) {
+                break;
+            }
+            int docelowe = MapaLongLong.mieszaj(klucze[miejsca[j] - 1]) & maska;
+            // Wpis z j może zająć lukę, jeśli jego docelowe miejsce nie leży cyklicznie w (wolne, j].
+            boolean wPrzedziale = (wolne < j) ? (docelowe > wolne && docelowe <= j) : (docelowe > wolne || docelowe <= j);
+            if (!wPrzedziale) {
+                miejsca[wolne] = miejsca[j];
+                wolne = j;
+            }
+        }
+        miejsca[wolne] = 0;
+    }
+
+    /** Układa żywe wpisy od początku tablic (bez dziur) o podanej pojemności i buduje od nowa tablicę mieszającą. */
+    private void przebuduj(int pojemnosc) {
+        long[] stareKlucze = klucze;
+        Object[] stareWartosci = wartosci;
+        int staraLiczba = liczbaWpisow;
+
+        klucze = new long[pojemnosc];
+        wartosci = new Object[pojemnosc];
+        miejsca = new int[pojemnoscMiejsc(pojemnosc)];
+        liczbaWpisow = 0;
+
+        for (int p = 0; p < staraLiczba; p++) {
+            if (stareWartosci[p] != null) {
+                klucze[liczbaWpisow] = stareKlucze[p];
+                wartosci[liczbaWpisow] = stareWartosci[p];
+                miejsca[miejsce(stareKlucze[p])] = ++liczbaWpisow;
+            }
+        }
+    }
+
+    private static int pojemnoscMiejsc(int liczba) {
+        long potrzebna = (long) Math.ceil(liczba / MAKS_WYPELNIENIE) + 1;
+        long pojemnosc = MIN_POJEMNOSC;
+        while (pojemnosc < potrzebna) {
+            pojemnosc <<= 1;
+        }
+        if (pojemnosc > 1 << 30) {
+            throw new IllegalArgumentException("Za duża liczba wpisów: " + liczba);
+        }
+        return (int) pojemnosc;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        for (int p = 0; p < liczbaWpisow; p++) {
+            if (wartosci[p] != null) {
+                sb.append(sb.length() > 1 ? ", " : "").append(klucze[p]).append('=').append(wartosci[p]);
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private final class IteratorWartosci implements Iterator<V> {
+        private int pozycja = nastepnaOd(0);
+
+        @Override
+        public boolean hasNext() {
+            return pozycja < liczbaWpisow;
+        }
+
+        @Override
+        public V next() {
+            if (pozycja >= liczbaWpisow) {
+                throw new NoSuchElementException();
+            }
+            V wartosc = wartosc(pozycja);
+            pozycja = nastepnaOd(pozycja + 1);
+            return wartosc;
+        }
+
+        private int nastepnaOd(int p) {
+            while (p < liczbaWpisow && wartosci[p] == null) {
+                p++;
+            }
+            return p;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package pl.pjatk.mas.dao;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Mapa long -> lista long (np. ID rezerwacji -> ID dodatków) bez obiektu listy na każdy wpis:
+ * wartości wszystkich wpisów leżą jedna za drugą we wspólnej tablicy long[], a MapaLongLong trzyma
+ * dla klucza spakowany zakres (początek w górnych 32 bitach, długość w dolnych).
+ * Wpis dodaje się sekwencją poczatekWpisu / dopiszWartosc / zakonczWpis - wpis niezakończony
+ * (np. błąd parsowania w połowie linii) jest porzucany przy rozpoczęciu kolejnego.
+ * Ponowne wstawienie klucza podmienia jego zakres (stare wartości zostają w tablicy jako nieużywane).
+ * Nie jest bezpieczna wątkowo.
+ */
+public final class MapaLongTablic {
+
+    private static final long[] PUSTA = new long[0];
+    private static final int MIN_POJEMNOSC = 16;
+
+    private final MapaLongLong zakresy;
+    private long[] wartosci = new long[MIN_POJEMNOSC];
+    private int liczbaWartosci;
+
+    private boolean wpisOtwarty;
+    private long kluczWpisu;
+    private int poczatekWpisu;
+
+    public MapaLongTablic() {
+        zakresy = new MapaLongLong();
+    }
+
+    /** Mapa przygotowana na podaną liczbę kluczy (tablica wartości i tak rośnie w miarę potrzeby). */
+    public MapaLongTablic(int oczekiwanaLiczbaKluczy) {
+        zakresy = new MapaLongLong(oczekiwanaLiczbaKluczy);
+    }
+
+    /** Rozpoczyna wpis dla klucza; niezakończony poprzedni wpis jest porzucany. */
+    public void poczatekWpisu(long klucz) {
+        if (wpisOtwarty) {
+            liczbaWartosci = poczatekWpisu;
+        }
+        wpisOtwarty = true;
+        kluczWpisu = klucz;
+        poczatekWpisu = liczbaWartosci;
+    }
+
+    public void dopiszWartosc(long wartosc) {
+        if (!wpisOtwarty) {
+            throw new IllegalStateException("Brak rozpoczętego wpisu");
+        }
+        if (liczbaWartosci == wartosci.length) {
+            if (wartosci.length >= Integer.MAX_VALUE / 2) {
+                throw new IllegalStateException("Za dużo wartości w mapie");
+            }
+            wartosci = Arrays.copyOf(wartosci, wartosci.length * 2);
+        }
+        wartosci[liczbaWartosci++] = wartosc;
+    }
+
+    public void zakonczWpis() {
+        if (!wpisOtwarty) {
+            throw new IllegalStateException("Brak rozpoczętego wpisu");
+        }
+        zakresy.wstaw(kluczWpisu, ((long) poczatekWpisu << 32) | (liczbaWartosci - poczatekWpisu));
+        wpisOtwarty = false;
+    }
+
+    /** Wstawia cały wpis naraz. */
+    public void wstaw(long klucz, long... wartosciWpisu) {
+        poczatekWpisu(klucz);
+        for (long w : wartosciWpisu) {
+            dopiszWartosc(w);
+        }
+        zakonczWpis();
+    }
+
+    /** Kopia wartości dla klucza albo null, gdy klucza nie ma. */
+    public long[] pobierz(long klucz) {
+        long zakres = zakresy.pobierz(klucz, -1);
+        if (zakres == -1) {
+            return null;
+        }
+        int dlugosc = (int) zakres;
+        if (dlugosc == 0) {
+            return PUSTA;
+        }
+        int poczatek = (int) (zakres >>> 32);
+        return Arrays.copyOfRange(wartosci, poczatek, poczatek + dlugosc);
+    }
+
+    /** Przekazuje wartości klucza do konsumenta bez kopiowania; zwraca false, gdy klucza nie ma. */
+    public boolean przegladaj(long klucz, LongConsumer konsument) {
+        long zakres = zakresy.pobierz(klucz, -1);
+        if (zakres == -1) {
+            return false;
+        }
+        int poczatek = (int) (zakres >>> 32);
+        int koniec = poczatek + (int) zakres;
+        for (int i = poczatek; i < koniec; i++) {
+            konsument.accept(wartosci[i]);
+        }
+        return true;
+    }
+
+    public boolean zawiera(long klucz) {
+        return zakresy.zawiera(klucz);
+    }
+
+    public int rozmiar() {
+        return zakresy.rozmiar();
+    }
+
+    public boolean czyPusta() {
+        return zakresy.czyPusta();
+    }
+
+    /** Kończy budowanie mapy: porzuca niezakończony wpis i przycina wspólną tablicę wartości do zajętej długości. */
+    public void przytnij() {
+        if (wpisOtwarty) {
+            liczbaWartosci = poczatekWpisu;
+            wpisOtwarty = false;
+        }
+        if (wartosci.length > liczbaWartosci) {
+            wartosci = Arrays.copyOf(wartosci, Math.max(liczbaWartosci, MIN_POJEMNOSC));
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("{");
+        zakresy.przegladaj((klucz, zakres) -> {
+            sb.append(sb.length() > 1 ? ", " : "").append(klucz).append('=');
+            sb.append(Arrays.toString(pobierz(klucz)));
+        });
+        return sb.append('}').toString();
+    }
+}
@@ -0,0 +1,83 @@
+package pl.pjatk.mas.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Liczniki zapisów grupowych: ile wywołań FileChannel.force wykonano i ile zapisów obejmowało każde z nich.
+ */
+public final class MetrykiZapisu {
+
+    // Przedziały rozmiaru partii: 1, 2-4, 5-16, 17-64, >64
+    private static final int[] GRANICE_PRZEDZIALOW = {1, 4, 16, 64};
+
+    private static final AtomicLong liczbaCommitow = new AtomicLong();
+    private static final AtomicLong liczbaZapisow = new AtomicLong();
+    private static final AtomicLong najwiekszaPartia = new AtomicLong();
+    private static final AtomicLongArray histogram = new AtomicLongArray(GRANICE_PRZEDZIALOW.length + 1);
+
+    private MetrykiZapisu() {
+    }
+
+    /** Rejestruje jedno wywołanie force obejmujące podaną liczbę zapisów. */
+    static void zarejestrujCommit(long rozmiarPartii) {
+        liczbaCommitow.incrementAndGet();
+        liczbaZapisow.addAndGet(rozmiarPartii);
+        najwiekszaPartia.accumulateAndGet(rozmiarPartii, Math::max);
+        histogram.incrementAndGet(przedzial(rozmiarPartii));
+    }
+
+    public static long getLiczbaCommitow() {
+        return liczbaCommitow.get();
+    }
+
+    public static long getLiczbaZapisow() {
+        return liczbaZapisow.get();
+    }
+
+    public static long getNajwiekszaPartia() {
+        return najwiekszaPartia.get();
+    }
+
+    public static double getSredniaPartia() {
+        long commity = liczbaCommitow.get();
+        return commity == 0 ? 0.0 : (double) liczbaZapisow.get() / commity;
+    }
+
+    /** Zwraca liczbę commitów w przedziałach rozmiaru partii: 1, 2-4, 5-16, 17-64, >64. */
+    public static long[] getHistogramPartii() {
+        long[] wynik = new long[histogram.length()];
+        for (int i = 0; i < wynik.length; i++) {
+            wynik[i] = histogram.get(i);
+        }
+        return wynik;
+    }
+
+    public static void wyczysc() {
+        liczbaCommitow.set(0);
+        liczbaZapisow.set(0);
+        najwiekszaPartia.set(0);
+        for (int i = 0; i < histogram.length(); i++) {
+            histogram.set(i, 0);
+        }
+    }
+
+    /** Zwraca zwięzłe podsumowanie liczników (np. do logów). */
+    public static String podsumowanie() {
+        return "MetrykiZapisu{" +
+                "commity=" + getLiczbaCommitow() +
+                ", zapisy=" + getLiczbaZapisow() +
+                ", sredniaPartia=" + String.format("%.2f", getSredniaPartia()) +
+                ", najwiekszaPartia=" + getNajwiekszaPartia() +
+                '}';
+    }
+
+    private static int przedzial(long rozmiarPartii) {
+        for (int i = 0; i < GRANICE_PRZEDZIALOW.length; i++) {
+            if (rozmiarPartii <= GRANICE_PRZEDZIALOW[i]) {
+                return i;
+            }
+        }
+        return GRANICE_PRZEDZIALOW.length;
+    }
+}
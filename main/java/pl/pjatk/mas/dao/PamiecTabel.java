@@ -0,0 +1,259 @@
+package pl.pjatk.mas.dao;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Pamięć podręczna sparsowanych tabel: plik -> (nazwa parsera -> rekordy + indeksy kluczy).
+ * Wpis jest ważny, dopóki czas modyfikacji i rozmiar pliku się nie zmienią; zapisy przez DAO unieważniają go od razu
+ * (czas modyfikacji ma ograniczoną rozdzielczość, więc dwa szybkie zapisy tej samej długości mogłyby zostać przeoczone).
+ * Dopisanie linii na końcu pliku nie unieważnia wpisu - nowy rekord jest parsowany i dokładany do listy i indeksu.
+ */
+public final class PamiecTabel {
+
+    private static final Map<Path, Map<String, Wpis>> wpisy = new ConcurrentHashMap<>();
+
+    // Numer "wersji" pliku podbijany przy każdej zmianie - wynik odczytu, w trakcie którego plik
+    // został zmieniony przez DAO, nie trafia do pamięci.
+    private static final Map<Path, AtomicLong> wersje = new ConcurrentHashMap<>();
+
+    private static final AtomicLong trafienia = new AtomicLong();
+    private static final AtomicLong chybienia = new AtomicLong();
+
+    private PamiecTabel() {
+    }
+
+    /**
+     * Zwraca rekordy z pamięci albo wczytuje je i zapamiętuje. Zwracana lista jest współdzielona -
+     * wywołujący musi ją skopiować przed wydaniem na zewnątrz.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> List<T> pobierz(String sciezka, BazaDAO.ParserTabeli<T> parser, Supplier<List<T>> wczytaj) {
+        return (List<T>) wpis(sciezka, parser, wczytaj).rekordy;
+    }
+
+    /**
+     * Wyszukuje rekord po kluczu (indeks danej funkcji klucza budowany przy pierwszym wyszukiwaniu po wczytaniu tabeli).
+     * Zwracany obiekt jest współdzielony - wywołujący musi go skopiować.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T znajdz(String sciezka, BazaDAO.ParserTabeli<T> parser, Supplier<List<T>> wczytaj,
+                        Function<T, ?> klucz, Object wartosc) {
+        return (T) wpis(sciezka, parser, wczytaj).indeks(klucz).get(wartosc);
+    }
+
+    /** Czy rekordy pliku dla danego parsera są w pamięci i plik od tego czasu się nie zmienił. */
+    static boolean czyAktualny(String sciezka, BazaDAO.ParserTabeli<?> parser) {
+        Path plik = normalizuj(sciezka);
+        Map<String, Wpis> tabela = wpisy.get(plik);
+        Wpis wpis = (tabela == null) ? null : tabela.get(parser.nazwa);
+        return wpis != null && wpis.stempel.equals(Stempel.odczytaj(plik));
+    }
+
+    /**
+     * Uaktualnia wpisy pliku po dopisaniu linii na jego końcu. Wpisy aktualne przed zapisem dostają nowy rekord
+     * (sparsowany własnym parserem), pozostałe są usuwane.
+     */
+    static void dopisano(String sciezka, Stempel przedZapisem, String linia) {
+        Path plik = normalizuj(sciezka);
+        wersja(plik).incrementAndGet();
+
+        Map<String, Wpis> tabela = wpisy.get(plik);
+        if (tabela == null) {
+            return;
+        }
+
+        Stempel poZapisie = Stempel.odczytaj(plik);
+        for (Map.Entry<String, Wpis> e : tabela.entrySet()) {
+            Wpis wpis = e.getValue();
+            if (wpis.stempel.equals(przedZapisem)) {
+                e.setValue(wpis.zDopisanym(linia, poZapisie));
+            } else {
+                tabela.remove(e.getKey());
+            }
+        }
+    }
+
+    /** Usuwa z pamięci wszystkie wpisy dla pliku (wywoływane przy nadpisaniu lub usunięciu pliku przez DAO). */
+    static void uniewaznij(String sciezka) {
+        Path plik = normalizuj(sciezka);
+        wersja(plik).incrementAndGet();
+
+        Map<String, Wpis> tabela = wpisy.get(plik);
+        if (tabela != null) {
+            tabela.clear();
+        }
+    }
+
+    public static long getTrafienia() {
+        return trafienia.get();
+    }
+
+    public static long getChybienia() {
+        return chybienia.get();
+    }
+
+    /** Czyści pamięć i zeruje liczniki. */
+    public static void wyczysc() {
+        wpisy.clear();
+        for (AtomicLong w : wersje.values()) {
+            w.incrementAndGet();
+        }
+        trafienia.set(0);
+        chybienia.set(0);
+    }
+
+    public static String podsumowanie() {
+        return "trafienia=" + getTrafienia() + ", chybienia=" + getChybienia();
+    }
+
+    private static <T> Wpis wpis(String sciezka, BazaDAO.ParserTabeli<T> parser, Supplier<List<T>> wczytaj) {
+        Path plik = normalizuj(sciezka);
+        Stempel stempel = Stempel.odczytaj(plik);
+        Map<String, Wpis> tabela = wpisy.computeIfAbsent(plik, p -> new ConcurrentHashMap<>());
+
+        Wpis wpis = tabela.get(parser.nazwa);
+        if (wpis != null && wpis.stempel.equals(stempel)) {
+            trafienia.incrementAndGet();
+            return wpis;
+        }
+
+        chybienia.incrementAndGet();
+        long wersja = wersja(plik).get();
+        wpis = new Wpis(stempel, parser.funkcja, wczytaj.get());
+
+        if (wersja(plik).get() == wersja && stempel.equals(Stempel.odczytaj(plik))) {
+            tabela.put(parser.nazwa, wpis);
+        }
+        return wpis;
+    }
+
+    private static AtomicLong wersja(Path plik) {
+        return wersje.computeIfAbsent(plik, p -> new AtomicLong());
+    }
+
+    private static Path normalizuj(String sciezka) {
+        return Path.of(sciezka).toAbsolutePath().normalize();
+    }
+
+    /**
+     * Niezmienna lista rekordów z indeksami budowanymi leniwie, po jednym na funkcję klucza
+     * (rozpoznawaną po klasie; funkcje klucza powinny być stałymi albo referencjami do getterów).
+     */
+    private static final class Wpis {
+        private final Stempel stempel;
+        private final Function<LiniaCsv, ?> parser;
+        private final List<?> rekordy;
+        private final Map<Class<?>, Indeks> indeksy = new ConcurrentHashMap<>();
+
+        private Wpis(Stempel stempel, Function<LiniaCsv, ?> parser, List<?> rekordy) {
+            this.stempel = stempel;
+            this.parser = parser;
+            this.rekordy = rekordy;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<Object, Object> indeks(Function<?, ?> klucz) {
+            return indeksy.computeIfAbsent(klucz.getClass(),
+                    k -> new Indeks((Function<Object, ?>) klucz, rekordy)).mapa;
+        }
+
+        /** Nowy wpis z rekordem z dopisanej linii (kopiowane są tylko referencje - bez ponownego parsowania pliku). */
+        private Wpis zDopisanym(String linia, Stempel nowyStempel) {
+            byte[] bajty = linia.getBytes(StandardCharsets.UTF_8);
+            LiniaCsv widok = new LiniaCsv();
+            widok.ustaw(ByteBuffer.wrap(bajty), 0, bajty.length, 0); // numer linii w pliku nie jest tu znany
+
+            Object rekord = parser.apply(widok);
+
+            List<Object> noweRekordy = new ArrayList<>(rekordy);
+            if (rekord != null) {
+                noweRekordy.add(rekord);
+            }
+            Wpis nowy = new Wpis(nowyStempel, parser, noweRekordy);
+
+            for (Map.Entry<Class<?>, Indeks> e : indeksy.entrySet()) {
+                nowy.indeksy.put(e.getKey(), e.getValue().zRekordem(rekord));
+            }
+            return nowy;
+        }
+    }
+
+    /** Indeks klucz -> rekord; przy powtórzonym kluczu wygrywa pierwszy rekord (jak przy przeszukiwaniu listy). */
+    private static final class Indeks {
+        private final Function<Object, ?> klucz;
+        private final Map<Object, Object> mapa;
+
+        private Indeks(Function<Object, ?> klucz, List<?> rekordy) {
+            this.klucz = klucz;
+            this.mapa = new HashMap<>();
+            for (Object rekord : rekordy) {
+                mapa.putIfAbsent(klucz.apply(rekord), rekord);
+            }
+        }
+
+        private Indeks(Function<Object, ?> klucz, Map<Object, Object> mapa) {
+            this.klucz = klucz;
+            this.mapa = mapa;
+        }
+
+        private Indeks zRekordem(Object rekord) {
+            Map<Object, Object> nowa = new HashMap<>(mapa);
+            if (rekord != null) {
+                nowa.putIfAbsent(klucz.apply(rekord), rekord);
+            }
+            return new Indeks(klucz, nowa);
+        }
+    }
+
+    /** Czas modyfikacji i rozmiar pliku (brak pliku = null/-1). */
+    static final class Stempel {
+        private final FileTime czasModyfikacji;
+        private final long rozmiar;
+
+        private Stempel(FileTime czasModyfikacji, long rozmiar) {
+            this.czasModyfikacji = czasModyfikacji;
+            this.rozmiar = rozmiar;
+        }
+
+        static Stempel odczytaj(String sciezka) {
+            return odczytaj(normalizuj(sciezka));
+        }
+
+        private static Stempel odczytaj(Path plik) {
+            try {
+                BasicFileAttributes atrybuty = Files.readAttributes(plik, BasicFileAttributes.class);
+                return new Stempel(atrybuty.lastModifiedTime(), atrybuty.size());
+            } catch (IOException e) {
+                return new Stempel(null, -1);
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Stempel inny)) {
+                return false;
+            }
+            return rozmiar == inny.rozmiar && Objects.equals(czasModyfikacji, inny.czasModyfikacji);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(czasModyfikacji, rozmiar);
+        }
+    }
+}
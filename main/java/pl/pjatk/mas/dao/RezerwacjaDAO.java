@@ -5,14 +5,25 @@ import pl.pjatk.mas.model.StatusRezerwacji;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
- * DAO odpowiedzialne za zapis/odczyt rezerwacji w pliku rezerwacje.csv.
+ * DAO odpowiedzialne za zapis/odczyt rezerwacji w pliku rezerwacje.csv
+ * albo - w układzie partycjonowanym - w plikach rezerwacje/RRRR-MM.csv (jeden na miesiąc dataOd) z manifestem.
  * Przechowuje wyłącznie pola prymitywne oraz ID relacji (klientId/samochodId/dodatkiIds).
  * Składanie relacji do obiektów domenowych odbywa się w warstwie Service.
  */
@@ -21,68 +32,201 @@ public class RezerwacjaDAO extends BazaDAO {
     private static final String PLIK = "rezerwacje.csv";
     private static final String HEADER = "id;klientId;samochodId;dataOd;dataDo;status;cenaCalkowita;dodatkiIds";
 
+    // Dziennik zmian: U;<pełny wiersz> (aktualizacja), S;<id>;<status> (zmiana statusu), D;<id> (usunięcie).
+    private static final String PLIK_DZIENNIKA = "rezerwacje.dziennik.csv";
+    private static final String HEADER_DZIENNIKA = "operacja;dane";
+
+    private enum OperacjaDziennika { U, S, D }
+
+    // Układ partycjonowany: rezerwacje/<RRRR-MM>.csv + manifest z zakresem dat każdej partycji.
+    private static final String KATALOG_PARTYCJI = "rezerwacje/";
+    private static final String PLIK_MANIFESTU = KATALOG_PARTYCJI + "manifest.csv";
+    private static final String HEADER_MANIFESTU = "partycja;minDataOd;maxDataDo;liczba;minId;maxId";
+    private static final DateTimeFormatter FORMAT_PARTYCJI = DateTimeFormatter.ofPattern("yyyy-MM");
+
+    // Układ o stałej szerokości pól (KonfiguracjaBazy.isStalaSzerokoscRezerwacji): pierwsze siedem pól dopełniane
+    // spacjami do podanych szerokości, więc status zaczyna się w bajcie 61, a cena w bajcie 72 każdego wiersza.
+    // Parsery pomijają spacje na brzegach pól, więc taki plik jest nadal zwykłym CSV.
+    private static final int[] SZEROKOSCI_POL = {12, 12, 12, 10, 10, 10, 14};
+    private static final int POLE_STATUSU = 5;
+
+    // Dopisywanie do dziennika, jego kompaktowanie i zmiany manifestu partycji nie mogą się przeplatać.
+    private static final Object BLOKADA_DZIENNIKA = new Object();
+
+    private final ParserTabeli<Rezerwacja> parserRezerwacji =
+            zarejestrujParser("rezerwacje", this::parseRezerwacjaBezRelacji);
+    private final ParserTabeli<WierszRezerwacji> parserWierszy = zarejestrujParser("rezerwacje.wiersze", this::parseWiersz);
+
     /** Odczytuje rezerwacje bez relacji (klient/samochód/dodatki są dopinane w Service). */
     public List<Rezerwacja> wczytajWszystkie() {
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
-        List<Rezerwacja> rezerwacje = new ArrayList<>();
+        if (!czyIstniejeDziennik()) {
+            List<Rezerwacja> rezerwacje = new ArrayList<>();
+            for (String plik : plikiDanych()) {
+                rezerwacje.addAll(wczytajRekordy(plik, parserRezerwacji, this::kopia));
+            }
+            return rezerwacje;
+        }
 
-        if (linie.size() <= 1) {
-            return rezerwacje; // brak danych lub sam nagłówek
+        return wczytajWszystkieZKluczami().stream()
+                .map(WierszRezerwacji::getRezerwacja)
+                .collect(Collectors.toList());
+    }
+
+    /** Odczytuje rezerwacje razem z ID relacji (klientId/samochodId/dodatkiIds) w jednym przebiegu po pliku. */
+    public List<WierszRezerwacji> wczytajWszystkieZKluczami() {
+        List<WierszRezerwacji> wiersze = new ArrayList<>();
+        for (String plik : plikiDanych()) {
+            wiersze.addAll(wczytajRekordy(plik, parserWierszy, this::kopia));
         }
+        return nalozDziennik(wiersze);
+    }
 
-        for (int i = 1; i < linie.size(); i++) {
-            Rezerwacja r = parseRezerwacjaBezRelacji(linie.get(i));
-            if (r != null) {
-                rezerwacje.add(r);
-            }
+    /**
+     * Leniwy strumień rezerwacji (bez relacji) - wiersze są parsowane w trakcie przechodzenia po strumieniu.
+     * Strumień trzyma otwarty plik, więc należy go zamknąć (try-with-resources).
+     */
+    public Stream<Rezerwacja> strumien() {
+        return strumienZKluczami().map(WierszRezerwacji::getRezerwacja);
+    }
+
+    /** Leniwy strumień wierszy z ID relacji (z nałożonym dziennikiem zmian). Należy go zamknąć. */
+    public Stream<WierszRezerwacji> strumienZKluczami() {
+        Stream<WierszRezerwacji> wiersze = strumienPlikow(plikiDanych());
+        if (!czyIstniejeDziennik()) {
+            return wiersze;
         }
 
-        return rezerwacje;
+        // Dziennik jest ograniczony progiem kompaktowania, więc można go wczytać w całości.
+        Map<Long, ZmianaZDziennika> zmiany = wczytajZmianyZDziennika();
+        return wiersze.map(w -> zastosujZmiane(w, zmiany)).filter(Objects::nonNull);
+    }
+
+    /**
+     * Leniwy strumień wierszy, których termin nachodzi na [dataOd, dataDo] (obie daty włącznie).
+     * W układzie partycjonowanym otwierane są tylko partycje, których zakres z manifestu nachodzi na termin.
+     * Należy go zamknąć.
+     */
+    public Stream<WierszRezerwacji> strumienWZakresie(LocalDate dataOd, LocalDate dataDo) {
+        if (dataOd == null || dataDo == null) {
+            throw new IllegalArgumentException("Daty nie mogą być null");
+        }
+
+        Stream<WierszRezerwacji> wiersze = strumienPlikow(plikiDanych(dataOd, dataDo));
+
+        if (czyIstniejeDziennik()) {
+            Map<Long, ZmianaZDziennika> zmiany = wczytajZmianyZDziennika();
+            Set<Long> przeczytane = new HashSet<>();
+
+            Stream<WierszRezerwacji> zPartycji = wiersze
+                    .peek(w -> przeczytane.add(w.getRezerwacja().getId()))
+                    .map(w -> zastosujZmiane(w, zmiany))
+                    .filter(Objects::nonNull);
+
+            // Aktualizacja z dziennika mogła przesunąć termin poza zakres partycji, w której leży wiersz bazowy
+            // (do kompaktowania) - takie wiersze bierzemy wprost z dziennika. Strumień jest sekwencyjny,
+            // więc zbiór przeczytanych ID jest kompletny, zanim zostanie odczytana ta część.
+            Stream<WierszRezerwacji> przeniesione = Stream.of(zmiany).flatMap(z -> z.entrySet().stream()
+                    .filter(e -> !przeczytane.contains(e.getKey()))
+                    .map(e -> e.getValue().wierszPrzeniesiony())
+                    .filter(Objects::nonNull));
+
+            wiersze = Stream.concat(zPartycji, przeniesione);
+        }
+
+        return wiersze.filter(w -> !dataDo.isBefore(w.getRezerwacja().getDataOd())
+                && !dataOd.isAfter(w.getRezerwacja().getDataDo()));
     }
 
     /** Zapisuje wszystkie rezerwacje do CSV (nadpisuje plik). Service musi zapewnić ustawione relacje przed zapisem (klient/samochód/dodatki). */
     public void zapiszWszystkie(List<Rezerwacja> rezerwacje) {
-        List<String> linie = new ArrayList<>();
-        linie.add(HEADER);
+        List<WierszRezerwacji> wiersze = new ArrayList<>();
 
         if (rezerwacje != null) {
             for (Rezerwacja r : rezerwacje) {
-                linie.add(toLinia(r));
+                wiersze.add(doWiersza(r));
             }
         }
 
-        zapiszLinie(sciezkaDoPliku(PLIK), linie);
+        zapiszWiersze(wiersze);
+    }
+
+    /**
+     * Dopisuje nową rezerwację na końcu pliku. Service musi zapewnić ustawione relacje (klient/samochód/dodatki)
+     * oraz ID, które nie było wcześniej użyte - także przez rezerwację usuniętą wpisem D w dzienniku,
+     * bo wpisy dziennika dla tego ID przykryłyby nowy wiersz (zob. najwiekszeIdWDzienniku).
+     */
+    public void dodaj(Rezerwacja rezerwacja) {
+        if (rezerwacja == null) {
+            throw new IllegalArgumentException("Rezerwacja nie może być null");
+        }
+
+        if (!czyPartycjonowane()) {
+            dopiszWiersz(sciezkaDoPliku(PLIK), HEADER, toLinia(rezerwacja), rezerwacja.getId());
+            return;
+        }
+
+        synchronized (BLOKADA_DZIENNIKA) {
+            String partycja = nazwaPartycji(rezerwacja.getDataOd());
+            dopiszWiersz(sciezkaPartycji(partycja), HEADER, toLinia(rezerwacja), rezerwacja.getId());
+
+            Map<String, Partycja> manifest = wczytajManifest();
+            manifest.computeIfAbsent(partycja, Partycja::new).uwzglednij(rezerwacja);
+            zapiszManifest(manifest);
+        }
     }
 
-    /** Wyszukuje rezerwację po ID (pełny odczyt pliku). */
+    /**
+     * Wyszukuje rezerwację po ID (indeks klucza głównego każdego pliku danych + zmiany z dziennika).
+     * Bez wczytanej tabeli czytany jest tylko wiersz wskazany przez indeks pozycji (plik .idx obok pliku danych).
+     */
     public Rezerwacja znajdzPoId(Long id) {
         if (id == null) {
             throw new IllegalArgumentException("ID rezerwacji nie może być null");
         }
 
-        return wczytajWszystkie().stream()
-                .filter(r -> id.equals(r.getId()))
-                .findFirst()
-                .orElse(null);
+        Rezerwacja znaleziona = null;
+        for (String plik : plikiDanych()) {
+            znaleziona = znajdzRekordPoId(plik, parserRezerwacji, this::kopia, Rezerwacja::getId, id);
+            if (znaleziona != null) {
+                break;
+            }
+        }
+
+        if (znaleziona == null || !czyIstniejeDziennik()) {
+            return znaleziona;
+        }
+
+        WierszRezerwacji poZmianach = zastosujZmiane(new WierszRezerwacji(znaleziona, null, null, List.of()),
+                wczytajZmianyZDziennika());
+        return poZmianach == null ? null : poZmianach.getRezerwacja();
     }
 
-    /** Aktualizuje rezerwację (podmienia rekord o tym samym ID). */
+    /** Aktualizuje rezerwację (podmienia rekord o tym samym ID). W trybie dziennika dopisuje tylko wpis zmiany. */
     public void aktualizuj(Rezerwacja rezerwacja) {
         if (rezerwacja == null) {
             throw new IllegalArgumentException("Rezerwacja nie może być null");
         }
 
-        List<Rezerwacja> rezerwacje = wczytajWszystkie();
-        for (int i = 0; i < rezerwacje.size(); i++) {
-            if (rezerwacja.getId().equals(rezerwacje.get(i).getId())) {
-                rezerwacje.set(i, rezerwacja);
-                zapiszWszystkie(rezerwacje);
-                return;
+        if (KonfiguracjaBazy.isDziennikRezerwacji()) {
+            dopiszDoDziennika("U;" + toLinia(rezerwacja));
+            return;
+        }
+
+        WierszRezerwacji nowy = doWiersza(rezerwacja);
+        if (zmienWPartycjach(Map.of(rezerwacja.getId(), w -> nowy), List.of())) {
+            return;
+        }
+
+        List<WierszRezerwacji> wiersze = wczytajWszystkieZKluczami();
+        for (int i = 0; i < wiersze.size(); i++) {
+            if (rezerwacja.getId().equals(wiersze.get(i).getRezerwacja().getId())) {
+                wiersze.set(i, doWiersza(rezerwacja));
+                break;
             }
         }
 
         // Brak wpisu w pliku: zachowujemy poprzednie zachowanie (brak wyjątku).
-        zapiszWszystkie(rezerwacje);
+        zapiszWiersze(wiersze);
     }
 
     /** Usuwa rezerwację po ID. */
@@ -91,87 +235,243 @@ public class RezerwacjaDAO extends BazaDAO {
             throw new IllegalArgumentException("ID rezerwacji nie może być null");
         }
 
-        List<Rezerwacja> rezerwacje = wczytajWszystkie();
-        rezerwacje.removeIf(r -> id.equals(r.getId()));
-        zapiszWszystkie(rezerwacje);
+        if (KonfiguracjaBazy.isDziennikRezerwacji()) {
+            dopiszDoDziennika("D;" + id);
+            return;
+        }
+
+        if (zmienWPartycjach(Map.of(id, w -> null), List.of())) {
+            return;
+        }
+
+        List<WierszRezerwacji> wiersze = wczytajWszystkieZKluczami();
+        wiersze.removeIf(w -> id.equals(w.getRezerwacja().getId()));
+        zapiszWiersze(wiersze);
     }
 
-    /** Zwraca mapę: rezerwacjaId -> klientId. */
-    public Map<Long, Long> wczytajMapeKlientIdPoRezerwacjaId() {
-        Map<Long, Long> mapa = new HashMap<>();
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
+    /**
+     * Zmienia status rezerwacji. Nie wymaga ustawionych relacji (klient/samochód/dodatki).
+     * W układzie o stałej szerokości pól (bez dziennika) status jest nadpisywany w miejscu jednym zapisem pozycyjnym.
+     */
+    public void zmienStatus(Long id, StatusRezerwacji status) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID rezerwacji nie może być null");
+        }
+        if (status == null) {
+            throw new IllegalArgumentException("Status nie może być null");
+        }
 
-        for (int i = 1; i < linie.size(); i++) {
-            try {
-                String[] dane = linie.get(i).split(";", -1);
-                if (dane.length < 3) continue;
+        if (KonfiguracjaBazy.isDziennikRezerwacji()) {
+            dopiszDoDziennika("S;" + id + ";" + status);
+            return;
+        }
 
-                Long rezerwacjaId = Long.parseLong(dane[0]);
-                Long klientId = Long.parseLong(dane[1]);
-                mapa.put(rezerwacjaId, klientId);
-            } catch (Exception ignored) {
+        if (KonfiguracjaBazy.isStalaSzerokoscRezerwacji() && zmienStatusWMiejscu(id, status)) {
+            return;
+        }
+
+        UnaryOperator<WierszRezerwacji> zmianaStatusu = w -> {
+            w.getRezerwacja().setStatus(status);
+            return w;
+        };
+        if (zmienWPartycjach(Map.of(id, zmianaStatusu), List.of())) {
+            return;
+        }
+
+        List<WierszRezerwacji> wiersze = wczytajWszystkieZKluczami();
+        for (WierszRezerwacji w : wiersze) {
+            if (id.equals(w.getRezerwacja().getId())) {
+                w.getRezerwacja().setStatus(status);
             }
         }
+        zapiszWiersze(wiersze);
+    }
+
+    /**
+     * Zapisuje partię zmian jednym przepisaniem danych (z nałożonym dziennikiem): rezerwacje z listy są podmieniane
+     * lub dopisywane, ID z kolekcji usuwane. W układzie partycjonowanym przepisywane są tylko partycje ze zmienianymi
+     * wierszami. Service musi zapewnić ustawione relacje (klient/samochód/dodatki).
+     */
+    public void zapiszZmiany(List<Rezerwacja> zapisane, Collection<Long> usuniete) {
+        Map<Long, WierszRezerwacji> zmienione = new LinkedHashMap<>();
+        for (Rezerwacja r : zapisane) {
+            zmienione.put(r.getId(), doWiersza(r));
+        }
 
-        return mapa;
+        synchronized (BLOKADA_DZIENNIKA) {
+            Map<Long, UnaryOperator<WierszRezerwacji>> zmiany = new LinkedHashMap<>();
+            for (Long id : usuniete) {
+                zmiany.put(id, w -> null);
+            }
+            for (WierszRezerwacji nowy : zmienione.values()) {
+                zmiany.put(nowy.getRezerwacja().getId(), w -> nowy);
+            }
+            if (zmienWPartycjach(zmiany, zmienione.values())) {
+                return;
+            }
+
+            List<WierszRezerwacji> wiersze = new ArrayList<>();
+            for (WierszRezerwacji w : wczytajWszystkieZKluczami()) {
+                Long id = w.getRezerwacja().getId();
+                if (usuniete.contains(id)) {
+                    continue;
+                }
+                WierszRezerwacji nowy = zmienione.remove(id);
+                wiersze.add(nowy != null ? nowy : w);
+            }
+            wiersze.addAll(zmienione.values());
+            zapiszWiersze(wiersze);
+        }
     }
 
-    /** Zwraca mapę: rezerwacjaId -> samochodId. */
-    public Map<Long, Long> wczytajMapeSamochodIdPoRezerwacjaId() {
-        Map<Long, Long> mapa = new HashMap<>();
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
+    /**
+     * Zapisuje wszystkie rezerwacje (z nałożonym dziennikiem) do podanego pliku w zwykłym formacie CSV,
+     * bez dopełniania pól - niezależnie od układu, w jakim przechowywane są dane.
+     */
+    public void eksportujCsv(String sciezkaDocelowa) {
+        if (sciezkaDocelowa == null || sciezkaDocelowa.isBlank()) {
+            throw new IllegalArgumentException("Ścieżka pliku eksportu nie może być pusta");
+        }
+
+        List<String> linie = new ArrayList<>();
+        linie.add(HEADER);
+        for (WierszRezerwacji w : wczytajWszystkieZKluczami()) {
+            linie.add(toLinia(w, false));
+        }
+        zapiszLinie(sciezkaDocelowa, linie);
+    }
+
+    /**
+     * Największe ID rezerwacji występujące w dzienniku (0 bez dziennika) - także rezerwacji usuniętych wpisem D,
+     * których nie zwraca wczytajWszystkieZKluczami(), a których ID nie może zostać nadane ponownie.
+     */
+    public long najwiekszeIdWDzienniku() {
+        synchronized (BLOKADA_DZIENNIKA) {
+            if (!czyIstniejeDziennik()) {
+                return 0;
+            }
+            long maks = 0;
+            for (Long id : wczytajZmianyZDziennika().keySet()) {
+                maks = Math.max(maks, id);
+            }
+            return maks;
+        }
+    }
 
-        for (int i = 1; i < linie.size(); i++) {
+    /** Wpisuje zmiany z dziennika do pliku bazowego i usuwa dziennik. */
+    public void kompaktuj() {
+        synchronized (BLOKADA_DZIENNIKA) {
+            if (!czyIstniejeDziennik()) {
+                return;
+            }
+            zapiszWiersze(wczytajWszystkieZKluczami());
+        }
+    }
+
+    /** Zwraca mapę: rezerwacjaId -> klientId (mapa prymitywów - bez opakowywania ID w Long). */
+    public MapaLongLong wczytajMapeKlientIdPoRezerwacjaId() {
+        MapaLongLong mapa = new MapaLongLong();
+
+        if (czyIstniejeDziennik()) {
+            for (WierszRezerwacji w : wczytajWszystkieZKluczami()) {
+                mapa.wstaw(w.getRezerwacja().getId(), w.getKlientId());
+            }
+            return mapa;
+        }
+
+        przegladajDane(linia -> {
             try {
-                String[] dane = linie.get(i).split(";", -1);
-                if (dane.length < 3) continue;
+                KursorCsv pola = linia.kursor();
+                if (pola.liczbaPol() < 3) return;
 
-                Long rezerwacjaId = Long.parseLong(dane[0]);
-                Long samochodId = Long.parseLong(dane[2]);
-                mapa.put(rezerwacjaId, samochodId);
+                long rezerwacjaId = pola.nastepnyLong();
+                mapa.wstaw(rezerwacjaId, pola.nastepnyLong());
             } catch (Exception ignored) {
             }
-        }
+        });
 
         return mapa;
     }
 
-    /** Zwraca mapę: rezerwacjaId -> lista dodatekId. */
-    public Map<Long, List<Long>> wczytajMapeDodatekIdsPoRezerwacjaId() {
-        Map<Long, List<Long>> mapa = new HashMap<>();
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
+    /** Zwraca mapę: rezerwacjaId -> samochodId (mapa prymitywów). */
+    public MapaLongLong wczytajMapeSamochodIdPoRezerwacjaId() {
+        MapaLongLong mapa = new MapaLongLong();
 
-        for (int i = 1; i < linie.size(); i++) {
-            try {
-                String[] dane = linie.get(i).split(";", -1);
-                if (dane.length < 8) continue;
+        if (czyIstniejeDziennik()) {
+            for (WierszRezerwacji w : wczytajWszystkieZKluczami()) {
+                mapa.wstaw(w.getRezerwacja().getId(), w.getSamochodId());
+            }
+            return mapa;
+        }
 
-                Long rezerwacjaId = Long.parseLong(dane[0]);
-                String dodatkiIds = dane[7];
+        przegladajDane(linia -> {
+            try {
+                KursorCsv pola = linia.kursor();
+                if (pola.liczbaPol() < 3) return;
 
-                mapa.put(rezerwacjaId, parseListaId(dodatkiIds));
+                long rezerwacjaId = pola.nastepnyLong();
+                mapa.wstaw(rezerwacjaId, pola.pominPole().nastepnyLong());
             } catch (Exception ignored) {
             }
+        });
+
+        return mapa;
+    }
+
+    /**
+     * Zwraca mapę: rezerwacjaId -> ID dodatków. ID wszystkich rezerwacji leżą we wspólnej tablicy long[]
+     * (MapaLongTablic) - bez listy na każdy wiersz.
+     */
+    public MapaLongTablic wczytajMapeDodatekIdsPoRezerwacjaId() {
+        MapaLongTablic mapa = new MapaLongTablic();
+
+        if (czyIstniejeDziennik()) {
+            for (WierszRezerwacji w : wczytajWszystkieZKluczami()) {
+                mapa.poczatekWpisu(w.getRezerwacja().getId());
+                for (Long dodatekId : w.getDodatkiIds()) {
+                    mapa.dopiszWartosc(dodatekId);
+                }
+                mapa.zakonczWpis();
+            }
+            return mapa;
         }
 
+        przegladajDane(linia -> {
+            try {
+                KursorCsv pola = linia.kursor();
+                if (pola.liczbaPol() < 8) return;
+
+                mapa.poczatekWpisu(pola.nastepnyLong());
+                for (int i = 1; i < 7; i++) {
+                    pola.pominPole();
+                }
+                pola.nastepnaListaId(mapa::dopiszWartosc);
+                mapa.zakonczWpis();
+            } catch (Exception ignored) {
+                // wpis rozpoczęty dla błędnej linii zostanie porzucony przy kolejnym poczatekWpisu
+            }
+        });
+
+        mapa.przytnij();
         return mapa;
     }
 
     /** Odpowiada za parsowanie jednej linii CSV do obiektu Rezerwacja (bez relacji). */
-    private Rezerwacja parseRezerwacjaBezRelacji(String linia) {
+    private Rezerwacja parseRezerwacjaBezRelacji(LiniaCsv linia) {
         try {
-            String[] dane = linia.split(";", -1);
+            KursorCsv pola = linia.kursor();
 
             // id;klientId;samochodId;dataOd;dataDo;status;cenaCalkowita;dodatkiIds
-            if (dane.length < 7) {
+            if (pola.liczbaPol() < 7) {
                 return null;
             }
 
-            Long id = Long.parseLong(dane[0]);
-            LocalDate dataOd = LocalDate.parse(dane[3]);
-            LocalDate dataDo = LocalDate.parse(dane[4]);
-            StatusRezerwacji status = StatusRezerwacji.valueOf(dane[5]);
-            BigDecimal cenaCalkowita = new BigDecimal(dane[6]);
+            Long id = pola.nastepnyLong();
+            pola.pominPole().pominPole();
+            LocalDate dataOd = pola.nastepnaData();
+            LocalDate dataDo = pola.nastepnaData();
+            StatusRezerwacji status = pola.nastepnyEnum(StatusRezerwacji.class);
+            BigDecimal cenaCalkowita = pola.nastepnyDecimal();
 
             Rezerwacja r = new Rezerwacja(id, null, null, dataOd, dataDo);
             r.setStatus(status);
@@ -179,40 +479,504 @@ public class RezerwacjaDAO extends BazaDAO {
 
             return r;
         } catch (Exception e) {
-            System.err.println("Błąd podczas wczytywania rezerwacji: " + e.getMessage());
+            System.err.println("Błąd podczas wczytywania rezerwacji (linia " + linia.numer() + "): " + e.getMessage());
             return null;
         }
     }
 
-    /** Odpowiada za budowanie jednej linii CSV na podstawie obiektu Rezerwacja. Service musi zapewnić, że relacje klient/samochód/dodatki są ustawione. */
-    private String toLinia(Rezerwacja r) {
-        String dodatkiIds = r.getDodatki().stream()
-                .map(d -> d.getId().toString())
-                .collect(Collectors.joining(","));
+    /** Kopia rezerwacji bez relacji (wczytane wiersze są współdzielone przez PamiecTabel). */
+    private Rezerwacja kopia(Rezerwacja r) {
+        Rezerwacja kopia = new Rezerwacja(r.getId(), null, null, r.getDataOd(), r.getDataDo());
+        kopia.setStatus(r.getStatus());
+        kopia.setCenaCalkowita(r.getCenaCalkowita());
+        return kopia;
+    }
+
+    private WierszRezerwacji kopia(WierszRezerwacji w) {
+        return new WierszRezerwacji(kopia(w.getRezerwacja()), w.getKlientId(), w.getSamochodId(),
+                new ArrayList<>(w.getDodatkiIds()));
+    }
+
+    /** Parsuje linię CSV do rezerwacji (bez relacji) wraz z kluczami obcymi. */
+    private WierszRezerwacji parseWiersz(LiniaCsv linia) {
+        try {
+            KursorCsv pola = linia.kursor();
+
+            // id;klientId;samochodId;dataOd;dataDo;status;cenaCalkowita;dodatkiIds
+            if (pola.liczbaPol() < 7) {
+                return null;
+            }
+
+            Long id = pola.nastepnyLong();
+            Long klientId = pola.nastepnyLong();
+            Long samochodId = pola.nastepnyLong();
+            LocalDate dataOd = pola.nastepnaData();
+            LocalDate dataDo = pola.nastepnaData();
+            StatusRezerwacji status = pola.nastepnyEnum(StatusRezerwacji.class);
+            BigDecimal cenaCalkowita = pola.nastepnyDecimal();
+            List<Long> dodatkiIds = pola.maPole() ? pola.nastepnaListaId() : new ArrayList<>();
+
+            Rezerwacja r = new Rezerwacja(id, null, null, dataOd, dataDo);
+            r.setStatus(status);
+            r.setCenaCalkowita(cenaCalkowita);
 
-        return r.getId() + ";" +
-                r.getKlient().getId() + ";" +
-                r.getSamochod().getId() + ";" +
-                r.getDataOd() + ";" +
-                r.getDataDo() + ";" +
-                r.getStatus() + ";" +
-                r.getCenaCalkowita() + ";" +
-                dodatkiIds;
+            return new WierszRezerwacji(r, klientId, samochodId, dodatkiIds);
+        } catch (Exception e) {
+            System.err.println("Błąd podczas wczytywania rezerwacji (linia " + linia.numer() + "): " + e.getMessage());
+            return null;
+        }
     }
 
-    /** Odpowiada za parsowanie listy ID zapisanej w CSV w formacie "1,2,3". Pusty string oznacza brak dodatków. */
-    private List<Long> parseListaId(String csv) {
-        List<Long> ids = new ArrayList<>();
-        if (csv == null || csv.isBlank()) {
-            return ids;
+    /** Nakłada wpisy dziennika (w kolejności dopisania) na wiersze z pliku bazowego. */
+    private List<WierszRezerwacji> nalozDziennik(List<WierszRezerwacji> wiersze) {
+        if (!czyIstniejeDziennik()) {
+            return wiersze;
         }
 
-        for (String part : csv.split(",")) {
-            if (!part.isBlank()) {
-                ids.add(Long.parseLong(part.trim()));
+        Map<Long, ZmianaZDziennika> zmiany = wczytajZmianyZDziennika();
+        List<WierszRezerwacji> wynik = new ArrayList<>(wiersze.size());
+        for (WierszRezerwacji w : wiersze) {
+            WierszRezerwacji poZmianie = zastosujZmiane(w, zmiany);
+            if (poZmianie != null) {
+                wynik.add(poZmianie);
             }
         }
+        return wynik;
+    }
+
+    /** Zwija wpisy dziennika do jednej zmiany na ID rezerwacji (kolejność wpisów ma znaczenie). */
+    private Map<Long, ZmianaZDziennika> wczytajZmianyZDziennika() {
+        Map<Long, ZmianaZDziennika> zmiany = new HashMap<>();
+
+        przegladajLinie(sciezkaDoPliku(PLIK_DZIENNIKA), linia -> {
+            try {
+                KursorCsv pola = linia.kursor();
+                OperacjaDziennika operacja = pola.nastepnyEnum(OperacjaDziennika.class);
+
+                switch (operacja) {
+                    case U -> {
+                        linia.pominPrefiks(2);
+                        WierszRezerwacji nowy = parseWiersz(linia);
+                        if (nowy != null) {
+                            ZmianaZDziennika z = zmiany.computeIfAbsent(nowy.getRezerwacja().getId(), id -> new ZmianaZDziennika());
+                            z.wiersz = nowy;
+                            z.status = null;
+                        }
+                    }
+                    case S -> {
+                        ZmianaZDziennika z = zmiany.computeIfAbsent(pola.nastepnyLong(), id -> new ZmianaZDziennika());
+                        z.status = pola.nastepnyEnum(StatusRezerwacji.class);
+                    }
+                    case D -> zmiany.computeIfAbsent(pola.nastepnyLong(), id -> new ZmianaZDziennika()).usunieta = true;
+                }
+            } catch (Exception e) {
+                System.err.println("Błąd podczas wczytywania dziennika rezerwacji (linia " + linia.numer() + "): " + e.getMessage());
+            }
+        });
+
+        return zmiany;
+    }
+
+    /** Zwraca wiersz po zmianach z dziennika albo null, gdy rezerwacja została usunięta. */
+    private WierszRezerwacji zastosujZmiane(WierszRezerwacji wiersz, Map<Long, ZmianaZDziennika> zmiany) {
+        ZmianaZDziennika z = zmiany.get(wiersz.getRezerwacja().getId());
+        if (z == null) {
+            return wiersz;
+        }
+        if (z.usunieta) {
+            return null;
+        }
+
+        // Jak w trybie bez dziennika: aktualizacja dotyczy tylko ID obecnych w pliku bazowym.
+        WierszRezerwacji wynik = (z.wiersz != null) ? z.wiersz : wiersz;
+        if (z.status != null) {
+            wynik.getRezerwacja().setStatus(z.status);
+        }
+        return wynik;
+    }
+
+    /** Wynik wszystkich wpisów dziennika dla jednego ID: ostatni pełny wiersz, późniejszy status, usunięcie. */
+    private static final class ZmianaZDziennika {
+        private WierszRezerwacji wiersz;
+        private StatusRezerwacji status;
+        private boolean usunieta;
+
+        /** Pełny wiersz z dziennika (ze statusem po zmianach) lub null, gdy go nie ma albo rezerwację usunięto. */
+        private WierszRezerwacji wierszPrzeniesiony() {
+            if (usunieta || wiersz == null) {
+                return null;
+            }
+            if (status != null) {
+                wiersz.getRezerwacja().setStatus(status);
+            }
+            return wiersz;
+        }
+    }
+
+    /** Dopisuje wpis do dziennika; po przekroczeniu progu rozmiaru wpisuje dziennik do pliku bazowego. */
+    private void dopiszDoDziennika(String wpis) {
+        synchronized (BLOKADA_DZIENNIKA) {
+            String sciezka = sciezkaDoPliku(PLIK_DZIENNIKA);
+            dopiszLinie(sciezka, HEADER_DZIENNIKA, wpis);
+
+            if (rozmiarPliku(sciezka) >= KonfiguracjaBazy.getProgKompaktowaniaDziennika()) {
+                kompaktuj();
+            }
+        }
+    }
+
+    /**
+     * Nadpisuje pole statusu w pliku (lub partycji) zawierającym rezerwację. Zwraca false, gdy trzeba przepisać dane
+     * zwykłą ścieżką: istnieje dziennik (jego wpisy przykryłyby zmianę), wiersza nie ma albo nie ma on stałej szerokości
+     * (np. zapisany przed włączeniem opcji) i nowy status się w nim nie mieści.
+     */
+    private boolean zmienStatusWMiejscu(Long id, StatusRezerwacji status) {
+        synchronized (BLOKADA_DZIENNIKA) {
+            if (czyIstniejeDziennik()) {
+                return false;
+            }
+            for (String plik : plikiDanych()) {
+                if (nadpiszPole(plik, id, POLE_STATUSU, status.name())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private boolean czyIstniejeDziennik() {
+        return rozmiarPliku(sciezkaDoPliku(PLIK_DZIENNIKA)) > 0;
+    }
+
+    private void usunDziennik() {
+        usunPlik(sciezkaDoPliku(PLIK_DZIENNIKA));
+    }
+
+    /** Zapisuje wiersze (z kluczami obcymi) do pliku bazowego (lub partycji) i usuwa dziennik. */
+    private void zapiszWiersze(List<WierszRezerwacji> wiersze) {
+        synchronized (BLOKADA_DZIENNIKA) {
+            if (czyPartycjonowane()) {
+                zapiszPartycje(wiersze);
+            } else {
+                List<String> linie = new ArrayList<>();
+                linie.add(HEADER);
+                for (WierszRezerwacji w : wiersze) {
+                    linie.add(toLinia(w));
+                }
+                zapiszLinie(sciezkaDoPliku(PLIK), linie);
+            }
+            usunDziennik(); // pełny zapis zawiera już wszystkie zmiany z dziennika
+        }
+    }
+
+    /**
+     * Czy rezerwacje są w układzie partycjonowanym. Gdy partycjonowanie jest włączone w KonfiguracjaBazy,
+     * a dane są jeszcze w jednym pliku, wykonuje migrację w miejscu.
+     * Istniejący manifest zawsze wygrywa z konfiguracją - wyłączenie opcji nie "gubi" danych.
+     */
+    private boolean czyPartycjonowane() {
+        if (rozmiarPliku(sciezkaDoPliku(PLIK_MANIFESTU)) > 0) {
+            return true;
+        }
+        if (!KonfiguracjaBazy.isPartycjonowanieRezerwacji()) {
+            return false;
+        }
+
+        synchronized (BLOKADA_DZIENNIKA) {
+            if (rozmiarPliku(sciezkaDoPliku(PLIK_MANIFESTU)) == 0) {
+                migrujDoPartycji();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Przenosi rezerwacje z rezerwacje.csv (z nałożonym dziennikiem) do partycji miesięcznych.
+     * Manifest zapisywany jest po partycjach, a stary plik usuwany na końcu - przerwana migracja
+     * zostanie po prostu powtórzona przy kolejnym odczycie.
+     */
+    private void migrujDoPartycji() {
+        List<WierszRezerwacji> wiersze = nalozDziennik(wczytajRekordy(sciezkaDoPliku(PLIK), this::parseWiersz));
+        zapiszPartycje(wiersze);
+        usunDziennik();
+        usunPlik(sciezkaDoPliku(PLIK));
+    }
+
+    /** Przepisuje wszystkie partycje i manifest; partycje, które przestały istnieć, są usuwane. */
+    private void zapiszPartycje(List<WierszRezerwacji> wiersze) {
+        Map<String, List<String>> liniePoPartycji = new TreeMap<>();
+        Map<String, Partycja> manifest = new TreeMap<>();
+
+        for (WierszRezerwacji w : wiersze) {
+            String partycja = nazwaPartycji(w.getRezerwacja().getDataOd());
+            liniePoPartycji.computeIfAbsent(partycja, p -> new ArrayList<>(List.of(HEADER))).add(toLinia(w));
+            manifest.computeIfAbsent(partycja, Partycja::new).uwzglednij(w.getRezerwacja());
+        }
+
+        Set<String> poprzednie = wczytajManifest().keySet();
+
+        for (Map.Entry<String, List<String>> e : liniePoPartycji.entrySet()) {
+            zapiszLinie(sciezkaPartycji(e.getKey()), e.getValue());
+        }
+        zapiszManifest(manifest);
+
+        for (String partycja : poprzednie) {
+            if (!manifest.containsKey(partycja)) {
+                usunPlik(sciezkaPartycji(partycja));
+            }
+        }
+    }
+
+    /**
+     * Nakłada zmiany na układ partycjonowany, przepisując tylko partycje, w których leżą zmieniane wiersze, i manifest.
+     * Zmiana dostaje wiersz z pliku i zwraca wiersz po zmianie albo null (usunięcie). Wiersz, którego dataOd po zmianie
+     * należy do innej partycji, jest z niej usuwany i dopisywany na końcu właściwej. Wiersze z nowe, których ID nie ma
+     * w żadnej partycji, są dopisywane. Zwraca false (bez zmian w plikach), gdy dane nie są partycjonowane albo istnieje
+     * dziennik - wtedy trzeba przepisać całość z nałożonym dziennikiem.
+     */
+    private boolean zmienWPartycjach(Map<Long, UnaryOperator<WierszRezerwacji>> zmiany,
+                                     Collection<WierszRezerwacji> nowe) {
+        synchronized (BLOKADA_DZIENNIKA) {
+            if (!czyPartycjonowane() || czyIstniejeDziennik()) {
+                return false;
+            }
+
+            Map<String, Partycja> manifest = wczytajManifest();
+            Map<String, Set<Long>> idsPoPartycji = new TreeMap<>();
+            for (Long id : zmiany.keySet()) {
+                String partycja = partycjaWiersza(manifest, id);
+                if (partycja != null) {
+                    idsPoPartycji.computeIfAbsent(partycja, p -> new HashSet<>()).add(id);
+                }
+            }
+
+            Set<Long> znalezione = new HashSet<>();
+            List<WierszRezerwacji> doDopisania = new ArrayList<>();
+            for (Map.Entry<String, Set<Long>> e : idsPoPartycji.entrySet()) {
+                String partycja = e.getKey();
+                List<String> linie = new ArrayList<>(List.of(HEADER));
+                Partycja wpis = new Partycja(partycja);
+
+                for (WierszRezerwacji w : wczytajRekordy(sciezkaPartycji(partycja), this::parseWiersz)) {
+                    Long id = w.getRezerwacja().getId();
+                    if (e.getValue().contains(id)) {
+                        znalezione.add(id);
+                        w = zmiany.get(id).apply(w);
+                        if (w == null) {
+                            continue;
+                        }
+                        if (!partycja.equals(nazwaPartycji(w.getRezerwacja().getDataOd()))) {
+                            doDopisania.add(w);
+                            continue;
+                        }
+                    }
+                    linie.add(toLinia(w));
+                    wpis.uwzglednij(w.getRezerwacja());
+                }
+
+                if (wpis.liczba == 0) {
+                    manifest.remove(partycja);
+                    usunPlik(sciezkaPartycji(partycja));
+                } else {
+                    manifest.put(partycja, wpis);
+                    zapiszLinie(sciezkaPartycji(partycja), linie);
+                }
+            }
+
+            for (WierszRezerwacji w : nowe) {
+                if (!znalezione.contains(w.getRezerwacja().getId())) {
+                    doDopisania.add(w);
+                }
+            }
+            for (WierszRezerwacji w : doDopisania) {
+                String partycja = nazwaPartycji(w.getRezerwacja().getDataOd());
+                dopiszWiersz(sciezkaPartycji(partycja), HEADER, toLinia(w), w.getRezerwacja().getId());
+                manifest.computeIfAbsent(partycja, Partycja::new).uwzglednij(w.getRezerwacja());
+            }
+
+            zapiszManifest(manifest);
+            return true;
+        }
+    }
+
+    /**
+     * Partycja zawierająca wiersz o podanym ID albo null. Sprawdzane są tylko partycje, których zakres ID z manifestu
+     * obejmuje to ID - każda przez indeks klucza głównego (PamiecTabel albo plik .idx), bez czytania całej partycji.
+     */
+    private String partycjaWiersza(Map<String, Partycja> manifest, long id) {
+        for (Partycja p : manifest.values()) {
+            if (p.zawieraId(id) && znajdzRekordPoId(sciezkaPartycji(p.nazwa), parserRezerwacji, this::kopia,
+                    Rezerwacja::getId, id) != null) {
+                return p.nazwa;
+            }
+        }
+        return null;
+    }
+
+    /** Pliki z danymi rezerwacji: rezerwacje.csv albo wszystkie partycje z manifestu. */
+    private List<String> plikiDanych() {
+        if (!czyPartycjonowane()) {
+            return List.of(sciezkaDoPliku(PLIK));
+        }
+
+        return wczytajManifest().keySet().stream()
+                .map(this::sciezkaPartycji)
+                .collect(Collectors.toList());
+    }
+
+    /** Pliki, w których mogą być rezerwacje nachodzące na termin (przycinanie partycji wg manifestu). */
+    private List<String> plikiDanych(LocalDate dataOd, LocalDate dataDo) {
+        if (!czyPartycjonowane()) {
+            return List.of(sciezkaDoPliku(PLIK));
+        }
+
+        return wczytajManifest().values().stream()
+                .filter(p -> p.nachodziNa(dataOd, dataDo))
+                .map(p -> sciezkaPartycji(p.nazwa))
+                .collect(Collectors.toList());
+    }
+
+    private Stream<WierszRezerwacji> strumienPlikow(List<String> pliki) {
+        // flatMap zamyka strumień (i plik) każdej partycji po jej przeczytaniu.
+        return pliki.stream().flatMap(plik -> strumienRekordow(plik, this::parseWiersz));
+    }
+
+    private void przegladajDane(Consumer<LiniaCsv> konsument) {
+        for (String plik : plikiDanych()) {
+            przegladajLinie(plik, konsument);
+        }
+    }
+
+    private String nazwaPartycji(LocalDate dataOd) {
+        return FORMAT_PARTYCJI.format(dataOd);
+    }
+
+    private String sciezkaPartycji(String partycja) {
+        return sciezkaDoPliku(KATALOG_PARTYCJI + partycja + ".csv");
+    }
+
+    /** Wczytuje manifest (partycja -> zakres dat i liczba wierszy), posortowany po nazwie partycji. */
+    private Map<String, Partycja> wczytajManifest() {
+        Map<String, Partycja> manifest = new TreeMap<>();
+
+        for (Partycja p : wczytajRekordy(sciezkaDoPliku(PLIK_MANIFESTU), this::parsePartycja)) {
+            manifest.put(p.nazwa, p);
+        }
+
+        return manifest;
+    }
+
+    private void zapiszManifest(Map<String, Partycja> manifest) {
+        List<String> linie = new ArrayList<>();
+        linie.add(HEADER_MANIFESTU);
+
+        for (Partycja p : manifest.values()) {
+            linie.add(p.nazwa + ";" + p.minDataOd + ";" + p.maxDataDo + ";" + p.liczba + ";"
+                    + (p.minId == null ? "" : p.minId) + ";" + (p.maxId == null ? "" : p.maxId));
+        }
+
+        zapiszLinie(sciezkaDoPliku(PLIK_MANIFESTU), linie);
+    }
+
+    private Partycja parsePartycja(LiniaCsv linia) {
+        try {
+            KursorCsv pola = linia.kursor();
+
+            // partycja;minDataOd;maxDataDo;liczba;minId;maxId (manifest sprzed dodania zakresu ID ma tylko 4 pola)
+            Partycja p = new Partycja(pola.nastepnyTekst().trim());
+            p.minDataOd = pola.nastepnaData();
+            p.maxDataDo = pola.nastepnaData();
+            p.liczba = pola.nastepnyLong();
+            if (pola.maPole()) {
+                String minId = pola.nastepnyTekst().trim();
+                String maxId = pola.nastepnyTekst().trim();
+                if (!minId.isEmpty() && !maxId.isEmpty()) {
+                    p.minId = Long.parseLong(minId);
+                    p.maxId = Long.parseLong(maxId);
+                }
+            }
+
+            return p;
+        } catch (Exception e) {
+            System.err.println("Błąd podczas wczytywania manifestu partycji (linia " + linia.numer() + "): " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Wpis manifestu: najwcześniejsza dataOd i najpóźniejsza dataDo w partycji, liczba wierszy oraz zakres ID
+     * (null, gdy nieznany - manifest zapisany przed dodaniem zakresu ID).
+     */
+    private static final class Partycja {
+        private final String nazwa;
+        private LocalDate minDataOd;
+        private LocalDate maxDataDo;
+        private long liczba;
+        private Long minId;
+        private Long maxId;
+
+        private Partycja(String nazwa) {
+            this.nazwa = nazwa;
+        }
+
+        private void uwzglednij(Rezerwacja r) {
+            if (minDataOd == null || r.getDataOd().isBefore(minDataOd)) {
+                minDataOd = r.getDataOd();
+            }
+            if (maxDataDo == null || r.getDataDo().isAfter(maxDataDo)) {
+                maxDataDo = r.getDataDo();
+            }
+            // Bez znanego zakresu (stary manifest) nie można go rozszerzyć - zostaje nieznany do przepisania partycji.
+            if (liczba == 0 || minId != null) {
+                minId = (liczba == 0) ? r.getId() : Math.min(minId, r.getId());
+                maxId = (liczba == 0) ? r.getId() : Math.max(maxId, r.getId());
+            }
+            liczba++;
+        }
+
+        private boolean zawieraId(long id) {
+            return minId == null || (id >= minId && id <= maxId);
+        }
+
+        private boolean nachodziNa(LocalDate dataOd, LocalDate dataDo) {
+            return !dataDo.isBefore(minDataOd) && !dataOd.isAfter(maxDataDo);
+        }
+    }
+
+    /** Buduje linię CSV z wiersza (relacje zapisane jako ID) w układzie wybranym w KonfiguracjaBazy. */
+    private String toLinia(WierszRezerwacji w) {
+        return toLinia(w, KonfiguracjaBazy.isStalaSzerokoscRezerwacji());
+    }
+
+    private String toLinia(WierszRezerwacji w, boolean stalaSzerokosc) {
+        Rezerwacja r = w.getRezerwacja();
+        String dodatkiIds = w.getDodatkiIds().stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","));
+
+        Object[] pola = {r.getId(), w.getKlientId(), w.getSamochodId(), r.getDataOd(), r.getDataDo(),
+                r.getStatus(), r.getCenaCalkowita()};
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < pola.length; i++) {
+            String pole = String.valueOf(pola[i]);
+            sb.append(pole);
+            // Wartość dłuższa od szerokości pola (np. bardzo duże ID) po prostu poszerza wiersz.
+            for (int j = pole.length(); stalaSzerokosc && j < SZEROKOSCI_POL[i]; j++) {
+                sb.append(' ');
+            }
+            sb.append(';');
+        }
+        return sb.append(dodatkiIds).toString();
+    }
+
+    /** Odpowiada za budowanie jednej linii CSV na podstawie obiektu Rezerwacja. Service musi zapewnić, że relacje klient/samochód/dodatki są ustawione. */
+    private String toLinia(Rezerwacja r) {
+        return toLinia(doWiersza(r));
+    }
 
-        return ids;
+    /** Zamienia rezerwację na wiersz z ID relacji (relacje wczytywane leniwie nie są przy tym pobierane). */
+    private WierszRezerwacji doWiersza(Rezerwacja r) {
+        return new WierszRezerwacji(r, r.getKlientId(), r.getSamochodId(), r.getDodatkiIds());
     }
 }
\ No newline at end of file
@@ -5,61 +5,34 @@ import pl.pjatk.mas.model.Samochod;
 
 import java.time.Year;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
 
 public class SamochodDAO extends BazaDAO {
     private static final String PLIK = "samochody.csv";
     private static final String HEADER = "id;marka;model;numerRejestracyjny;mocKM;rocznik;kategoria;cennikId";
 
-    public List<Samochod> wczytajWszystkie() {
-        List<Samochod> samochody = new ArrayList<>();
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
+    // Klucz indeksu numerów rejestracyjnych w PamiecTabel (stała - indeks rozpoznawany jest po klasie funkcji).
+    private static final Function<Samochod, String> KLUCZ_NUMERU = s -> Samochod.kluczNumeru(s.getNumerRejestracyjny());
 
-        if (linie.size() <= 1) {
-            return samochody;
-        }
-
-        for (int i = 1; i < linie.size(); i++) {
-            try {
-                String[] dane = linie.get(i).split(";", -1);
-
-                Long id = Long.parseLong(dane[0]);
-                String marka = dane[1];
-                String model = dane[2];
-                String numerRejestracyjny = dane[3];
-                int mocKM = Integer.parseInt(dane[4]);
-                Year rocznik = Year.of(Integer.parseInt(dane[5]));
-                KategoriaSamochodu kategoria = KategoriaSamochodu.valueOf(dane[6]);
-
-                Samochod samochod = new Samochod(id, marka, model, numerRejestracyjny, mocKM, rocznik, kategoria);
-                samochod.setCennik(null); // relacja dopinana w Service
-                samochody.add(samochod);
-            } catch (Exception e) {
-                System.err.println("Błąd podczas wczytywania samochodu: " + e.getMessage());
-            }
-        }
+    private final ParserTabeli<Samochod> parser = zarejestrujParser("samochody", this::parseLinia);
+    private final ParserTabeli<long[]> parserCennikId = zarejestrujParser("samochody.cennikId", this::parseCennikId);
 
-        return samochody;
+    public List<Samochod> wczytajWszystkie() {
+        return wczytajRekordy(sciezkaDoPliku(PLIK), parser, this::kopia);
     }
 
     public Map<Long, Long> wczytajMapeCennikIdPoSamochodId() {
         Map<Long, Long> mapa = new HashMap<>();
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
 
-        if (linie.size() <= 1) {
-            return mapa;
-        }
-
-        for (int i = 1; i < linie.size(); i++) {
-            try {
-                String[] dane = linie.get(i).split(";", -1);
-                Long samochodId = Long.parseLong(dane[0]);
-                Long cennikId = Long.parseLong(dane[7]);
-                mapa.put(samochodId, cennikId);
-            } catch (Exception ignored) {
-            }
+        // Pary {samochodId, cennikId} nie wychodzą poza DAO, więc nie trzeba ich kopiować.
+        for (long[] para : wczytajRekordy(sciezkaDoPliku(PLIK), parserCennikId, UnaryOperator.identity())) {
+            mapa.put(para[0], para[1]);
         }
 
         return mapa;
@@ -70,16 +43,7 @@ public class SamochodDAO extends BazaDAO {
         linie.add(HEADER);
 
         for (Samochod s : samochody) {
-            Long cennikId = (s.getCennik() != null) ? s.getCennik().getId() : 0L;
-
-            linie.add(s.getId() + ";" +
-                    s.getMarka() + ";" +
-                    s.getModel() + ";" +
-                    s.getNumerRejestracyjny() + ";" +
-                    s.getMocKM() + ";" +
-                    s.getRocznik() + ";" +
-                    s.getKategoria() + ";" +
-                    cennikId);
+            linie.add(toLinia(s));
         }
 
         zapiszLinie(sciezkaDoPliku(PLIK), linie);
@@ -90,39 +54,23 @@ public class SamochodDAO extends BazaDAO {
             throw new IllegalArgumentException("Samochód nie może być null");
         }
 
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
-        if (linie.isEmpty()) {
-            linie = new ArrayList<>();
-            linie.add(HEADER);
-        }
-
-        Long cennikId = (samochod.getCennik() != null) ? samochod.getCennik().getId() : 0L;
-
-        String nowaLinia = samochod.getId() + ";" +
-                samochod.getMarka() + ";" +
-                samochod.getModel() + ";" +
-                samochod.getNumerRejestracyjny() + ";" +
-                samochod.getMocKM() + ";" +
-                samochod.getRocznik() + ";" +
-                samochod.getKategoria() + ";" +
-                cennikId;
-
-        linie.add(nowaLinia);
-        zapiszLinie(sciezkaDoPliku(PLIK), linie);
+        // Dopisanie na końcu pliku - koszt nie zależy od liczby samochodów.
+        dopiszLinie(sciezkaDoPliku(PLIK), HEADER, toLinia(samochod));
     }
 
     public Samochod znajdzPoId(Long id) {
-        return wczytajWszystkie().stream()
-                .filter(s -> s.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        if (id == null) {
+            return null;
+        }
+        return znajdzRekord(sciezkaDoPliku(PLIK), parser, this::kopia, Samochod::getId, id);
     }
 
+    /** Wyszukuje samochód po numerze rejestracyjnym (bez względu na wielkość liter) przez indeks w PamiecTabel. */
     public Samochod znajdzPoNumerzeRejestracyjjnym(String numer) {
-        return wczytajWszystkie().stream()
-                .filter(s -> s.getNumerRejestracyjny().equalsIgnoreCase(numer))
-                .findFirst()
-                .orElse(null);
+        if (numer == null) {
+            return null;
+        }
+        return znajdzRekord(sciezkaDoPliku(PLIK), parser, this::kopia, KLUCZ_NUMERU, Samochod.kluczNumeru(numer));
     }
 
     /** Aktualizuje pojedynczy rekord w CSV bez przepisywania pozostałych samochodów na obiekty (bez relacji). Dzięki temu nie gubi się cennikId dla aut, które nie były edytowane. */
@@ -137,25 +85,13 @@ public class SamochodDAO extends BazaDAO {
             linie.add(HEADER);
         }
 
-        Long cennikId = (samochod.getCennik() != null) ? samochod.getCennik().getId() : 0L;
-
-        String nowaLinia = samochod.getId() + ";" +
-                samochod.getMarka() + ";" +
-                samochod.getModel() + ";" +
-                samochod.getNumerRejestracyjny() + ";" +
-                samochod.getMocKM() + ";" +
-                samochod.getRocznik() + ";" +
-                samochod.getKategoria() + ";" +
-                cennikId;
+        String nowaLinia = toLinia(samochod);
 
         boolean podmieniono = false;
 
         for (int i = 1; i < linie.size(); i++) {
-            String[] dane = linie.get(i).split(";", -1);
-            if (dane.length < 1) continue;
-
             try {
-                Long id = Long.parseLong(dane[0]);
+                Long id = idZLinii(linie.get(i));
                 if (samochod.getId().equals(id)) {
                     linie.set(i, nowaLinia);
                     podmieniono = true;
@@ -173,6 +109,21 @@ public class SamochodDAO extends BazaDAO {
         zapiszLinie(sciezkaDoPliku(PLIK), linie);
     }
 
+    /**
+     * Zapisuje partię zmian jednym nadpisaniem pliku: samochody z listy są podmieniane lub dopisywane,
+     * ID z drugiej kolekcji usuwane. Linie pozostałych samochodów przepisywane są bez zmian (cennikId zostaje).
+     */
+    public void zapiszZmiany(List<Samochod> zapisane, Collection<Long> usuniete) {
+        Map<String, String> zmiany = new LinkedHashMap<>();
+        for (Long id : usuniete) {
+            zmiany.put(String.valueOf(id), null);
+        }
+        for (Samochod s : zapisane) {
+            zmiany.put(String.valueOf(s.getId()), toLinia(s));
+        }
+        zapiszZmiany(sciezkaDoPliku(PLIK), HEADER, zmiany, 0);
+    }
+
     public void usunPoId(Long id) {
         if (id == null) {
             throw new IllegalArgumentException("ID samochodu nie może być null");
@@ -190,8 +141,7 @@ public class SamochodDAO extends BazaDAO {
         for (int i = 1; i < linie.size(); i++) {
             String linia = linie.get(i);
             try {
-                String[] dane = linia.split(";", -1);
-                Long wierszId = Long.parseLong(dane[0]);
+                Long wierszId = idZLinii(linia);
 
                 if (!wierszId.equals(id)) {
                     wynik.add(linia); // przepisujemy linie "as-is" => cennikId się nie zmieni
@@ -204,4 +154,66 @@ public class SamochodDAO extends BazaDAO {
 
         zapiszLinie(sciezkaDoPliku(PLIK), wynik);
     }
+
+    /** Odczytuje ID (pierwsze pole) z linii CSV bez dzielenia całej linii. */
+    private Long idZLinii(String linia) {
+        int separator = linia.indexOf(';');
+        return Long.parseLong(separator < 0 ? linia : linia.substring(0, separator));
+    }
+
+    /** Buduje linię CSV z obiektu Samochod (brak cennika zapisywany jako 0). */
+    private String toLinia(Samochod s) {
+        Long cennikId = (s.getCennik() != null) ? s.getCennik().getId() : 0L;
+
+        return s.getId() + ";" +
+                s.getMarka() + ";" +
+                s.getModel() + ";" +
+                s.getNumerRejestracyjny() + ";" +
+                s.getMocKM() + ";" +
+                s.getRocznik() + ";" +
+                s.getKategoria() + ";" +
+                cennikId;
+    }
+
+    /** Odczytuje z linii CSV parę {ID samochodu, ID cennika} (null dla niepoprawnej linii). */
+    private long[] parseCennikId(LiniaCsv linia) {
+        try {
+            KursorCsv pola = linia.kursor();
+            long samochodId = pola.nastepnyLong();
+            for (int i = 1; i < 7; i++) {
+                pola.pominPole();
+            }
+            return new long[]{samochodId, pola.nastepnyLong()};
+        } catch (Exception ignored) {
+            return null;
+        }
+    }
+
+    /** Kopia bez relacji (cennik i rezerwacje są dopinane w Service). */
+    private Samochod kopia(Samochod s) {
+        return new Samochod(s.getId(), s.getMarka(), s.getModel(), s.getNumerRejestracyjny(),
+                s.getMocKM(), s.getRocznik(), s.getKategoria());
+    }
+
+    /** Parsuje pojedynczą linię CSV do obiektu Samochod (bez relacji). */
+    private Samochod parseLinia(LiniaCsv linia) {
+        try {
+            KursorCsv pola = linia.kursor();
+
+            Long id = pola.nastepnyLong();
+            String marka = pola.nastepnyTekst();
+            String model = pola.nastepnyTekst();
+            String numerRejestracyjny = pola.nastepnyTekst();
+            int mocKM = pola.nastepnyInt();
+            Year rocznik = Year.of(pola.nastepnyInt());
+            KategoriaSamochodu kategoria = pola.nastepnyEnum(KategoriaSamochodu.class);
+
+            Samochod samochod = new Samochod(id, marka, model, numerRejestracyjny, mocKM, rocznik, kategoria);
+            samochod.setCennik(null); // relacja dopinana w Service
+            return samochod;
+        } catch (Exception e) {
+            System.err.println("Błąd podczas wczytywania samochodu (linia " + linia.numer() + "): " + e.getMessage());
+            return null;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,10 @@
+package pl.pjatk.mas.dao;
+
+/**
+ * Sposób odczytu plików CSV przez BazaDAO.
+ */
+public enum TrybOdczytu {
+    STRUMIENIOWY,  // klasyczny odczyt przez bufor strumienia
+    MAPOWANY,      // mapowanie pliku do pamięci (FileChannel.map)
+    AUTOMATYCZNY   // mapowanie tylko dla plików powyżej progu
+}
@@ -0,0 +1,10 @@
+package pl.pjatk.mas.dao;
+
+/**
+ * Polityka utrwalania zapisów na dysku (fsync).
+ */
+public enum TrybSynchronizacji {
+    BRAK,         // bez fsync - dane trafiają na dysk, kiedy zdecyduje system
+    KAZDY_ZAPIS,  // FileChannel.force po każdym zapisie
+    GRUPOWY       // zapisy z krótkiego okna czasu współdzielą jedno FileChannel.force
+}
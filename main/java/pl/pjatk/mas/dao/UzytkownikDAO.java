@@ -5,29 +5,29 @@ import pl.pjatk.mas.model.Pracownik;
 import pl.pjatk.mas.model.Uzytkownik;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.UnaryOperator;
 
 public class UzytkownikDAO extends BazaDAO {
     private static final String PLIK = "uzytkownicy.csv";
     private static final String HEADER = "typ;id;login;haslo;imie;nazwisko;email";
 
+    private final ParserTabeli<Uzytkownik> parser = zarejestrujParser("uzytkownicy", this::parseUzytkownik);
+    private final ParserTabeli<Integer> parserIdKlienta = zarejestrujParser("uzytkownicy.idKlienta", this::parseIdKlienta);
+
     /** Odczytuje wszystkich użytkowników z CSV. */
     public List<Uzytkownik> wczytajWszystkich() {
-        List<String> linie = wczytajLinie(sciezkaDoPliku(PLIK));
-        List<Uzytkownik> uzytkownicy = new ArrayList<>();
-
-        if (linie.size() <= 1) {
-            return uzytkownicy; // brak danych lub sam nagłówek
-        }
-
-        for (int i = 1; i < linie.size(); i++) {
-            Uzytkownik u = parseUzytkownik(linie.get(i));
-            if (u != null) {
-                uzytkownicy.add(u);
-            }
-        }
+        return wczytajRekordy(sciezkaDoPliku(PLIK), parser, this::kopia);
+    }
 
-        return uzytkownicy;
+    /** ID wszystkich klientów - czytane są tylko pola typ i id, bez tworzenia obiektów użytkowników. */
+    public Set<Integer> wczytajIdKlientow() {
+        return new HashSet<>(wczytajRekordy(sciezkaDoPliku(PLIK), parserIdKlienta, UnaryOperator.identity()));
     }
 
     /** Zapisuje użytkowników do CSV (nadpisuje plik). */
@@ -47,12 +47,23 @@ public class UzytkownikDAO extends BazaDAO {
         zapiszLinie(sciezkaDoPliku(PLIK), linie);
     }
 
-    /** Wyszukuje użytkownika po ID (pełny odczyt pliku). */
+    /** Dopisuje nowego użytkownika na końcu pliku (bez przepisywania istniejących rekordów). */
+    public void dodaj(Uzytkownik uzytkownik) {
+        if (uzytkownik == null) {
+            throw new IllegalArgumentException("Użytkownik nie może być null");
+        }
+
+        String linia = toLinia(uzytkownik);
+        if (linia == null) {
+            throw new IllegalArgumentException("Nieobsługiwany typ użytkownika");
+        }
+
+        dopiszLinie(sciezkaDoPliku(PLIK), HEADER, linia);
+    }
+
+    /** Wyszukuje użytkownika po ID (indeks klucza głównego). */
     public Uzytkownik znajdzPoId(int id) {
-        return wczytajWszystkich().stream()
-                .filter(u -> u.getId() == id)
-                .findFirst()
-                .orElse(null);
+        return znajdzRekord(sciezkaDoPliku(PLIK), parser, this::kopia, Uzytkownik::getId, id);
     }
 
     /** Usuwa użytkownika po ID. */
@@ -62,20 +73,43 @@ public class UzytkownikDAO extends BazaDAO {
         zapiszWszystkich(uzytkownicy);
     }
 
+    /** Zapisuje partię zmian jednym nadpisaniem pliku: użytkownicy z listy są podmieniani lub dopisywani, ID z kolekcji usuwane. */
+    public void zapiszZmiany(List<Uzytkownik> zapisani, Collection<Integer> usunieci) {
+        Map<String, String> zmiany = new LinkedHashMap<>();
+        for (Integer id : usunieci) {
+            zmiany.put(String.valueOf(id), null);
+        }
+        for (Uzytkownik u : zapisani) {
+            String linia = toLinia(u);
+            if (linia != null) {
+                zmiany.put(String.valueOf(u.getId()), linia);
+            }
+        }
+        zapiszZmiany(sciezkaDoPliku(PLIK), HEADER, zmiany, 1); // typ;id;...
+    }
+
+    /** Kopia użytkownika tej samej klasy (wczytane rekordy są współdzielone przez PamiecTabel). */
+    private Uzytkownik kopia(Uzytkownik u) {
+        if (u instanceof Klient k) {
+            return new Klient(k.getId(), k.getLogin(), k.getHaslo(), k.getImie(), k.getNazwisko(), k.getEmail());
+        }
+        return new Pracownik(u.getId(), u.getLogin(), u.getHaslo(), u.getImie(), u.getNazwisko());
+    }
+
     /** Odpowiada za parsowanie jednej linii CSV do obiektu użytkownika. */
-    private Uzytkownik parseUzytkownik(String linia) {
+    private Uzytkownik parseUzytkownik(LiniaCsv linia) {
         try {
-            String[] dane = linia.split(";", -1);
+            KursorCsv pola = linia.kursor();
 
-            String typ = dane[0];
-            int id = Integer.parseInt(dane[1]);
-            String login = dane[2];
-            String haslo = dane[3];
-            String imie = dane[4];
-            String nazwisko = dane[5];
+            String typ = pola.nastepnyTekst();
+            int id = pola.nastepnyInt();
+            String login = pola.nastepnyTekst();
+            String haslo = pola.nastepnyTekst();
+            String imie = pola.nastepnyTekst();
+            String nazwisko = pola.nastepnyTekst();
 
             if ("KLIENT".equals(typ)) {
-                String email = dane.length > 6 ? dane[6] : "";
+                String email = pola.maPole() ? pola.nastepnyTekst() : "";
                 return new Klient(id, login, haslo, imie, nazwisko, email);
             }
 
@@ -85,11 +119,21 @@ public class UzytkownikDAO extends BazaDAO {
 
             return null;
         } catch (Exception e) {
-            System.err.println("Błąd podczas wczytywania użytkownika: " + e.getMessage());
+            System.err.println("Błąd podczas wczytywania użytkownika (linia " + linia.numer() + "): " + e.getMessage());
             return null;
         }
     }
 
+    /** ID z linii klienta (null dla pracownika i linii niepoprawnej). */
+    private Integer parseIdKlienta(LiniaCsv linia) {
+        try {
+            KursorCsv pola = linia.kursor();
+            return "KLIENT".equals(pola.nastepnyTekst()) ? pola.nastepnyInt() : null;
+        } catch (Exception e) {
+            return null; // błąd zgłasza parseUzytkownik przy pełnym wczytaniu
+        }
+    }
+
     /** Odpowiada za budowanie jednej linii CSV na podstawie obiektu użytkownika. */
     private String toLinia(Uzytkownik u) {
         if (u instanceof Klient klient) {
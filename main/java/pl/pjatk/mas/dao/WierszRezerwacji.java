@@ -0,0 +1,40 @@
+package pl.pjatk.mas.dao;
+
+import pl.pjatk.mas.model.Rezerwacja;
+
+import java.util.List;
+
+/**
+ * Jeden wiersz pliku rezerwacje.csv: rezerwacja bez relacji + ID relacji (klucze obce).
+ * Pozwala złożyć graf obiektów w Service po jednym odczycie pliku.
+ */
+public class WierszRezerwacji {
+
+    private final Rezerwacja rezerwacja;
+    private final Long klientId;
+    private final Long samochodId;
+    private final List<Long> dodatkiIds;
+
+    public WierszRezerwacji(Rezerwacja rezerwacja, Long klientId, Long samochodId, List<Long> dodatkiIds) {
+        this.rezerwacja = rezerwacja;
+        this.klientId = klientId;
+        this.samochodId = samochodId;
+        this.dodatkiIds = dodatkiIds;
+    }
+
+    public Rezerwacja getRezerwacja() {
+        return rezerwacja;
+    }
+
+    public Long getKlientId() {
+        return klientId;
+    }
+
+    public Long getSamochodId() {
+        return samochodId;
+    }
+
+    public List<Long> getDodatkiIds() {
+        return dodatkiIds;
+    }
+}
@@ -7,18 +7,26 @@ import java.util.List;
 
 /**
  * Rezerwacja samochodu dokonana przez klienta.
+ * Może być utworzona z samymi ID relacji - wtedy klient, samochód i dodatki są pobierane
+ * ze współdzielonego ZrodloRelacji przy pierwszym dostępie.
  */
 public class Rezerwacja {
 
     private Long id;
-    private Klient klient;
-    private Samochod samochod;
+    private volatile Klient klient;
+    private volatile Samochod samochod;
     private LocalDate dataOd;
     private LocalDate dataDo;
     private StatusRezerwacji status;
     private BigDecimal cenaCalkowita;
     private List<Dodatek> dodatki = new ArrayList<>();
 
+    // Relacje wczytywane leniwie: ID z pliku (dodatkiIds zerowane po pobraniu dodatków ze źródła).
+    private Long klientId;
+    private Long samochodId;
+    private volatile List<Long> dodatkiIds;
+    private ZrodloRelacji zrodloRelacji;
+
     public Rezerwacja(Long id,
                       Klient klient,
                       Samochod samochod,
@@ -32,16 +40,53 @@ public class Rezerwacja {
         this.status = StatusRezerwacji.NOWA;
     }
 
+    /** Rezerwacja z leniwymi relacjami: obiekty są pobierane ze źródła przy pierwszym wywołaniu gettera. */
+    public Rezerwacja(Long id,
+                      Long klientId,
+                      Long samochodId,
+                      List<Long> dodatkiIds,
+                      LocalDate dataOd,
+                      LocalDate dataDo,
+                      ZrodloRelacji zrodloRelacji) {
+        this(id, null, null, dataOd, dataDo);
+        this.klientId = klientId;
+        this.samochodId = samochodId;
+        this.dodatkiIds = new ArrayList<>(dodatkiIds);
+        this.zrodloRelacji = zrodloRelacji;
+    }
+
     public Long getId() {
         return id;
     }
 
     public Klient getKlient() {
-        return klient;
+        Klient k = klient;
+        if (k == null && klientId != null && zrodloRelacji != null) {
+            k = zrodloRelacji.klient(klientId);
+            klient = k; // dwa wątki mogą pobrać ten sam obiekt równocześnie - wynik jest ten sam
+        }
+        return k;
     }
 
     public Samochod getSamochod() {
-        return samochod;
+        Samochod s = samochod;
+        if (s == null && samochodId != null && zrodloRelacji != null) {
+            s = zrodloRelacji.samochod(samochodId);
+            samochod = s;
+        }
+        return s;
+    }
+
+    /** ID klienta bez pobierania obiektu (null, gdy rezerwacja nie ma klienta). */
+    public Long getKlientId() {
+        Klient k = klient;
+        return k != null ? Long.valueOf(k.getId()) : klientId;
+    }
+
+    /** ID samochodu bez pobierania obiektu (null, gdy rezerwacja nie ma samochodu). */
+    public Long getSamochodId() {
+        Samochod s = samochod;
+        return s != null ? s.getId() : samochodId;
     }
 
     public LocalDate getDataOd() {
@@ -69,9 +114,38 @@ public class Rezerwacja {
     }
 
     public List<Dodatek> getDodatki() {
+        List<Long> ids = dodatkiIds;
+        if (ids != null && zrodloRelacji != null) {
+            // Źródło jest wołane poza blokadą rezerwacji - samo może mieć własną blokadę.
+            List<Dodatek> pobrane = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                Dodatek d = zrodloRelacji.dodatek(id);
+                if (d != null) {
+                    pobrane.add(d); // jak przy składaniu grafu: dodatek, którego już nie ma, jest pomijany
+                }
+            }
+            synchronized (this) {
+                if (dodatkiIds != null) {
+                    dodatki.addAll(pobrane);
+                    dodatkiIds = null;
+                }
+            }
+        }
         return dodatki;
     }
 
+    /** ID dodatków bez pobierania obiektów. */
+    public synchronized List<Long> getDodatkiIds() {
+        if (dodatkiIds != null) {
+            return new ArrayList<>(dodatkiIds);
+        }
+        List<Long> ids = new ArrayList<>(dodatki.size());
+        for (Dodatek d : dodatki) {
+            ids.add(d.getId());
+        }
+        return ids;
+    }
+
     public void setDataOd(LocalDate dataOd) {
         this.dataOd = dataOd;
     }
@@ -83,7 +157,7 @@ public class Rezerwacja {
     @Override
     public String toString() {
         return "Rezerwacja #" + id + " - " +
-                samochod.getMarka() + " " + samochod.getModel() +
+                getSamochod().getMarka() + " " + getSamochod().getModel() +
                 " (" + dataOd + " - " + dataDo + ") [" + status + "]";
     }
 }
@@ -4,9 +4,13 @@ import java.time.LocalDate;
 import java.time.Year;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
 
 /**
  * Samochód dostępny w wypożyczalni.
+ * Oprócz listy wszystkich rezerwacji trzyma przedziały rezerwacji aktywnych (TerminyRezerwacji),
+ * na których sprawdzana jest dostępność - lista rezerwacji zmienia się więc tylko przez metody tej klasy.
  */
 
 public class Samochod {
@@ -19,7 +23,8 @@ public class Samochod {
     private Year rocznik;
     private KategoriaSamochodu kategoria;
     private Cennik cennik;
-    private List<Rezerwacja> rezerwacje = new ArrayList<>();
+    private final List<Rezerwacja> rezerwacje = new ArrayList<>();
+    private final TerminyRezerwacji terminy = new TerminyRezerwacji();
 
     public Samochod(Long id,
                     String marka,
@@ -73,32 +78,61 @@ public class Samochod {
         this.cennik = cennik;
     }
 
-    public List<Rezerwacja> getRezerwacje() {
-        return rezerwacje;
+    /** Wszystkie rezerwacje samochodu (także anulowane); kopia z chwili wywołania, tylko do odczytu. */
+    public synchronized List<Rezerwacja> getRezerwacje() {
+        return List.copyOf(rezerwacje);
     }
 
     /**
-     * Sprawdza, czy samochód jest dostępny w podanym zakresie dat.
-     * Zakłada, że rezerwacje anulowane nie blokują terminu.
+     * Sprawdza, czy samochód jest dostępny w podanym zakresie dat (oba końce włącznie).
+     * Rezerwacje anulowane nie blokują terminu. Koszt O(log n) względem liczby aktywnych rezerwacji.
      */
-    public boolean czyDostepny(LocalDate dataOd, LocalDate dataDo) {
-        for (Rezerwacja r : rezerwacje) {
-            if (r.getStatus() == StatusRezerwacji.ANULOWANA) {
-                continue;
-            }
-            boolean nachodzi =
-                    !dataDo.isBefore(r.getDataOd()) &&
-                            !dataOd.isAfter(r.getDataDo());
-            if (nachodzi) {
-                return false;
-            }
+    public synchronized boolean czyDostepny(LocalDate dataOd, LocalDate dataDo) {
+        return !terminy.nachodzi(dataOd.toEpochDay(), dataDo.toEpochDay());
+    }
+
+    /**
+     * Najwcześniejszy dzień nie wcześniejszy niż odDnia, od którego samochód jest wolny przez liczbaDni kolejnych dni
+     * (termin [wynik, wynik + liczbaDni - 1] nie nachodzi na żadną aktywną rezerwację).
+     */
+    public synchronized LocalDate najblizszyWolnyTermin(LocalDate odDnia, int liczbaDni) {
+        if (liczbaDni < 1) {
+            throw new IllegalArgumentException("Liczba dni musi być większa od 0");
         }
-        return true;
+        return LocalDate.ofEpochDay(terminy.pierwszyWolny(odDnia.toEpochDay(), liczbaDni));
+    }
+
+    /** Postać numeru rejestracyjnego do porównań bez względu na wielkość liter i spacje na brzegach. */
+    public static String kluczNumeru(String numerRejestracyjny) {
+        return numerRejestracyjny == null ? "" : numerRejestracyjny.trim().toUpperCase(Locale.ROOT);
     }
 
     // Dodaje nową rezerwację do listy rezerwacji tego samochodu
-    public void dodajRezerwacje(Rezerwacja rezerwacja) {
+    public synchronized void dodajRezerwacje(Rezerwacja rezerwacja) {
         this.rezerwacje.add(rezerwacja);
+        if (rezerwacja.getStatus() != StatusRezerwacji.ANULOWANA) {
+            terminy.dodaj(rezerwacja);
+        }
+    }
+
+    /** Usuwa rezerwację z listy (porównanie referencji) razem z jej przedziałem; false, gdy jej nie było. */
+    public synchronized boolean usunRezerwacje(Rezerwacja rezerwacja) {
+        terminy.usun(rezerwacja);
+        return rezerwacje.remove(rezerwacja);
+    }
+
+    /**
+     * Uaktualnia przedział rezerwacji tego samochodu po zmianie jej statusu lub dat -
+     * anulowanie zwalnia termin, przywrócenie ponownie go blokuje.
+     */
+    public synchronized void odswiezTermin(Rezerwacja rezerwacja) {
+        if (!Objects.equals(rezerwacja.getSamochodId(), id)) {
+            throw new IllegalArgumentException("Rezerwacja nie dotyczy tego samochodu");
+        }
+        terminy.usun(rezerwacja);
+        if (rezerwacja.getStatus() != StatusRezerwacji.ANULOWANA) {
+            terminy.dodaj(rezerwacja);
+        }
     }
 
     @Override
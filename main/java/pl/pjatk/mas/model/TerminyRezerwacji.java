@@ -0,0 +1,146 @@
+package pl.pjatk.mas.model;
+
+import java.util.Arrays;
+
+/**
+ * Przedziały aktywnych rezerwacji jednego samochodu (dni epoki, oba końce włącznie), posortowane po początku.
+ * Dla każdej pozycji trzymany jest największy koniec przedziału do tej pozycji włącznie, więc sprawdzenie,
+ * czy termin nachodzi na którąkolwiek rezerwację, to jedno wyszukiwanie binarne - O(log n).
+ * Przedziały mogą na siebie nachodzić (plik edytowany ręcznie). Nie jest bezpieczna wątkowo - chroni ją Samochod.
+ */
+final class TerminyRezerwacji {
+
+    private static final int MIN_POJEMNOSC = 4;
+
+    private long[] poczatki = new long[MIN_POJEMNOSC];
+    private long[] konce = new long[MIN_POJEMNOSC];
+    private long[] maksKonce = new long[MIN_POJEMNOSC];
+    private Rezerwacja[] rezerwacje = new Rezerwacja[MIN_POJEMNOSC];
+    private int liczba;
+
+    /** Dodaje przedział rezerwacji (daty odczytywane w chwili dodania). */
+    void dodaj(Rezerwacja rezerwacja) {
+        long poczatek = rezerwacja.getDataOd().toEpochDay();
+        long koniec = rezerwacja.getDataDo().toEpochDay();
+
+        if (liczba == poczatki.length) {
+            int pojemnosc = liczba * 2;
+            poczatki = Arrays.copyOf(poczatki, pojemnosc);
+            konce = Arrays.copyOf(konce, pojemnosc);
+            maksKonce = Arrays.copyOf(maksKonce, pojemnosc);
+            rezerwacje = Arrays.copyOf(rezerwacje, pojemnosc);
+        }
+
+        // Za przedziałami o tym samym początku - rezerwacje wczytywane chronologicznie trafiają na koniec bez przesuwania.
+        int i = liczbaZaczynajacychDo(poczatek);
+        int doPrzesuniecia = liczba - i;
+        System.arraycopy(poczatki, i, poczatki, i + 1, doPrzesuniecia);
+        System.arraycopy(konce, i, konce, i + 1, doPrzesuniecia);
+        System.arraycopy(rezerwacje, i, rezerwacje, i + 1, doPrzesuniecia);
+
+        poczatki[i] = poczatek;
+        konce[i] = koniec;
+        rezerwacje[i] = rezerwacja;
+        liczba++;
+        przeliczMaksKonce(i);
+    }
+
+    /** Usuwa przedział rezerwacji (porównanie referencji); false, gdy go nie było. */
+    boolean usun(Rezerwacja rezerwacja) {
+        int i = pozycja(rezerwacja);
+        if (i < 0) {
+            return false;
+        }
+
+        int doPrzesuniecia = liczba - i - 1;
+        System.arraycopy(poczatki, i + 1, poczatki, i, doPrzesuniecia);
+        System.arraycopy(konce, i + 1, konce, i, doPrzesuniecia);
+        System.arraycopy(rezerwacje, i + 1, rezerwacje, i, doPrzesuniecia);
+        liczba--;
+        rezerwacje[liczba] = null;
+        przeliczMaksKonce(i);
+        return true;
+    }
+
+    /** Czy [poczatek, koniec] (dni epoki, włącznie) ma część wspólną z którymkolwiek przedziałem. */
+    boolean nachodzi(long poczatek, long koniec) {
+        int zaczynajaceSieDoKonca = liczbaZaczynajacychDo(koniec);
+        return zaczynajaceSieDoKonca > 0 && maksKonce[zaczynajaceSieDoKonca - 1] >= poczatek;
+    }
+
+    /**
+     * Najwcześniejszy dzień nie wcześniejszy niż odDnia, od którego przez liczbaDni kolejnych dni żaden przedział
+     * nie jest zajęty. Przechodzi przedziały po kolei od pierwszego, który może jeszcze blokować (wyszukiwanie
+     * binarne po maksymalnym końcu), przesuwając kandydata za każdy przedział, który na niego nachodzi.
+     */
+    long pierwszyWolny(long odDnia, int liczbaDni) {
+        long kandydat = odDnia;
+        for (int i = pierwszyKonczacySieOd(odDnia); i < liczba; i++) {
+            if (poczatki[i] > kandydat + liczbaDni - 1) {
+                break; // luka przed tym przedziałem mieści cały termin
+            }
+            if (konce[i] >= kandydat) {
+                kandydat = konce[i] + 1;
+            }
+        }
+        return kandydat;
+    }
+
+    int rozmiar() {
+        return liczba;
+    }
+
+    /** Liczba przedziałów o początku nie późniejszym niż podany dzień. */
+    private int liczbaZaczynajacychDo(long dzien) {
+        int lo = 0;
+        int hi = liczba;
+        while (lo < hi) {
+            int srodek = (lo + hi) >>> 1;
+            if (poczatki[srodek] <= dzien) {
+                lo = srodek + 1;
+            } else {
+                hi = srodek;
+            }
+        }
+        return lo;
+    }
+
+    /** Pierwsza pozycja, do której włącznie jakiś przedział kończy się nie wcześniej niż podany dzień. */
+    private int pierwszyKonczacySieOd(long dzien) {
+        int lo = 0;
+        int hi = liczba;
+        while (lo < hi) {
+            int srodek = (lo + hi) >>> 1;
+            if (maksKonce[srodek] < dzien) {
+                lo = srodek + 1;
+            } else {
+                hi = srodek;
+            }
+        }
+        return lo;
+    }
+
+    private int pozycja(Rezerwacja rezerwacja) {
+        // Szybka ścieżka: daty się nie zmieniły od dodania, więc przedział leży wśród tych o tym samym początku.
+        if (rezerwacja.getDataOd() != null) {
+            long poczatek = rezerwacja.getDataOd().toEpochDay();
+            for (int i = liczbaZaczynajacychDo(poczatek) - 1; i >= 0 && poczatki[i] == poczatek; i--) {
+                if (rezerwacje[i] == rezerwacja) {
+                    return i;
+                }
+            }
+        }
+        for (int i = 0; i < liczba; i++) {
+            if (rezerwacje[i] == rezerwacja) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void przeliczMaksKonce(int od) {
+        for (int i = od; i < liczba; i++) {
+            maksKonce[i] = (i == 0) ? konce[0] : Math.max(maksKonce[i - 1], konce[i]);
+        }
+    }
+}
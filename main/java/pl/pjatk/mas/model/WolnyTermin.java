@@ -0,0 +1,36 @@
+package pl.pjatk.mas.model;
+
+import java.time.LocalDate;
+
+/**
+ * Wynik wyszukiwania wolnego terminu: samochód i zakres dat (oba końce włącznie), w którym nie ma aktywnych rezerwacji.
+ */
+public class WolnyTermin {
+
+    private final Samochod samochod;
+    private final LocalDate dataOd;
+    private final LocalDate dataDo;
+
+    public WolnyTermin(Samochod samochod, LocalDate dataOd, LocalDate dataDo) {
+        this.samochod = samochod;
+        this.dataOd = dataOd;
+        this.dataDo = dataDo;
+    }
+
+    public Samochod getSamochod() {
+        return samochod;
+    }
+
+    public LocalDate getDataOd() {
+        return dataOd;
+    }
+
+    public LocalDate getDataDo() {
+        return dataDo;
+    }
+
+    @Override
+    public String toString() {
+        return samochod + ": " + dataOd + " - " + dataDo;
+    }
+}
@@ -0,0 +1,14 @@
+package pl.pjatk.mas.model;
+
+/**
+ * Źródło obiektów powiązanych z rezerwacją wczytaną leniwie (z samymi ID relacji).
+ * Jedna instancja jest współdzielona przez wszystkie takie rezerwacje; brak obiektu o danym ID = null.
+ */
+public interface ZrodloRelacji {
+
+    Klient klient(long id);
+
+    Samochod samochod(long id);
+
+    Dodatek dodatek(long id);
+}
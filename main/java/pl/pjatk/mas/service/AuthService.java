@@ -1,11 +1,7 @@
 package pl.pjatk.mas.service;
 
-import pl.pjatk.mas.dao.UzytkownikDAO;
-import pl.pjatk.mas.model.Klient;
 import pl.pjatk.mas.model.Uzytkownik;
 
-import java.util.List;
-
 /**
  * Serwis odpowiedzialny za autoryzację i zarządzanie kontami użytkowników.
  * Waliduje dane wejściowe i zapisuje zmiany przez UzytkownikDAO.
@@ -14,7 +10,7 @@ public class AuthService {
 
     private static final int MIN_DLUGOSC_HASLA = 4;
 
-    private final UzytkownikDAO uzytkownikDAO = new UzytkownikDAO();
+    private final Repozytorium repozytorium = Repozytorium.instancja();
 
     /**
      * Weryfikuje login i hasło użytkownika.
@@ -24,10 +20,8 @@ public class AuthService {
         String l = wymaganyTekst(login, "Login nie może być pusty");
         String h = wymaganyTekst(haslo, "Hasło nie może być puste");
 
-        return uzytkownikDAO.wczytajWszystkich().stream()
-                .filter(u -> u.getLogin().equals(l) && u.getHaslo().equals(h))
-                .findFirst()
-                .orElse(null);
+        Uzytkownik u = repozytorium.uzytkownikPoLoginie(l);
+        return (u != null && u.getHaslo().equals(h)) ? u : null;
     }
 
     /**
@@ -44,16 +38,8 @@ public class AuthService {
         walidujEmail(e);
         walidujHaslo(h);
 
-        List<Uzytkownik> uzytkownicy = uzytkownikDAO.wczytajWszystkich();
-        if (czyLoginZajety(uzytkownicy, l)) {
-            return false;
-        }
-
-        int noweId = wyznaczNoweId(uzytkownicy);
-        uzytkownicy.add(new Klient(noweId, l, h, i, n, e));
-        uzytkownikDAO.zapiszWszystkich(uzytkownicy);
-
-        return true;
+        // Sprawdzenie loginu i nadanie ID odbywają się atomowo w Repozytorium.
+        return repozytorium.zarejestrujKlienta(l, h, i, n, e) != null;
     }
 
     /**
@@ -66,17 +52,13 @@ public class AuthService {
 
         walidujHaslo(h);
 
-        List<Uzytkownik> uzytkownicy = uzytkownikDAO.wczytajWszystkich();
-
-        for (Uzytkownik u : uzytkownicy) {
-            if (u.getLogin().equals(l)) {
-                u.setHaslo(h);
-                uzytkownikDAO.zapiszWszystkich(uzytkownicy);
-                return true;
-            }
+        Uzytkownik u = repozytorium.uzytkownikPoLoginie(l);
+        if (u == null) {
+            return false;
         }
 
-        return false;
+        repozytorium.zmienHaslo(u, h);
+        return true;
     }
 
     /**
@@ -106,22 +88,4 @@ public class AuthService {
             throw new IllegalArgumentException("Podaj prawidłowy adres email");
         }
     }
-
-    /**
-     * Sprawdza czy login jest już używany.
-     */
-    private boolean czyLoginZajety(List<Uzytkownik> uzytkownicy, String login) {
-        return uzytkownicy.stream().anyMatch(u -> u.getLogin().equals(login));
-    }
-
-    /**
-     * Wyznacza kolejne ID użytkownika na podstawie danych w pliku.
-     */
-    private int wyznaczNoweId(List<Uzytkownik> uzytkownicy) {
-        int maxId = uzytkownicy.stream()
-                .mapToInt(Uzytkownik::getId)
-                .max()
-                .orElse(0);
-        return maxId + 1;
-    }
 }
\ No newline at end of file
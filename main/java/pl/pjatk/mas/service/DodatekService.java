@@ -1,6 +1,5 @@
 package pl.pjatk.mas.service;
 
-import pl.pjatk.mas.dao.DodatekDAO;
 import pl.pjatk.mas.model.Dodatek;
 import pl.pjatk.mas.model.KategoriaSamochodu;
 import pl.pjatk.mas.model.Samochod;
@@ -17,13 +16,13 @@ import java.util.stream.Collectors;
  */
 public class DodatekService {
 
-    private final DodatekDAO dodatekDAO = new DodatekDAO();
+    private final Repozytorium repozytorium = Repozytorium.instancja();
 
     /**
      * Zwraca wszystkie dodatki.
      */
     public List<Dodatek> pobierzWszystkieDodatki() {
-        return dodatekDAO.wczytajWszystkie();
+        return repozytorium.dodatki();
     }
 
     /**
@@ -53,12 +52,15 @@ public class DodatekService {
      * Zwraca dodatek po ID (lub null jeśli nie istnieje).
      */
     public Dodatek znajdzDodatekPoId(Long id) {
-        return dodatekDAO.znajdzPoId(id);
+        if (id == null) {
+            throw new IllegalArgumentException("ID nie może być null");
+        }
+        return repozytorium.dodatek(id);
     }
 
     /**
      * Dodaje nowy dodatek na podstawie danych z GUI.
-     * Waliduje dane, wyznacza ID i zapisuje do pliku.
+     * Waliduje dane, wyznacza ID i dopisuje do pliku.
      */
     public Dodatek dodajDodatek(String nazwa,
                                 BigDecimal cena,
@@ -74,8 +76,7 @@ public class DodatekService {
         long noweId = wyznaczNoweId(dodatki);
 
         Dodatek nowy = new Dodatek(noweId, nazwaOk, cena, typ, kategorieOk);
-        dodatki.add(nowy);
-        dodatekDAO.zapiszWszystkie(dodatki);
+        repozytorium.dodajDodatek(nowy);
 
         return nowy;
     }
@@ -98,17 +99,11 @@ public class DodatekService {
 
         List<KategoriaSamochodu> kategorieOk = bezpieczneKategorie(kategorie);
 
-        Dodatek dodatek = dodatekDAO.znajdzPoId(dodatekId);
-        if (dodatek == null) {
+        if (repozytorium.dodatek(dodatekId) == null) {
             throw new IllegalArgumentException("Nie znaleziono dodatku o ID: " + dodatekId);
         }
 
-        dodatek.setNazwa(nazwaOk);
-        dodatek.setCena(cena);
-        dodatek.setTypRozliczania(typ);
-        dodatek.setDostepneKategorie(new ArrayList<>(kategorieOk));
-
-        dodatekDAO.aktualizuj(dodatek);
+        repozytorium.aktualizujDodatek(new Dodatek(dodatekId, nazwaOk, cena, typ, new ArrayList<>(kategorieOk)));
     }
 
     /**
@@ -119,12 +114,11 @@ public class DodatekService {
             throw new IllegalArgumentException("ID dodatku nie może być null");
         }
 
-        Dodatek dodatek = dodatekDAO.znajdzPoId(dodatekId);
-        if (dodatek == null) {
+        if (repozytorium.dodatek(dodatekId) == null) {
             throw new IllegalArgumentException("Nie znaleziono dodatku o ID: " + dodatekId);
         }
 
-        dodatekDAO.usunPoId(dodatekId);
+        repozytorium.usunDodatek(dodatekId);
     }
 
     /**
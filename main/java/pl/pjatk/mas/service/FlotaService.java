@@ -1,41 +1,28 @@
 package pl.pjatk.mas.service;
 
-import pl.pjatk.mas.dao.CennikDAO;
-import pl.pjatk.mas.dao.SamochodDAO;
 import pl.pjatk.mas.model.Cennik;
 import pl.pjatk.mas.model.KategoriaSamochodu;
-import pl.pjatk.mas.model.Rezerwacja;
 import pl.pjatk.mas.model.Samochod;
+import pl.pjatk.mas.model.WolnyTermin;
 
 import java.time.LocalDate;
 import java.time.Year;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
  * Serwis odpowiedzialny za zarządzanie flotą.
- * Składa relacje: Samochod -> Cennik oraz Samochod -> Rezerwacje.
+ * Samochody z dopiętym cennikiem i rezerwacjami pochodzą ze wspólnego Repozytorium w pamięci.
  */
 public class FlotaService {
 
-    private final SamochodDAO samochodDAO = new SamochodDAO();
-    private final CennikDAO cennikDAO = new CennikDAO();
-
-    // Leniwa inicjalizacja - unika cyklicznego tworzenia serwisów.
-    private RezerwacjaService rezerwacjaService;
+    private final Repozytorium repozytorium = Repozytorium.instancja();
 
     /**
      * Zwraca wszystkie samochody z dopiętym cennikiem i listą rezerwacji.
      */
     public List<Samochod> pobierzWszystkieSamochody() {
-        List<Samochod> samochody = samochodDAO.wczytajWszystkie();
-
-        dopnijCenniki(samochody);
-        dopnijRezerwacje(samochody);
-
-        return samochody;
+        return repozytorium.samochody();
     }
 
     /**
@@ -53,18 +40,17 @@ public class FlotaService {
 
         walidujDaneSamochodu(markaN, modelN, nrRejN, mocKM, rocznik, kategoria);
 
-        List<Samochod> wszystkie = pobierzWszystkieSamochody();
-        if (czyNumerZajety(wszystkie, null, nrRejN)) {
+        if (czyNumerZajety(null, nrRejN)) {
             throw new IllegalArgumentException("Samochód o tym numerze rejestracyjnym już istnieje.");
         }
 
         Cennik cennik = wymaganyCennik(kategoria);
-        long noweId = wyznaczNoweId(wszystkie);
+        long noweId = repozytorium.noweIdSamochodu();
 
         Samochod nowy = new Samochod(noweId, markaN, modelN, nrRejN, mocKM, rocznik, kategoria);
         nowy.setCennik(cennik);
 
-        samochodDAO.dodaj(nowy);
+        repozytorium.dodajSamochod(nowy);
         return nowy;
     }
 
@@ -88,14 +74,11 @@ public class FlotaService {
 
         walidujDaneSamochodu(markaN, modelN, nrRejN, mocKM, rocznik, kategoria);
 
-        List<Samochod> wszystkie = pobierzWszystkieSamochody();
-
-        Samochod istniejacy = wszystkie.stream()
-                .filter(s -> s.getId().equals(id))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Nie znaleziono samochodu o ID: " + id));
+        if (repozytorium.samochod(id) == null) {
+            throw new IllegalArgumentException("Nie znaleziono samochodu o ID: " + id);
+        }
 
-        if (czyNumerZajety(wszystkie, id, nrRejN)) {
+        if (czyNumerZajety(id, nrRejN)) {
             throw new IllegalArgumentException("Inny samochód ma już ten numer rejestracyjny.");
         }
 
@@ -104,23 +87,17 @@ public class FlotaService {
         Samochod zakt = new Samochod(id, markaN, modelN, nrRejN, mocKM, rocznik, kategoria);
         zakt.setCennik(cennik);
 
-        // Przeniesienie rezerwacji, żeby nie utracić relacji po update.
-        for (Rezerwacja r : istniejacy.getRezerwacje()) {
-            zakt.dodajRezerwacje(r);
-        }
-
-        samochodDAO.aktualizuj(zakt);
+        // Repozytorium przenosi rezerwacje na zaktualizowany obiekt, żeby nie utracić relacji po update.
+        repozytorium.aktualizujSamochod(zakt);
     }
 
     /**
-     * Zwraca samochody dostępne w podanym terminie.
+     * Zwraca samochody dostępne w podanym terminie (z indeksu dni repozytorium - bez sprawdzania aut po kolei).
      */
     public List<Samochod> pobierzDostepneSamochody(LocalDate dataOd, LocalDate dataDo) {
         walidujZakresDat(dataOd, dataDo);
 
-        return pobierzWszystkieSamochody().stream()
-                .filter(s -> s.czyDostepny(dataOd, dataDo))
-                .collect(Collectors.toList());
+        return repozytorium.dostepneSamochody(dataOd, dataDo);
     }
 
     /**
@@ -148,82 +125,97 @@ public class FlotaService {
     }
 
     /**
-     * Wyszukuje samochód po ID.
+     * Zwraca najbliższy termin (od podanego dnia włącznie), w którym samochód jest wolny przez liczbaDni kolejnych dni.
+     * Przechodzi posortowane przedziały rezerwacji samochodu, zamiast sprawdzać kolejne dni przez czyDostepny.
      */
-    public Samochod znajdzSamochodPoId(Long id) {
-        if (id == null) {
+    public WolnyTermin znajdzNajblizszyWolnyTermin(Long samochodId, LocalDate odDnia, int liczbaDni) {
+        if (samochodId == null) {
             throw new IllegalArgumentException("ID samochodu nie może być null");
         }
+        walidujWyszukiwanieTerminu(odDnia, liczbaDni);
 
-        return pobierzWszystkieSamochody().stream()
-                .filter(s -> s.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        Samochod samochod = repozytorium.samochod(samochodId);
+        if (samochod == null) {
+            throw new IllegalArgumentException("Nie znaleziono samochodu o ID: " + samochodId);
+        }
+
+        return wolnyTermin(samochod, samochod.najblizszyWolnyTermin(odDnia, liczbaDni), liczbaDni);
     }
 
     /**
-     * Wyszukuje samochód po numerze rejestracyjnym.
+     * Zwraca samochód z kategorii, który najwcześniej (od podanego dnia włącznie) jest wolny przez liczbaDni dni,
+     * razem z tym terminem; przy remisie wygrywa samochód wcześniejszy we flocie. Null, gdy w kategorii nie ma aut.
      */
-    public Samochod znajdzSamochodPoNumerzeRejestracyjjnym(String numer) {
-        String n = normalize(numer);
-        if (n.isEmpty()) {
-            throw new IllegalArgumentException("Numer rejestracyjny nie może być pusty");
+    public WolnyTermin znajdzNajblizszyWolnyTerminWKategorii(KategoriaSamochodu kategoria,
+                                                             LocalDate odDnia,
+                                                             int liczbaDni) {
+        if (kategoria == null) {
+            throw new IllegalArgumentException("Kategoria nie może być null");
+        }
+        walidujWyszukiwanieTerminu(odDnia, liczbaDni);
+
+        // Najczęściej jakieś auto jest wolne od razu - to odpowiada indeks dni bez przechodzenia rezerwacji.
+        LocalDate dataDo = odDnia.plusDays(liczbaDni - 1L);
+        for (Samochod s : repozytorium.dostepneSamochody(odDnia, dataDo)) {
+            if (s.getKategoria() == kategoria) {
+                return new WolnyTermin(s, odDnia, dataDo);
+            }
         }
 
-        return pobierzWszystkieSamochody().stream()
-                .filter(s -> s.getNumerRejestracyjny().equalsIgnoreCase(n))
-                .findFirst()
-                .orElse(null);
+        Samochod najlepszy = null;
+        LocalDate najwczesniej = null;
+        for (Samochod s : pobierzWszystkieSamochody()) {
+            if (s.getKategoria() != kategoria) {
+                continue;
+            }
+            LocalDate termin = s.najblizszyWolnyTermin(odDnia, liczbaDni);
+            if (najwczesniej == null || termin.isBefore(najwczesniej)) {
+                najlepszy = s;
+                najwczesniej = termin;
+            }
+        }
+
+        return (najlepszy == null) ? null : wolnyTermin(najlepszy, najwczesniej, liczbaDni);
     }
 
     /**
-     * Usuwa samochód po ID.
+     * Wyszukuje samochód po ID.
      */
-    public void usunSamochod(Long id) {
+    public Samochod znajdzSamochodPoId(Long id) {
         if (id == null) {
             throw new IllegalArgumentException("ID samochodu nie może być null");
         }
-        samochodDAO.usunPoId(id);
+
+        return repozytorium.samochod(id);
     }
 
     /**
-     * Dopina relację Samochod -> Cennik na podstawie mapy ID.
+     * Wyszukuje samochód po numerze rejestracyjnym.
      */
-    private void dopnijCenniki(List<Samochod> samochody) {
-        Map<Long, Long> cennikIdPoSamochodId = samochodDAO.wczytajMapeCennikIdPoSamochodId();
-        Map<Long, Cennik> cennikiPoId = cennikDAO.wczytajWszystkie().stream()
-                .collect(Collectors.toMap(Cennik::getId, Function.identity()));
-
-        for (Samochod s : samochody) {
-            Long cennikId = cennikIdPoSamochodId.get(s.getId());
-            if (cennikId != null) {
-                s.setCennik(cennikiPoId.get(cennikId));
-            }
+    public Samochod znajdzSamochodPoNumerzeRejestracyjjnym(String numer) {
+        String n = normalize(numer);
+        if (n.isEmpty()) {
+            throw new IllegalArgumentException("Numer rejestracyjny nie może być pusty");
         }
+
+        return repozytorium.samochodPoNumerze(n);
     }
 
     /**
-     * Dopina relację Samochod -> Rezerwacje na podstawie danych z RezerwacjaService.
+     * Usuwa samochód po ID.
      */
-    private void dopnijRezerwacje(List<Samochod> samochody) {
-        List<Rezerwacja> rezerwacje = rezerwacje().pobierzWszystkieRezerwacje();
-
-        Map<Long, Samochod> samochodyPoId = samochody.stream()
-                .collect(Collectors.toMap(Samochod::getId, Function.identity()));
-
-        for (Rezerwacja r : rezerwacje) {
-            Samochod s = samochodyPoId.get(r.getSamochod().getId());
-            if (s != null) {
-                s.dodajRezerwacje(r);
-            }
+    public void usunSamochod(Long id) {
+        if (id == null) {
+            throw new IllegalArgumentException("ID samochodu nie może być null");
         }
+        repozytorium.usunSamochod(id);
     }
 
     /**
      * Zwraca cennik dla kategorii lub rzuca wyjątek, jeśli go brakuje.
      */
     private Cennik wymaganyCennik(KategoriaSamochodu kategoria) {
-        Cennik cennik = cennikDAO.znajdzPoKategorii(kategoria);
+        Cennik cennik = repozytorium.cennikDlaKategorii(kategoria);
         if (cennik == null) {
             throw new IllegalStateException("Brak cennika dla kategorii: " + kategoria);
         }
@@ -266,22 +258,27 @@ public class FlotaService {
     }
 
     /**
-     * Sprawdza czy numer rejestracyjny jest zajęty (opcjonalnie z pominięciem auta o podanym ID).
+     * Waliduje parametry wyszukiwania wolnego terminu.
      */
-    private boolean czyNumerZajety(List<Samochod> wszystkie, Long ignorujId, String nrRej) {
-        return wszystkie.stream()
-                .anyMatch(s -> (ignorujId == null || !s.getId().equals(ignorujId))
-                        && s.getNumerRejestracyjny().equalsIgnoreCase(nrRej));
+    private void walidujWyszukiwanieTerminu(LocalDate odDnia, int liczbaDni) {
+        if (odDnia == null) {
+            throw new IllegalArgumentException("Data początkowa nie może być null");
+        }
+        if (liczbaDni < 1) {
+            throw new IllegalArgumentException("Liczba dni musi być większa od 0");
+        }
+    }
+
+    private WolnyTermin wolnyTermin(Samochod samochod, LocalDate dataOd, int liczbaDni) {
+        return new WolnyTermin(samochod, dataOd, dataOd.plusDays(liczbaDni - 1L));
     }
 
     /**
-     * Wyznacza kolejne ID samochodu na podstawie danych w pliku.
+     * Sprawdza czy numer rejestracyjny jest zajęty (opcjonalnie z pominięciem auta o podanym ID).
      */
-    private long wyznaczNoweId(List<Samochod> wszystkie) {
-        return wszystkie.stream()
-                .mapToLong(Samochod::getId)
-                .max()
-                .orElse(0L) + 1;
+    private boolean czyNumerZajety(Long ignorujId, String nrRej) {
+        Samochod zNumerem = repozytorium.samochodPoNumerze(nrRej);
+        return zNumerem != null && (ignorujId == null || !zNumerem.getId().equals(ignorujId));
     }
 
     /**
@@ -290,14 +287,4 @@ public class FlotaService {
     private String normalize(String s) {
         return s == null ? "" : s.trim();
     }
-
-    /**
-     * Dostarcza RezerwacjaService z leniwą inicjalizacją.
-     */
-    private RezerwacjaService rezerwacje() {
-        if (rezerwacjaService == null) {
-            rezerwacjaService = new RezerwacjaService();
-        }
-        return rezerwacjaService;
-    }
 }
\ No newline at end of file
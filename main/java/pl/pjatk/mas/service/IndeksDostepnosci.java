@@ -0,0 +1,135 @@
+package pl.pjatk.mas.service;
+
+import pl.pjatk.mas.model.Rezerwacja;
+import pl.pjatk.mas.model.Samochod;
+import pl.pjatk.mas.model.StatusRezerwacji;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Indeks dostępności floty: dla każdego dnia (dzień epoki) mapa bitowa samochodów zarezerwowanych w tym dniu.
+ * Samochód ma stały numer bitu (kolejność dodania - jak w mapie samochodów repozytorium), a zapytanie o termin
+ * to dopełnienie sumy map z dni terminu względem samochodów we flocie - bez przeglądania rezerwacji.
+ * Przechowywane są tylko dni z co najmniej jedną rezerwacją.
+ * Utrzymywany przez Repozytorium (pod jego blokadą) przy każdej zmianie floty i rezerwacji; nie jest bezpieczny wątkowo.
+ */
+final class IndeksDostepnosci {
+
+    private final NavigableMap<Long, BitSet> zajetePoDniu = new TreeMap<>();
+
+    private final Map<Long, Integer> bitPoIdSamochodu = new HashMap<>();
+    private final List<Samochod> samochodPoBicie = new ArrayList<>();
+    private final BitSet flota = new BitSet();
+
+    /** Buduje indeks od nowa dla podanych samochodów (z ich rezerwacjami). */
+    void przebuduj(Collection<Samochod> samochody) {
+        zajetePoDniu.clear();
+        bitPoIdSamochodu.clear();
+        samochodPoBicie.clear();
+        flota.clear();
+
+        for (Samochod s : samochody) {
+            int bit = dodajSamochod(s);
+            for (Rezerwacja r : s.getRezerwacje()) {
+                if (r.getStatus() != StatusRezerwacji.ANULOWANA) {
+                    zaznacz(bit, r.getDataOd().toEpochDay(), r.getDataDo().toEpochDay());
+                }
+            }
+        }
+    }
+
+    /** Dodaje samochód (bez rezerwacji) na koniec floty; zwraca jego numer bitu. */
+    int dodajSamochod(Samochod samochod) {
+        int bit = samochodPoBicie.size();
+        samochodPoBicie.add(samochod);
+        bitPoIdSamochodu.put(samochod.getId(), bit);
+        flota.set(bit);
+        return bit;
+    }
+
+    /** Podmienia obiekt samochodu o tym samym ID (po aktualizacji) - numer bitu i zajęte dni się nie zmieniają. */
+    void zastapSamochod(Samochod samochod) {
+        Integer bit = bitPoIdSamochodu.get(samochod.getId());
+        if (bit == null) {
+            dodajSamochod(samochod);
+        } else {
+            samochodPoBicie.set(bit, samochod);
+        }
+    }
+
+    /** Usuwa samochód z floty i jego bity z map dni; numer bitu nie jest używany ponownie. */
+    void usunSamochod(Samochod samochod) {
+        Integer bit = bitPoIdSamochodu.remove(samochod.getId());
+        if (bit == null) {
+            return;
+        }
+        samochodPoBicie.set(bit, null);
+        flota.clear(bit);
+
+        for (Rezerwacja r : samochod.getRezerwacje()) {
+            if (r.getStatus() != StatusRezerwacji.ANULOWANA) {
+                for (long dzien = r.getDataOd().toEpochDay(); dzien <= r.getDataDo().toEpochDay(); dzien++) {
+                    wyczysc(bit, dzien);
+                }
+            }
+        }
+    }
+
+    /**
+     * Przelicza dni [dataOd, dataDo] samochodu na podstawie jego przedziałów rezerwacji (Samochod.czyDostepny).
+     * Wywoływane po dodaniu, zmianie, anulowaniu lub usunięciu rezerwacji - już po zmianie w samochodzie,
+     * dzięki czemu dzień pokryty jeszcze inną rezerwacją pozostaje zajęty.
+     */
+    void odswiez(Samochod samochod, LocalDate dataOd, LocalDate dataDo) {
+        Integer bit = bitPoIdSamochodu.get(samochod.getId());
+        if (bit == null) {
+            return;
+        }
+
+        for (LocalDate dzien = dataOd; !dzien.isAfter(dataDo); dzien = dzien.plusDays(1)) {
+            if (samochod.czyDostepny(dzien, dzien)) {
+                wyczysc(bit, dzien.toEpochDay());
+            } else {
+                zajetePoDniu.computeIfAbsent(dzien.toEpochDay(), d -> new BitSet()).set(bit);
+            }
+        }
+    }
+
+    /** Samochody wolne w całym terminie [dataOd, dataDo] (oba końce włącznie), w kolejności floty. */
+    List<Samochod> dostepne(LocalDate dataOd, LocalDate dataDo) {
+        BitSet wolne = (BitSet) flota.clone();
+        for (BitSet zajete : zajetePoDniu.subMap(dataOd.toEpochDay(), true, dataDo.toEpochDay(), true).values()) {
+            wolne.andNot(zajete);
+        }
+
+        List<Samochod> wynik = new ArrayList<>(wolne.cardinality());
+        for (int bit = wolne.nextSetBit(0); bit >= 0; bit = wolne.nextSetBit(bit + 1)) {
+            wynik.add(samochodPoBicie.get(bit));
+        }
+        return wynik;
+    }
+
+    private void zaznacz(int bit, long odDnia, long doDnia) {
+        for (long dzien = odDnia; dzien <= doDnia; dzien++) {
+            zajetePoDniu.computeIfAbsent(dzien, d -> new BitSet()).set(bit);
+        }
+    }
+
+    private void wyczysc(int bit, long dzien) {
+        BitSet zajete = zajetePoDniu.get(dzien);
+        if (zajete != null) {
+            zajete.clear(bit);
+            if (zajete.isEmpty()) {
+                zajetePoDniu.remove(dzien);
+            }
+        }
+    }
+}
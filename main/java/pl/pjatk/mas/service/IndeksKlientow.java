@@ -0,0 +1,82 @@
+package pl.pjatk.mas.service;
+
+import pl.pjatk.mas.dao.MapaLongObiektow;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * Indeks klientId -> ID jego rezerwacji w kolejności dodania. ID rezerwacji klienta leżą w jednej tablicy long[]
+ * (bez Long i bez wpisu zbioru na każdą rezerwację), a klienci w MapaLongObiektow - obiekt przypada na klienta,
+ * nie na rezerwację. Dodanie kosztuje O(1), usunięcie przegląda tylko rezerwacje jednego klienta (od najnowszej).
+ * Utrzymywany przez Repozytorium (pod jego blokadą); nie jest bezpieczny wątkowo.
+ */
+final class IndeksKlientow {
+
+    private final MapaLongObiektow<RezerwacjeKlienta> klienci = new MapaLongObiektow<>();
+
+    /**
+     * Dopisuje rezerwację na koniec listy klienta. Powtórzenia nie są sprawdzane - wywołujący dodaje ID,
+     * którego klient jeszcze nie ma (Repozytorium: tylko dla nowej rezerwacji albo po zmianie klienta).
+     */
+    void dodaj(long klientId, long rezerwacjaId) {
+        RezerwacjeKlienta lista = klienci.pobierz(klientId);
+        if (lista == null) {
+            lista = new RezerwacjeKlienta();
+            klienci.wstaw(klientId, lista);
+        }
+        lista.dopisz(rezerwacjaId);
+    }
+
+    void usun(long klientId, long rezerwacjaId) {
+        RezerwacjeKlienta lista = klienci.pobierz(klientId);
+        if (lista != null && lista.usun(rezerwacjaId) && lista.liczba == 0) {
+            klienci.usun(klientId);
+        }
+    }
+
+    /** Przekazuje ID rezerwacji klienta do konsumenta w kolejności dodania. */
+    void przegladaj(long klientId, LongConsumer konsument) {
+        RezerwacjeKlienta lista = klienci.pobierz(klientId);
+        if (lista != null) {
+            for (int i = 0; i < lista.liczba; i++) {
+                konsument.accept(lista.ids[i]);
+            }
+        }
+    }
+
+    void wyczysc() {
+        klienci.wyczysc();
+    }
+
+    private static final class RezerwacjeKlienta {
+        private long[] ids = new long[4];
+        private int liczba;
+
+        private int pozycja(long id) {
+            for (int i = liczba - 1; i >= 0; i--) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void dopisz(long id) {
+            if (liczba == ids.length) {
+                ids = Arrays.copyOf(ids, liczba * 2);
+            }
+            ids[liczba++] = id;
+        }
+
+        private boolean usun(long id) {
+            int i = pozycja(id);
+            if (i < 0) {
+                return false;
+            }
+            System.arraycopy(ids, i + 1, ids, i, liczba - i - 1);
+            liczba--;
+            return true;
+        }
+    }
+}
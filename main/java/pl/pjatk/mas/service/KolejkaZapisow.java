@@ -0,0 +1,135 @@
+package pl.pjatk.mas.service;
+
+import pl.pjatk.mas.dao.KonfiguracjaBazy;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Kolejka zapisu odroczonego (write-behind). Repozytorium wrzuca tu migawki zmienionych rekordów,
+ * a wątek w tle co KonfiguracjaBazy.getInterwalZapisuMs() zbiera wszystko, co czeka, i zapisuje.
+ * Zmiany tej samej tabeli są łączone: kilka zmian jednego rekordu daje jedną, a cała tabela - jeden zapis pliku.
+ * Kolejka ma ograniczoną pojemność - przy pełnej kolejce zmieniający wątek czeka na zapis (backpressure).
+ * Przy zamykaniu JVM zaległe zmiany są zapisywane przez shutdown hook.
+ */
+final class KolejkaZapisow {
+
+    enum Tabela { SAMOCHODY, DODATKI, UZYTKOWNICY, REZERWACJE }
+
+    /** Zmiana jednego rekordu: migawka do zapisu albo null (usunięcie); nowy = rekordu nie ma jeszcze w pliku. */
+    static final class Zmiana {
+        final Tabela tabela;
+        final Object klucz;
+        final Object rekord;
+        final boolean nowy;
+
+        Zmiana(Tabela tabela, Object klucz, Object rekord, boolean nowy) {
+            this.tabela = tabela;
+            this.klucz = klucz;
+            this.rekord = rekord;
+            this.nowy = nowy;
+        }
+    }
+
+    /** Zapisuje połączone zmiany jednej tabeli (co najwyżej jedna zmiana na klucz, w kolejności pierwszej zmiany). */
+    @FunctionalInterface
+    interface Zapis {
+        void zapisz(Tabela tabela, List<Zmiana> zmiany);
+    }
+
+    private final BlockingQueue<Zmiana> kolejka = new ArrayBlockingQueue<>(KonfiguracjaBazy.getPojemnoscKolejkiZapisu());
+    private final Zapis zapis;
+
+    // Partie muszą trafiać do plików w kolejności pobrania z kolejki (wątek w tle, shutdown hook, oproznij()).
+    private final Object blokadaOprozniania = new Object();
+
+    private Thread watek;
+
+    KolejkaZapisow(Zapis zapis) {
+        this.zapis = zapis;
+    }
+
+    /** Dodaje zmianę do kolejki; gdy kolejka jest pełna, czeka, aż wątek zapisu zrobi miejsce. */
+    void dodaj(Zmiana zmiana) {
+        uruchomJesliTrzeba();
+        try {
+            kolejka.put(zmiana);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Przerwano oczekiwanie na miejsce w kolejce zapisu", e);
+        }
+    }
+
+    /** Zapisuje od razu wszystko, co czeka w kolejce (wywołujący wątek czeka na zakończenie zapisu). */
+    void oproznij() {
+        synchronized (blokadaOprozniania) {
+            List<Zmiana> partia = new ArrayList<>();
+            kolejka.drainTo(partia);
+            if (partia.isEmpty()) {
+                return;
+            }
+
+            for (Map.Entry<Tabela, List<Zmiana>> e : polacz(partia).entrySet()) {
+                try {
+                    zapis.zapisz(e.getKey(), e.getValue());
+                } catch (RuntimeException ex) {
+                    ex.printStackTrace(); // błąd jednej tabeli nie blokuje zapisu pozostałych
+                }
+            }
+        }
+    }
+
+    private synchronized void uruchomJesliTrzeba() {
+        if (watek != null) {
+            return;
+        }
+
+        watek = new Thread(this::petlaZapisu, "zapis-odroczony");
+        watek.setDaemon(true);
+        watek.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::oproznij, "zapis-odroczony-zamkniecie"));
+    }
+
+    private void petlaZapisu() {
+        while (true) {
+            try {
+                Thread.sleep(KonfiguracjaBazy.getInterwalZapisuMs());
+            } catch (InterruptedException e) {
+                return;
+            }
+            oproznij();
+        }
+    }
+
+    /**
+     * Łączy zmiany partii: dla każdego klucza zostaje ostatnia migawka. Rekord dodany i usunięty w tej samej partii
+     * znika z niej całkowicie; rekord dodany, a potem zmieniony, nadal jest "nowy".
+     */
+    private static Map<Tabela, List<Zmiana>> polacz(List<Zmiana> partia) {
+        Map<Tabela, Map<Object, Zmiana>> poTabeli = new LinkedHashMap<>();
+
+        for (Zmiana z : partia) {
+            Map<Object, Zmiana> zmiany = poTabeli.computeIfAbsent(z.tabela, t -> new LinkedHashMap<>());
+            Zmiana poprzednia = zmiany.get(z.klucz);
+            boolean nowy = (poprzednia != null) ? poprzednia.nowy : z.nowy;
+
+            if (nowy && z.rekord == null) {
+                zmiany.remove(z.klucz);
+            } else {
+                zmiany.put(z.klucz, new Zmiana(z.tabela, z.klucz, z.rekord, nowy));
+            }
+        }
+
+        Map<Tabela, List<Zmiana>> wynik = new LinkedHashMap<>();
+        for (Map.Entry<Tabela, Map<Object, Zmiana>> e : poTabeli.entrySet()) {
+            if (!e.getValue().isEmpty()) {
+                wynik.put(e.getKey(), new ArrayList<>(e.getValue().values()));
+            }
+        }
+        return wynik;
+    }
+}
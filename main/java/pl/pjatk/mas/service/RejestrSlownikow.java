@@ -0,0 +1,77 @@
+package pl.pjatk.mas.service;
+
+import pl.pjatk.mas.model.Cennik;
+import pl.pjatk.mas.model.Dodatek;
+import pl.pjatk.mas.model.KategoriaSamochodu;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rejestr kanonicznych obiektów słownikowych: jeden Cennik i jeden Dodatek na ID oraz jedna (niezmienna) lista
+ * kategorii na zestaw kategorii. Przeżywa przeładowanie repozytorium - wczytany rekord o niezmienionej treści
+ * jest zastępowany obiektem już obecnym w rejestrze, więc samochody i rezerwacje z kolejnych grafów
+ * (i obiekty trzymane przez ekrany) wskazują te same instancje.
+ * Zmieniony rekord zastępuje wpis w całości (jedna operacja na mapie) - obiekty w rejestrze nie są modyfikowane.
+ */
+final class RejestrSlownikow {
+
+    private final Map<Long, Cennik> cenniki = new ConcurrentHashMap<>();
+    private final Map<Long, Dodatek> dodatki = new ConcurrentHashMap<>();
+    private final Map<List<KategoriaSamochodu>, List<KategoriaSamochodu>> kategorie = new ConcurrentHashMap<>();
+
+    /** Zwraca kanoniczny cennik o treści wczytanego; gdy treść się zmieniła, wczytany obiekt zastępuje wpis. */
+    Cennik cennik(Cennik wczytany) {
+        return cenniki.compute(wczytany.getId(),
+                (id, obecny) -> (obecny != null && rowne(obecny, wczytany)) ? obecny : wczytany);
+    }
+
+    /** Zwraca kanoniczny dodatek o treści wczytanego; gdy treść się zmieniła, wczytany obiekt zastępuje wpis. */
+    Dodatek dodatek(Dodatek wczytany) {
+        wczytany.setDostepneKategorie(kategorie(wczytany.getDostepneKategorie()));
+        return dodatki.compute(wczytany.getId(),
+                (id, obecny) -> (obecny != null && rowne(obecny, wczytany)) ? obecny : wczytany);
+    }
+
+    /** Podmienia dodatek po zmianie wiersza (bez porównywania treści); zwraca poprzedni obiekt albo null. */
+    Dodatek zastapDodatek(Dodatek nowy) {
+        nowy.setDostepneKategorie(kategorie(nowy.getDostepneKategorie()));
+        return dodatki.put(nowy.getId(), nowy);
+    }
+
+    void usunDodatek(Long id) {
+        dodatki.remove(id);
+    }
+
+    /** Niezmienna, współdzielona lista kategorii o tej samej zawartości (i kolejności) co podana. */
+    List<KategoriaSamochodu> kategorie(List<KategoriaSamochodu> lista) {
+        List<KategoriaSamochodu> klucz = (lista == null) ? List.of() : List.copyOf(lista);
+        return kategorie.computeIfAbsent(klucz, k -> k);
+    }
+
+    /** Usuwa cenniki spoza podanych ID (np. usunięte z pliku między przeładowaniami). */
+    void zachowajCenniki(Collection<Long> ids) {
+        cenniki.keySet().retainAll(ids);
+    }
+
+    /** Usuwa dodatki spoza podanych ID. */
+    void zachowajDodatki(Collection<Long> ids) {
+        dodatki.keySet().retainAll(ids);
+    }
+
+    private static boolean rowne(Cennik a, Cennik b) {
+        return a.getKategoria() == b.getKategoria()
+                && Objects.equals(a.getStawkaZaDobe(), b.getStawkaZaDobe())
+                && Objects.equals(a.getProcentDodatkowyKierowca(), b.getProcentDodatkowyKierowca());
+    }
+
+    private static boolean rowne(Dodatek a, Dodatek b) {
+        return Objects.equals(a.getNazwa(), b.getNazwa())
+                && Objects.equals(a.getCena(), b.getCena())
+                && a.getTypRozliczania() == b.getTypRozliczania()
+                && a.getDostepneKategorie().equals(b.getDostepneKategorie());
+    }
+}
@@ -0,0 +1,732 @@
+package pl.pjatk.mas.service;
+
+import pl.pjatk.mas.dao.CennikDAO;
+import pl.pjatk.mas.dao.DodatekDAO;
+import pl.pjatk.mas.dao.KonfiguracjaBazy;
+import pl.pjatk.mas.dao.MapaLongObiektow;
+import pl.pjatk.mas.dao.RezerwacjaDAO;
+import pl.pjatk.mas.dao.SamochodDAO;
+import pl.pjatk.mas.dao.UzytkownikDAO;
+import pl.pjatk.mas.dao.WierszRezerwacji;
+import pl.pjatk.mas.model.Cennik;
+import pl.pjatk.mas.model.Dodatek;
+import pl.pjatk.mas.model.KategoriaSamochodu;
+import pl.pjatk.mas.model.Klient;
+import pl.pjatk.mas.model.Pracownik;
+import pl.pjatk.mas.model.Rezerwacja;
+import pl.pjatk.mas.model.Samochod;
+import pl.pjatk.mas.model.StatusRezerwacji;
+import pl.pjatk.mas.model.Uzytkownik;
+import pl.pjatk.mas.model.ZrodloRelacji;
+import pl.pjatk.mas.service.KolejkaZapisow.Tabela;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Wspólne dla całego procesu repozytorium w pamięci.
+ * Przy pierwszym użyciu wczytuje wszystkie tabele i składa graf Samochod - Cennik - Rezerwacja - Dodatek - Klient.
+ * Odczyty nie dotykają już plików; zapisy trafiają najpierw do DAO (plik), a potem do grafu w pamięci.
+ * W trybie zapisu odroczonego (KonfiguracjaBazy.isZapisOdroczony) graf zmienia się od razu, a migawki zmienionych
+ * rekordów trafiają do KolejkaZapisow, zapisywanej do plików w tle.
+ * W trybie leniwych relacji (KonfiguracjaBazy.isLeniweRelacje) przy starcie wczytywane są tylko cenniki, samochody
+ * i rezerwacje (z ID klienta i dodatków) - użytkownicy i dodatki są wczytywani przy pierwszym dostępie do nich,
+ * np. przez Rezerwacja.getKlient()/getDodatki(). Sprawdzanie dostępności czy nadawanie ID ich nie potrzebuje.
+ * Cenniki i dodatki pochodzą z RejestrSlownikow - po przeładowaniu niezmienione rekordy to te same obiekty co wcześniej.
+ * Serwisy mogą być tworzone wielokrotnie (każdy ekran GUI ma własne) - wszystkie korzystają z tej samej instancji.
+ */
+final class Repozytorium {
+
+    private static final Repozytorium INSTANCJA = new Repozytorium();
+
+    private final CennikDAO cennikDAO = new CennikDAO();
+    private final SamochodDAO samochodDAO = new SamochodDAO();
+    private final DodatekDAO dodatekDAO = new DodatekDAO();
+    private final UzytkownikDAO uzytkownikDAO = new UzytkownikDAO();
+    private final RezerwacjaDAO rezerwacjaDAO = new RezerwacjaDAO();
+
+    private final Map<Long, Cennik> cenniki = new LinkedHashMap<>();
+    private final MapaLongObiektow<Samochod> samochody = new MapaLongObiektow<>();
+    private final Map<Long, Dodatek> dodatki = new LinkedHashMap<>();
+    private final Map<Integer, Uzytkownik> uzytkownicy = new LinkedHashMap<>();
+    private final MapaLongObiektow<Rezerwacja> rezerwacje = new MapaLongObiektow<>();
+
+    // Indeks numerów rejestracyjnych (Samochod.kluczNumeru -> samochód), utrzymywany przy każdej zmianie floty.
+    private final Map<String, Samochod> samochodyPoNumerze = new HashMap<>();
+    // Numery występujące w pliku więcej niż raz (ręczna edycja) - tylko dla nich usunięcie wymaga szukania następcy.
+    private final Set<String> powtorzoneNumery = new HashSet<>();
+    private long maksIdSamochodu;
+
+    // Indeks pomocniczy klientId -> ID jego rezerwacji (w kolejności dodania), utrzymywany przy każdej zmianie rezerwacji.
+    private final IndeksKlientow rezerwacjePoKliencie = new IndeksKlientow();
+
+    // Indeks loginów (login -> użytkownik) i największe ID użytkownika - rejestracja sprawdza login i nadaje ID atomowo.
+    private final Map<String, Uzytkownik> uzytkownicyPoLoginie = new HashMap<>();
+    private int maksIdUzytkownika;
+
+    // Największe ID rezerwacji w pliku - także wierszy pominiętych przy składaniu grafu (brak klienta/samochodu)
+    // i usuniętych wpisem D w dzienniku; nigdy nie maleje (także przy przeładowaniu). Wpisy dziennika powstają tylko
+    // dla ID już wczytanych albo nadanych, więc nowe ID (maksIdRezerwacji + 1) nie ma w dzienniku żadnego wpisu,
+    // który mógłby przykryć dopisany wiersz - RezerwacjaDAO.dodaj nie musi tego sprawdzać.
+    private long maksIdRezerwacji;
+
+    private final KolejkaZapisow kolejkaZapisow = new KolejkaZapisow(this::zapiszZmiany);
+
+    private final RejestrSlownikow rejestr = new RejestrSlownikow();
+
+    // Dzień -> mapa bitowa zarezerwowanych samochodów, uaktualniana razem z rezerwacjami samochodów w grafie.
+    private final IndeksDostepnosci indeksDostepnosci = new IndeksDostepnosci();
+
+    // Źródło relacji rezerwacji wczytanych leniwie - pierwsze pobranie klienta lub dodatku wczytuje całą tabelę.
+    private final ZrodloRelacji zrodloRelacji = new ZrodloRelacji() {
+        @Override
+        public Klient klient(long id) {
+            synchronized (Repozytorium.this) {
+                wczytajUzytkownikowJesliTrzeba();
+                return uzytkownicy.get((int) id) instanceof Klient klient ? klient : null;
+            }
+        }
+
+        @Override
+        public Samochod samochod(long id) {
+            synchronized (Repozytorium.this) {
+                wczytajJesliTrzeba();
+                return samochody.pobierz(id);
+            }
+        }
+
+        @Override
+        public Dodatek dodatek(long id) {
+            synchronized (Repozytorium.this) {
+                wczytajDodatkiJesliTrzeba();
+                return dodatki.get(id);
+            }
+        }
+    };
+
+    private boolean wczytane;
+    private boolean leniweRelacje;
+    private boolean uzytkownicyWczytani;
+    private boolean dodatkiWczytane;
+
+    private Repozytorium() {
+    }
+
+    static Repozytorium instancja() {
+        return INSTANCJA;
+    }
+
+    /** Porzuca stan w pamięci - kolejne użycie wczyta wszystkie tabele od nowa. */
+    synchronized void przeladuj() {
+        wczytane = false;
+    }
+
+    // ===== Odczyty =====
+
+    synchronized List<Samochod> samochody() {
+        wczytajJesliTrzeba();
+        return new ArrayList<>(samochody.wartosci());
+    }
+
+    synchronized Samochod samochod(Long id) {
+        wczytajJesliTrzeba();
+        return id == null ? null : samochody.pobierz(id);
+    }
+
+    /** Samochody wolne w całym terminie (oba końce włącznie), w kolejności samochody(); z indeksu dni. */
+    synchronized List<Samochod> dostepneSamochody(LocalDate dataOd, LocalDate dataDo) {
+        wczytajJesliTrzeba();
+        return indeksDostepnosci.dostepne(dataOd, dataDo);
+    }
+
+    /** Samochód o numerze rejestracyjnym (bez względu na wielkość liter) albo null. */
+    synchronized Samochod samochodPoNumerze(String numerRejestracyjny) {
+        wczytajJesliTrzeba();
+        return samochodyPoNumerze.get(Samochod.kluczNumeru(numerRejestracyjny));
+    }
+
+    synchronized long noweIdSamochodu() {
+        wczytajJesliTrzeba();
+        return maksIdSamochodu + 1;
+    }
+
+    synchronized Cennik cennikDlaKategorii(KategoriaSamochodu kategoria) {
+        wczytajJesliTrzeba();
+        return cenniki.values().stream()
+                .filter(c -> c.getKategoria() == kategoria)
+                .findFirst()
+                .orElse(null);
+    }
+
+    synchronized List<Rezerwacja> rezerwacje() {
+        wczytajJesliTrzeba();
+        return new ArrayList<>(rezerwacje.wartosci());
+    }
+
+    synchronized Rezerwacja rezerwacja(Long id) {
+        wczytajJesliTrzeba();
+        return id == null ? null : rezerwacje.pobierz(id);
+    }
+
+    synchronized List<Rezerwacja> rezerwacjeKlienta(long klientId) {
+        wczytajJesliTrzeba();
+        List<Rezerwacja> wynik = new ArrayList<>();
+        rezerwacjePoKliencie.przegladaj(klientId, id -> wynik.add(rezerwacje.pobierz(id)));
+        return wynik;
+    }
+
+    synchronized List<Dodatek> dodatki() {
+        wczytajDodatkiJesliTrzeba();
+        return new ArrayList<>(dodatki.values());
+    }
+
+    synchronized Dodatek dodatek(Long id) {
+        wczytajDodatkiJesliTrzeba();
+        return dodatki.get(id);
+    }
+
+    synchronized List<Uzytkownik> uzytkownicy() {
+        wczytajUzytkownikowJesliTrzeba();
+        return new ArrayList<>(uzytkownicy.values());
+    }
+
+    /** Użytkownik o podanym loginie (porównanie z rozróżnianiem wielkości liter) albo null. */
+    synchronized Uzytkownik uzytkownikPoLoginie(String login) {
+        wczytajUzytkownikowJesliTrzeba();
+        return uzytkownicyPoLoginie.get(login);
+    }
+
+    // ===== Zapisy (najpierw plik, potem pamięć) =====
+
+    synchronized void dodajSamochod(Samochod samochod) {
+        wczytajJesliTrzeba();
+        ustawKanonicznyCennik(samochod);
+        zapisz(Tabela.SAMOCHODY, samochod.getId(), migawka(samochod), true, () -> samochodDAO.dodaj(samochod));
+        samochody.wstaw(samochod.getId(), samochod);
+        dodajDoIndeksuNumerow(samochod);
+        indeksDostepnosci.zastapSamochod(samochod);
+        maksIdSamochodu = Math.max(maksIdSamochodu, samochod.getId());
+    }
+
+    /** Podmienia samochód; jego rezerwacje są przepinane na nowy obiekt, żeby graf nie wskazywał starej wersji. */
+    synchronized void aktualizujSamochod(Samochod nowy) {
+        wczytajJesliTrzeba();
+        ustawKanonicznyCennik(nowy);
+        zapisz(Tabela.SAMOCHODY, nowy.getId(), migawka(nowy), false, () -> samochodDAO.aktualizuj(nowy));
+
+        Samochod stary = samochody.wstaw(nowy.getId(), nowy);
+        String klucz = Samochod.kluczNumeru(nowy.getNumerRejestracyjny());
+        if (stary != null && samochodyPoNumerze.get(klucz) == stary) {
+            samochodyPoNumerze.put(klucz, nowy); // numer bez zmian
+        } else {
+            if (stary != null) {
+                usunZIndeksuNumerow(stary);
+            }
+            dodajDoIndeksuNumerow(nowy);
+        }
+        indeksDostepnosci.zastapSamochod(nowy); // rezerwacje przepinane niżej mają te same terminy
+        maksIdSamochodu = Math.max(maksIdSamochodu, nowy.getId());
+        if (stary == null) {
+            return;
+        }
+
+        for (Rezerwacja r : stary.getRezerwacje()) {
+            Rezerwacja przepieta = kopiaZSamochodem(r, nowy);
+            rezerwacje.wstaw(przepieta.getId(), przepieta);
+            nowy.dodajRezerwacje(przepieta);
+        }
+    }
+
+    synchronized void usunSamochod(Long id) {
+        wczytajJesliTrzeba();
+        zapisz(Tabela.SAMOCHODY, id, null, false, () -> samochodDAO.usunPoId(id));
+
+        // Rezerwacje zostają w pliku, ale - jak przy wczytywaniu - bez samochodu nie trafiają do grafu.
+        Samochod usuniety = samochody.usun(id);
+        if (usuniety != null) {
+            usunZIndeksuNumerow(usuniety);
+            indeksDostepnosci.usunSamochod(usuniety);
+            for (Rezerwacja r : usuniety.getRezerwacje()) {
+                rezerwacje.usun(r.getId());
+                usunZIndeksuKlientow(r);
+            }
+        }
+    }
+
+    synchronized void dodajDodatek(Dodatek dodatek) {
+        wczytajDodatkiJesliTrzeba();
+        zapisz(Tabela.DODATKI, dodatek.getId(), migawka(dodatek), true, () -> dodatekDAO.dodaj(dodatek));
+        rejestr.zastapDodatek(dodatek);
+        dodatki.put(dodatek.getId(), dodatek);
+    }
+
+    /**
+     * Zapisuje zmiany dodatku. Zmieniony obiekt zastępuje poprzedni w całości (w rejestrze, w grafie i w rezerwacjach) -
+     * czytający widzi albo stary, albo nowy dodatek, nigdy częściowo zmieniony.
+     */
+    synchronized void aktualizujDodatek(Dodatek zmieniony) {
+        wczytajDodatkiJesliTrzeba();
+        zapisz(Tabela.DODATKI, zmieniony.getId(), migawka(zmieniony), false, () -> dodatekDAO.aktualizuj(zmieniony));
+
+        rejestr.zastapDodatek(zmieniony);
+        Dodatek stary = dodatki.put(zmieniony.getId(), zmieniony);
+        if (stary == null || stary == zmieniony) {
+            return;
+        }
+        for (Rezerwacja r : rezerwacje.wartosci()) {
+            if (r.getDodatkiIds().contains(zmieniony.getId())) { // bez pobierania dodatków rezerwacji wczytanych leniwie
+                r.getDodatki().replaceAll(d -> d == stary ? zmieniony : d);
+            }
+        }
+    }
+
+    synchronized void usunDodatek(Long id) {
+        wczytajDodatkiJesliTrzeba();
+        zapisz(Tabela.DODATKI, id, null, false, () -> dodatekDAO.usunPoId(id));
+
+        rejestr.usunDodatek(id);
+        Dodatek usuniety = dodatki.remove(id);
+        if (usuniety != null) {
+            for (Rezerwacja r : rezerwacje.wartosci()) {
+                if (r.getDodatkiIds().contains(id)) {
+                    r.getDodatki().remove(usuniety);
+                }
+            }
+        }
+    }
+
+    /**
+     * Rejestruje klienta z kolejnym wolnym ID. Sprawdzenie loginu, nadanie ID i zapis wykonywane są pod jedną blokadą,
+     * więc dwie równoczesne rejestracje nie dostaną tego samego loginu ani ID. Zwraca null, gdy login jest zajęty.
+     */
+    synchronized Klient zarejestrujKlienta(String login, String haslo, String imie, String nazwisko, String email) {
+        wczytajUzytkownikowJesliTrzeba();
+        if (uzytkownicyPoLoginie.containsKey(login)) {
+            return null;
+        }
+
+        Klient klient = new Klient(maksIdUzytkownika + 1, login, haslo, imie, nazwisko, email);
+        zapisz(Tabela.UZYTKOWNICY, klient.getId(), migawka(klient), true, () -> uzytkownikDAO.dodaj(klient));
+        uzytkownicy.put(klient.getId(), klient);
+        uzytkownicyPoLoginie.put(login, klient);
+        maksIdUzytkownika = klient.getId();
+        return klient;
+    }
+
+    synchronized void zmienHaslo(Uzytkownik uzytkownik, String noweHaslo) {
+        wczytajUzytkownikowJesliTrzeba();
+        uzytkownik.setHaslo(noweHaslo);
+        zapisz(Tabela.UZYTKOWNICY, uzytkownik.getId(), migawka(uzytkownik), false,
+                () -> uzytkownikDAO.zapiszWszystkich(new ArrayList<>(uzytkownicy.values())));
+    }
+
+    /**
+     * Tworzy rezerwację samochodu z kolejnym wolnym ID i dopina ją do samochodu z grafu. Sprawdzenie terminu
+     * (na przedziałach rezerwacji samochodu), nadanie ID i zapis wykonywane są pod jedną blokadą, więc dwie równoczesne
+     * rezerwacje nie zajmą tego samego terminu ani nie dostaną tego samego ID. Zwraca null, gdy termin jest zajęty.
+     */
+    synchronized Rezerwacja zarezerwuj(Klient klient, Long samochodId, LocalDate dataOd, LocalDate dataDo,
+                                       List<Dodatek> wybraneDodatki, BigDecimal cenaCalkowita) {
+        wczytajJesliTrzeba();
+        Samochod samochod = samochodId == null ? null : samochody.pobierz(samochodId);
+        if (samochod == null) {
+            throw new IllegalArgumentException("Nie znaleziono samochodu o ID: " + samochodId);
+        }
+        if (!samochod.czyDostepny(dataOd, dataDo)) {
+            return null;
+        }
+
+        Rezerwacja rezerwacja = new Rezerwacja(maksIdRezerwacji + 1, klient, samochod, dataOd, dataDo);
+        if (wybraneDodatki != null) {
+            rezerwacja.getDodatki().addAll(wybraneDodatki);
+        }
+        rezerwacja.setCenaCalkowita(cenaCalkowita);
+
+        zapisz(Tabela.REZERWACJE, rezerwacja.getId(), migawka(rezerwacja), true, () -> rezerwacjaDAO.dodaj(rezerwacja));
+
+        ustawKanoniczneDodatki(rezerwacja);
+        rezerwacje.wstaw(rezerwacja.getId(), rezerwacja);
+        dodajDoIndeksuKlientow(rezerwacja);
+        maksIdRezerwacji = Math.max(maksIdRezerwacji, rezerwacja.getId());
+        samochod.dodajRezerwacje(rezerwacja);
+        odswiezDostepnosc(rezerwacja);
+        return rezerwacja;
+    }
+
+    synchronized void zmienStatusRezerwacji(Long id, StatusRezerwacji status) {
+        wczytajJesliTrzeba();
+        Rezerwacja r = rezerwacje.pobierz(id);
+        if (r == null) {
+            // Wiersza nie ma w grafie (np. brak klienta), więc nie ma z czego zrobić migawki - zmiana idzie wprost do pliku.
+            kolejkaZapisow.oproznij();
+            rezerwacjaDAO.zmienStatus(id, status);
+            return;
+        }
+
+        Rezerwacja poZmianie = migawka(r);
+        poZmianie.setStatus(status);
+        zapisz(Tabela.REZERWACJE, id, poZmianie, false, () -> rezerwacjaDAO.zmienStatus(id, status));
+        r.setStatus(status);
+        r.getSamochod().odswiezTermin(r); // anulowanie zwalnia termin w przedziałach samochodu
+        odswiezDostepnosc(r);
+    }
+
+    /** Zastępuje rezerwację o tym samym ID (w mapie i na liście rezerwacji samochodu). */
+    synchronized void zastapRezerwacje(Rezerwacja nowa) {
+        wczytajJesliTrzeba();
+        zapisz(Tabela.REZERWACJE, nowa.getId(), migawka(nowa), false, () -> rezerwacjaDAO.aktualizuj(nowa));
+
+        ustawKanoniczneDodatki(nowa);
+        Rezerwacja stara = rezerwacje.wstaw(nowa.getId(), nowa);
+        if (stara != null) {
+            stara.getSamochod().usunRezerwacje(stara);
+            odswiezDostepnosc(stara);
+        }
+        if (stara == null || !Objects.equals(stara.getKlientId(), nowa.getKlientId())) {
+            if (stara != null) {
+                usunZIndeksuKlientow(stara);
+            }
+            dodajDoIndeksuKlientow(nowa); // ten sam klient - rezerwacja zostaje na swoim miejscu w indeksie
+        }
+        nowa.getSamochod().dodajRezerwacje(nowa);
+        odswiezDostepnosc(nowa);
+    }
+
+    synchronized void usunRezerwacje(Long id) {
+        wczytajJesliTrzeba();
+        zapisz(Tabela.REZERWACJE, id, null, false, () -> rezerwacjaDAO.usunPoId(id));
+
+        Rezerwacja usunieta = rezerwacje.usun(id);
+        if (usunieta != null) {
+            usunieta.getSamochod().usunRezerwacje(usunieta);
+            odswiezDostepnosc(usunieta);
+            usunZIndeksuKlientow(usunieta);
+        }
+    }
+
+    // ===== Zapis odroczony =====
+
+    /**
+     * Zapisuje zmianę rekordu: od razu przez DAO albo - w trybie zapisu odroczonego - jako migawkę do kolejki.
+     * Migawka jest kopią, bo graf w pamięci może się zmienić, zanim wątek zapisu do niej dotrze.
+     */
+    private void zapisz(Tabela tabela, Object klucz, Object migawka, boolean nowy, Runnable zapisTeraz) {
+        if (KonfiguracjaBazy.isZapisOdroczony()) {
+            kolejkaZapisow.dodaj(new KolejkaZapisow.Zmiana(tabela, klucz, migawka, nowy));
+            return;
+        }
+
+        kolejkaZapisow.oproznij(); // zmiany sprzed wyłączenia trybu odroczonego muszą trafić do pliku wcześniej
+        zapisTeraz.run();
+    }
+
+    /**
+     * Zapis partii z kolejki (wątek zapisu, bez blokady repozytorium): same nowe rekordy są dopisywane na końcu pliku,
+     * w pozostałych przypadkach cała partia tabeli trafia do pliku jednym nadpisaniem.
+     */
+    private void zapiszZmiany(Tabela tabela, List<KolejkaZapisow.Zmiana> zmiany) {
+        boolean tylkoNowe = zmiany.stream().allMatch(z -> z.nowy);
+        List<Object> zapisane = new ArrayList<>();
+        Set<Object> usuniete = new HashSet<>();
+        for (KolejkaZapisow.Zmiana z : zmiany) {
+            if (z.rekord != null) {
+                zapisane.add(z.rekord);
+            } else {
+                usuniete.add(z.klucz);
+            }
+        }
+
+        switch (tabela) {
+            case SAMOCHODY -> {
+                List<Samochod> lista = rzutuj(zapisane);
+                if (tylkoNowe) {
+                    lista.forEach(samochodDAO::dodaj);
+                } else {
+                    samochodDAO.zapiszZmiany(lista, rzutuj(usuniete));
+                }
+            }
+            case DODATKI -> {
+                List<Dodatek> lista = rzutuj(zapisane);
+                if (tylkoNowe) {
+                    lista.forEach(dodatekDAO::dodaj);
+                } else {
+                    dodatekDAO.zapiszZmiany(lista, rzutuj(usuniete));
+                }
+            }
+            case UZYTKOWNICY -> {
+                List<Uzytkownik> lista = rzutuj(zapisane);
+                if (tylkoNowe) {
+                    lista.forEach(uzytkownikDAO::dodaj);
+                } else {
+                    uzytkownikDAO.zapiszZmiany(lista, rzutuj(usuniete));
+                }
+            }
+            case REZERWACJE -> {
+                List<Rezerwacja> lista = rzutuj(zapisane);
+                if (tylkoNowe) {
+                    lista.forEach(rezerwacjaDAO::dodaj);
+                } else {
+                    rezerwacjaDAO.zapiszZmiany(lista, rzutuj(usuniete));
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T, K extends Collection<T>> K rzutuj(Collection<?> kolekcja) {
+        return (K) kolekcja;
+    }
+
+    private Samochod migawka(Samochod s) {
+        Samochod kopia = new Samochod(s.getId(), s.getMarka(), s.getModel(), s.getNumerRejestracyjny(),
+                s.getMocKM(), s.getRocznik(), s.getKategoria());
+        kopia.setCennik(s.getCennik());
+        return kopia;
+    }
+
+    private Dodatek migawka(Dodatek d) {
+        return new Dodatek(d.getId(), d.getNazwa(), d.getCena(), d.getTypRozliczania(),
+                rejestr.kategorie(d.getDostepneKategorie()));
+    }
+
+    private Uzytkownik migawka(Uzytkownik u) {
+        if (u instanceof Klient k) {
+            return new Klient(k.getId(), k.getLogin(), k.getHaslo(), k.getImie(), k.getNazwisko(), k.getEmail());
+        }
+        return new Pracownik(u.getId(), u.getLogin(), u.getHaslo(), u.getImie(), u.getNazwisko());
+    }
+
+    /** Do zapisu potrzebne są tylko ID relacji, więc migawka nie pobiera klienta ani dodatków (bez źródła relacji). */
+    private Rezerwacja migawka(Rezerwacja r) {
+        Rezerwacja kopia = new Rezerwacja(r.getId(), r.getKlientId(), r.getSamochodId(), r.getDodatkiIds(),
+                r.getDataOd(), r.getDataDo(), null);
+        kopia.setStatus(r.getStatus());
+        kopia.setCenaCalkowita(r.getCenaCalkowita());
+        return kopia;
+    }
+
+    // ===== Wczytanie grafu =====
+
+    private void wczytajJesliTrzeba() {
+        if (wczytane) {
+            return;
+        }
+
+        kolejkaZapisow.oproznij(); // wczytujemy pliki, więc muszą zawierać wszystkie wcześniejsze zmiany
+
+        cenniki.clear();
+        samochody.wyczysc();
+        samochodyPoNumerze.clear();
+        powtorzoneNumery.clear();
+        maksIdSamochodu = 0;
+        rezerwacje.wyczysc();
+        rezerwacjePoKliencie.wyczysc();
+        // Bez zerowania - ID usuniętej rezerwacji nie jest nadawane ponownie także po przeładowaniu.
+        maksIdRezerwacji = Math.max(maksIdRezerwacji, rezerwacjaDAO.najwiekszeIdWDzienniku());
+
+        for (Cennik c : cennikDAO.wczytajWszystkie()) {
+            cenniki.put(c.getId(), rejestr.cennik(c));
+        }
+        rejestr.zachowajCenniki(cenniki.keySet());
+
+        Map<Long, Long> cennikIdPoSamochodId = samochodDAO.wczytajMapeCennikIdPoSamochodId();
+        for (Samochod s : samochodDAO.wczytajWszystkie()) {
+            Long cennikId = cennikIdPoSamochodId.get(s.getId());
+            if (cennikId != null) {
+                s.setCennik(cenniki.get(cennikId));
+            }
+            samochody.wstaw(s.getId(), s);
+            dodajDoIndeksuNumerow(s);
+            maksIdSamochodu = Math.max(maksIdSamochodu, s.getId());
+        }
+
+        leniweRelacje = KonfiguracjaBazy.isLeniweRelacje();
+        uzytkownicyWczytani = false;
+        dodatkiWczytane = false;
+        Set<Integer> idKlientow = null;
+        if (leniweRelacje) {
+            idKlientow = uzytkownikDAO.wczytajIdKlientow();
+        } else {
+            wczytajDodatki();
+            wczytajUzytkownikow();
+        }
+
+        for (WierszRezerwacji w : rezerwacjaDAO.wczytajWszystkieZKluczami()) {
+            maksIdRezerwacji = Math.max(maksIdRezerwacji, w.getRezerwacja().getId());
+
+            Rezerwacja r = leniweRelacje ? zlozLeniwaRezerwacje(w, idKlientow) : zlozRezerwacje(w);
+            if (r != null) {
+                Rezerwacja powtorzona = rezerwacje.wstaw(r.getId(), r); // powtórzone ID w pliku edytowanym ręcznie
+                if (powtorzona != null) {
+                    usunZIndeksuKlientow(powtorzona);
+                }
+                dodajDoIndeksuKlientow(r);
+                samochody.pobierz(r.getSamochodId()).dodajRezerwacje(r); // bez getSamochod() - graf jest jeszcze składany
+            }
+        }
+        indeksDostepnosci.przebuduj(samochody.wartosci());
+
+        wczytane = true;
+    }
+
+    private void wczytajUzytkownikowJesliTrzeba() {
+        wczytajJesliTrzeba();
+        if (!uzytkownicyWczytani) {
+            kolejkaZapisow.oproznij();
+            wczytajUzytkownikow();
+        }
+    }
+
+    private void wczytajDodatkiJesliTrzeba() {
+        wczytajJesliTrzeba();
+        if (!dodatkiWczytane) {
+            kolejkaZapisow.oproznij();
+            wczytajDodatki();
+        }
+    }
+
+    private void wczytajUzytkownikow() {
+        uzytkownicy.clear();
+        uzytkownicyPoLoginie.clear();
+        maksIdUzytkownika = 0;
+
+        for (Uzytkownik u : uzytkownikDAO.wczytajWszystkich()) {
+            uzytkownicy.put(u.getId(), u);
+            uzytkownicyPoLoginie.putIfAbsent(u.getLogin(), u); // przy powtórzonym loginie wygrywa pierwszy, jak przy przeszukiwaniu listy
+            maksIdUzytkownika = Math.max(maksIdUzytkownika, u.getId());
+        }
+        uzytkownicyWczytani = true;
+    }
+
+    private void wczytajDodatki() {
+        dodatki.clear();
+        for (Dodatek d : dodatekDAO.wczytajWszystkie()) {
+            dodatki.put(d.getId(), rejestr.dodatek(d));
+        }
+        rejestr.zachowajDodatki(dodatki.keySet());
+        dodatkiWczytane = true;
+    }
+
+    /** Podpina pod samochód kanoniczny cennik o tym samym ID (samochód z GUI może mieć własną kopię). */
+    private void ustawKanonicznyCennik(Samochod samochod) {
+        Cennik cennik = samochod.getCennik();
+        if (cennik != null) {
+            samochod.setCennik(cenniki.getOrDefault(cennik.getId(), cennik));
+        }
+    }
+
+    /** Zamienia dodatki rezerwacji na kanoniczne obiekty z grafu (o ile dodatki są już wczytane). */
+    private void ustawKanoniczneDodatki(Rezerwacja rezerwacja) {
+        if (dodatkiWczytane) {
+            rezerwacja.getDodatki().replaceAll(d -> dodatki.getOrDefault(d.getId(), d));
+        }
+    }
+
+    /** Przy powtórzonym numerze indeks wskazuje pierwszy samochód (jak przy przeszukiwaniu listy). */
+    private void dodajDoIndeksuNumerow(Samochod samochod) {
+        String klucz = Samochod.kluczNumeru(samochod.getNumerRejestracyjny());
+        if (samochodyPoNumerze.putIfAbsent(klucz, samochod) != null) {
+            powtorzoneNumery.add(klucz);
+        }
+    }
+
+    /**
+     * Usuwa samochód z indeksu numerów. Serwis nie dopuszcza powtórzeń, ale plik edytowany ręcznie może je mieć -
+     * wtedy indeks przejmuje kolejny samochód z tym numerem.
+     */
+    private void usunZIndeksuNumerow(Samochod samochod) {
+        String klucz = Samochod.kluczNumeru(samochod.getNumerRejestracyjny());
+        if (!samochodyPoNumerze.remove(klucz, samochod) || !powtorzoneNumery.contains(klucz)) {
+            return;
+        }
+        for (Samochod s : samochody.wartosci()) {
+            if (klucz.equals(Samochod.kluczNumeru(s.getNumerRejestracyjny()))) {
+                samochodyPoNumerze.put(klucz, s);
+                break;
+            }
+        }
+    }
+
+    /** Przelicza dni rezerwacji w indeksie dostępności - po zmianie jej samochodu w grafie. */
+    private void odswiezDostepnosc(Rezerwacja r) {
+        indeksDostepnosci.odswiez(r.getSamochod(), r.getDataOd(), r.getDataDo());
+    }
+
+    private void dodajDoIndeksuKlientow(Rezerwacja r) {
+        rezerwacjePoKliencie.dodaj(r.getKlientId(), r.getId());
+    }
+
+    private void usunZIndeksuKlientow(Rezerwacja r) {
+        rezerwacjePoKliencie.usun(r.getKlientId(), r.getId());
+    }
+
+    /** Składa rezerwację z relacjami (null, gdy brakuje klienta lub samochodu). */
+    private Rezerwacja zlozRezerwacje(WierszRezerwacji w) {
+        Uzytkownik uzytkownik = w.getKlientId() == null ? null : uzytkownicy.get(w.getKlientId().intValue());
+        Samochod samochod = samochody.pobierz(w.getSamochodId());
+
+        if (!(uzytkownik instanceof Klient klient) || samochod == null) {
+            return null;
+        }
+
+        Rezerwacja r = w.getRezerwacja();
+        Rezerwacja nowa = new Rezerwacja(r.getId(), klient, samochod, r.getDataOd(), r.getDataDo());
+        nowa.setStatus(r.getStatus());
+        nowa.setCenaCalkowita(r.getCenaCalkowita());
+
+        for (Long did : w.getDodatkiIds()) {
+            Dodatek d = dodatki.get(did);
+            if (d != null) {
+                nowa.getDodatki().add(d);
+            }
+        }
+
+        return nowa;
+    }
+
+    /**
+     * Rezerwacja z leniwymi relacjami: klient i dodatki są pobierane przy pierwszym dostępie. Jak przy pełnym
+     * wczytaniu pomijany jest wiersz bez samochodu albo klienta - klienta sprawdza się w zbiorze ID klientów
+     * (UzytkownikDAO.wczytajIdKlientow), bez wczytywania użytkowników.
+     */
+    private Rezerwacja zlozLeniwaRezerwacje(WierszRezerwacji w, Set<Integer> idKlientow) {
+        if (w.getKlientId() == null || !idKlientow.contains(w.getKlientId().intValue())
+                || !samochody.zawiera(w.getSamochodId())) {
+            return null;
+        }
+
+        Rezerwacja r = w.getRezerwacja();
+        Rezerwacja nowa = new Rezerwacja(r.getId(), w.getKlientId(), w.getSamochodId(), w.getDodatkiIds(),
+                r.getDataOd(), r.getDataDo(), zrodloRelacji);
+        nowa.setStatus(r.getStatus());
+        nowa.setCenaCalkowita(r.getCenaCalkowita());
+        return nowa;
+    }
+
+    /**
+     * Kopia wskazująca podany samochód, w trybie grafu: przy leniwych relacjach klient i dodatki nie są pobierane,
+     * przy pełnym wczytaniu kopia dostaje te same obiekty klienta i dodatków.
+     */
+    private Rezerwacja kopiaZSamochodem(Rezerwacja r, Samochod samochod) {
+        Rezerwacja kopia;
+        if (leniweRelacje) {
+            kopia = new Rezerwacja(r.getId(), r.getKlientId(), samochod.getId(), r.getDodatkiIds(),
+                    r.getDataOd(), r.getDataDo(), zrodloRelacji);
+        } else {
+            kopia = new Rezerwacja(r.getId(), r.getKlient(), samochod, r.getDataOd(), r.getDataDo());
+            kopia.getDodatki().addAll(r.getDodatki());
+        }
+        kopia.setStatus(r.getStatus());
+        kopia.setCenaCalkowita(r.getCenaCalkowita());
+        return kopia;
+    }
+}
@@ -1,10 +1,5 @@
 package pl.pjatk.mas.service;
 
-import pl.pjatk.mas.dao.CennikDAO;
-import pl.pjatk.mas.dao.DodatekDAO;
-import pl.pjatk.mas.dao.RezerwacjaDAO;
-import pl.pjatk.mas.dao.SamochodDAO;
-import pl.pjatk.mas.dao.UzytkownikDAO;
 import pl.pjatk.mas.model.Cennik;
 import pl.pjatk.mas.model.Dodatek;
 import pl.pjatk.mas.model.Klient;
@@ -17,24 +12,16 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.temporal.ChronoUnit;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
 /**
  * Serwis odpowiedzialny za tworzenie i edycję rezerwacji.
- * Unika zależności od FlotaService (żeby nie tworzyć cyklu) i składa relacje ręcznie na bazie DAO.
+ * Graf obiektów (klient, samochód, dodatki) pochodzi ze wspólnego Repozytorium w pamięci.
  */
 
 public class RezerwacjaService {
 
-    private final RezerwacjaDAO rezerwacjaDAO = new RezerwacjaDAO();
-    private final UzytkownikDAO uzytkownikDAO = new UzytkownikDAO();
-    private final DodatekDAO dodatekDAO = new DodatekDAO();
-    private final SamochodDAO samochodDAO = new SamochodDAO();
-    private final CennikDAO cennikDAO = new CennikDAO();
+    private final Repozytorium repozytorium = Repozytorium.instancja();
 
     /**
      * Tworzy rezerwację dla aktualnie zalogowanego użytkownika (musi być Klient).
@@ -69,21 +56,23 @@ public class RezerwacjaService {
         if (samochod == null) throw new IllegalArgumentException("Samochód nie może być null");
         walidujDatyNowejRezerwacji(dataOd, dataDo);
 
-        if (!sprawdzDostepnosc(samochod, dataOd, dataDo)) {
-            throw new IllegalStateException("Samochód niedostępny w wybranym terminie");
+        // Dostępność sprawdzamy na samochodzie z repozytorium - tam są wszystkie aktualne rezerwacje.
+        Samochod auto = repozytorium.samochod(samochod.getId());
+        if (auto == null) {
+            throw new IllegalArgumentException("Nie znaleziono samochodu o ID: " + samochod.getId());
         }
 
-        Long id = generujNoweId();
-        Rezerwacja rezerwacja = new Rezerwacja(id, klient, samochod, dataOd, dataDo);
-
-        if (wybraneDodatki != null) {
-            rezerwacja.getDodatki().addAll(wybraneDodatki);
+        if (!sprawdzDostepnosc(auto, dataOd, dataDo)) {
+            throw new IllegalStateException("Samochód niedostępny w wybranym terminie");
         }
 
-        rezerwacja.setCenaCalkowita(policzCene(samochod, dataOd, dataDo, rezerwacja.getDodatki()));
-        samochod.dodajRezerwacje(rezerwacja);
+        BigDecimal cena = policzCene(auto, dataOd, dataDo, wybraneDodatki);
 
-        zapiszRezerwacje(rezerwacja);
+        // Termin jest sprawdzany ponownie w repozytorium, razem z nadaniem ID i zapisem - pod jedną blokadą.
+        Rezerwacja rezerwacja = repozytorium.zarezerwuj(klient, auto.getId(), dataOd, dataDo, wybraneDodatki, cena);
+        if (rezerwacja == null) {
+            throw new IllegalStateException("Samochód niedostępny w wybranym terminie");
+        }
         return rezerwacja;
     }
 
@@ -95,66 +84,24 @@ public class RezerwacjaService {
             throw new IllegalArgumentException("ID rezerwacji nie może być null");
         }
 
-        List<Rezerwacja> wszystkie = pobierzWszystkieRezerwacje();
-
-        Rezerwacja doAnulowania = wszystkie.stream()
-                .filter(r -> r.getId().equals(rezerwacjaId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Nie znaleziono rezerwacji o ID: " + rezerwacjaId));
+        Rezerwacja doAnulowania = repozytorium.rezerwacja(rezerwacjaId);
+        if (doAnulowania == null) {
+            throw new IllegalArgumentException("Nie znaleziono rezerwacji o ID: " + rezerwacjaId);
+        }
 
         if (doAnulowania.getStatus() != StatusRezerwacji.NOWA) {
             throw new IllegalStateException("Można anulować tylko rezerwacje ze statusem NOWA");
         }
 
-        doAnulowania.setStatus(StatusRezerwacji.ANULOWANA);
-        rezerwacjaDAO.zapiszWszystkie(wszystkie);
+        repozytorium.zmienStatusRezerwacji(rezerwacjaId, StatusRezerwacji.ANULOWANA);
     }
 
     /**
-     * Zwraca wszystkie rezerwacje, ze złożonymi relacjami: klient, samochód, dodatki.
+     * Zwraca wszystkie rezerwacje, ze złożonymi relacjami: klient, samochód, dodatki
+     * (w trybie leniwych relacji klient i dodatki są pobierane przy pierwszym dostępie).
      */
     public List<Rezerwacja> pobierzWszystkieRezerwacje() {
-        List<Rezerwacja> rezerwacjeCsv = rezerwacjaDAO.wczytajWszystkie();
-
-        Map<Long, Long> klientIdPoRezId = rezerwacjaDAO.wczytajMapeKlientIdPoRezerwacjaId();
-        Map<Long, Long> samochodIdPoRezId = rezerwacjaDAO.wczytajMapeSamochodIdPoRezerwacjaId();
-        Map<Long, List<Long>> dodatekIdsPoRezId = rezerwacjaDAO.wczytajMapeDodatekIdsPoRezerwacjaId();
-
-        Map<Long, Klient> klienciPoId = wczytajKlientowPoId();
-        Map<Long, Samochod> samochodyPoId = wczytajSamochodyBezRezerwacjiPoId();
-        Map<Long, Dodatek> dodatkiPoId = wczytajDodatkiPoId();
-
-        List<Rezerwacja> wynik = new ArrayList<>();
-
-        for (Rezerwacja r : rezerwacjeCsv) {
-            Long rezId = r.getId();
-
-            Long klientId = klientIdPoRezId.get(rezId);
-            Long samochodId = samochodIdPoRezId.get(rezId);
-
-            Klient klient = (klientId != null) ? klienciPoId.get(klientId) : null;
-            Samochod samochod = (samochodId != null) ? samochodyPoId.get(samochodId) : null;
-
-            if (klient == null || samochod == null) {
-                continue;
-            }
-
-            Rezerwacja nowa = new Rezerwacja(r.getId(), klient, samochod, r.getDataOd(), r.getDataDo());
-            nowa.setStatus(r.getStatus());
-            nowa.setCenaCalkowita(r.getCenaCalkowita());
-
-            List<Long> dodatekIds = dodatekIdsPoRezId.getOrDefault(rezId, List.of());
-            for (Long did : dodatekIds) {
-                Dodatek d = dodatkiPoId.get(did);
-                if (d != null) {
-                    nowa.getDodatki().add(d);
-                }
-            }
-
-            wynik.add(nowa);
-        }
-
-        return wynik;
+        return repozytorium.rezerwacje();
     }
 
     /**
@@ -163,12 +110,7 @@ public class RezerwacjaService {
     public List<Rezerwacja> pobierzRezerwacjeKlienta(Klient klient) {
         if (klient == null) throw new IllegalArgumentException("Klient nie może być null");
 
-        final Long klientId = (long) klient.getId();
-
-        return pobierzWszystkieRezerwacje().stream()
-                .filter(r -> r.getKlient() != null)
-                .filter(r -> (long) r.getKlient().getId() == klientId)
-                .collect(Collectors.toList());
+        return pobierzRezerwacjeKlientaPoId((long) klient.getId());
     }
 
     /**
@@ -177,9 +119,7 @@ public class RezerwacjaService {
     public List<Rezerwacja> pobierzRezerwacjeKlientaPoId(Long klientId) {
         if (klientId == null) throw new IllegalArgumentException("ID klienta nie może być null");
 
-        return pobierzWszystkieRezerwacje().stream()
-                .filter(r -> r.getKlient() != null && (long) r.getKlient().getId() == klientId)
-                .collect(Collectors.toList());
+        return repozytorium.rezerwacjeKlienta(klientId);
     }
 
     /**
@@ -212,13 +152,11 @@ public class RezerwacjaService {
     public void usunRezerwacje(Long rezerwacjaId) {
         if (rezerwacjaId == null) throw new IllegalArgumentException("ID rezerwacji nie może być null");
 
-        boolean istnieje = pobierzWszystkieRezerwacje().stream()
-                .anyMatch(r -> r.getId().equals(rezerwacjaId));
-        if (!istnieje) {
+        if (repozytorium.rezerwacja(rezerwacjaId) == null) {
             throw new IllegalArgumentException("Nie znaleziono rezerwacji o ID: " + rezerwacjaId);
         }
 
-        rezerwacjaDAO.usunPoId(rezerwacjaId);
+        repozytorium.usunRezerwacje(rezerwacjaId);
     }
 
     /**
@@ -235,34 +173,23 @@ public class RezerwacjaService {
         if (nowaDataDo.isBefore(nowaDataOd)) throw new IllegalArgumentException("Data do nie może być wcześniejsza niż data od");
         if (nowyStatus == null) throw new IllegalArgumentException("Status nie może być null");
 
-        List<Rezerwacja> wszystkie = pobierzWszystkieRezerwacje();
-
-        Rezerwacja rezerwacja = wszystkie.stream()
-                .filter(r -> r.getId().equals(rezerwacjaId))
-                .findFirst()
-                .orElseThrow(() -> new IllegalArgumentException("Nie znaleziono rezerwacji o ID: " + rezerwacjaId));
+        Rezerwacja istniejaca = repozytorium.rezerwacja(rezerwacjaId);
+        if (istniejaca == null) {
+            throw new IllegalArgumentException("Nie znaleziono rezerwacji o ID: " + rezerwacjaId);
+        }
 
-        rezerwacja.setDataOd(nowaDataOd);
-        rezerwacja.setDataDo(nowaDataDo);
+        // Zmiany budujemy na nowym obiekcie - obiekt w repozytorium jest podmieniany dopiero po zapisie do pliku.
+        Rezerwacja rezerwacja = new Rezerwacja(rezerwacjaId, istniejaca.getKlient(), istniejaca.getSamochod(),
+                nowaDataOd, nowaDataDo);
         rezerwacja.setStatus(nowyStatus);
 
-        rezerwacja.getDodatki().clear();
         if (noweDodatki != null) {
             rezerwacja.getDodatki().addAll(noweDodatki);
         }
 
         rezerwacja.setCenaCalkowita(policzCene(rezerwacja.getSamochod(), nowaDataOd, nowaDataDo, rezerwacja.getDodatki()));
 
-        rezerwacjaDAO.zapiszWszystkie(wszystkie);
-    }
-
-    /**
-     * Zapisuje nową rezerwację (pełny odczyt + dopisanie + zapis).
-     */
-    private void zapiszRezerwacje(Rezerwacja rezerwacja) {
-        List<Rezerwacja> rezerwacje = pobierzWszystkieRezerwacje();
-        rezerwacje.add(rezerwacja);
-        rezerwacjaDAO.zapiszWszystkie(rezerwacje);
+        repozytorium.zastapRezerwacje(rezerwacja);
     }
 
     /**
@@ -302,16 +229,6 @@ public class RezerwacjaService {
         return bazowa.add(sumaDodatkow).setScale(2, RoundingMode.HALF_UP);
     }
 
-    /**
-     * Generuje kolejne ID rezerwacji.
-     */
-    private Long generujNoweId() {
-        return pobierzWszystkieRezerwacje().stream()
-                .mapToLong(Rezerwacja::getId)
-                .max()
-                .orElse(0L) + 1;
-    }
-
     /**
      * Waliduje daty dla nowej rezerwacji.
      */
@@ -339,43 +256,4 @@ public class RezerwacjaService {
         }
         return (Klient) zalogowany;
     }
-
-    /**
-     * Wczytuje klientów i mapuje ich po ID.
-     */
-    private Map<Long, Klient> wczytajKlientowPoId() {
-        return uzytkownikDAO.wczytajWszystkich().stream()
-                .filter(u -> u instanceof Klient)
-                .map(u -> (Klient) u)
-                .collect(Collectors.toMap(k -> (long) k.getId(), Function.identity()));
-    }
-
-    /**
-     * Wczytuje dodatki i mapuje je po ID.
-     */
-    private Map<Long, Dodatek> wczytajDodatkiPoId() {
-        return dodatekDAO.wczytajWszystkie().stream()
-                .collect(Collectors.toMap(Dodatek::getId, Function.identity()));
-    }
-
-    /**
-     * Wczytuje samochody z DAO i dopina cenniki, ale NIE dopina rezerwacji (brak cyklu z FlotaService).
-     */
-    private Map<Long, Samochod> wczytajSamochodyBezRezerwacjiPoId() {
-        List<Samochod> samochody = samochodDAO.wczytajWszystkie();
-
-        Map<Long, Long> cennikIdPoSamochodId = samochodDAO.wczytajMapeCennikIdPoSamochodId();
-        Map<Long, Cennik> cennikiPoId = cennikDAO.wczytajWszystkie().stream()
-                .collect(Collectors.toMap(Cennik::getId, Function.identity()));
-
-        for (Samochod s : samochody) {
-            Long cennikId = cennikIdPoSamochodId.get(s.getId());
-            if (cennikId != null) {
-                s.setCennik(cennikiPoId.get(cennikId));
-            }
-        }
-
-        return samochody.stream()
-                .collect(Collectors.toMap(Samochod::getId, Function.identity()));
-    }
 }
\ No newline at end of file
@@ -0,0 +1,108 @@
+package pl.pjatk.mas.dao;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Mała baza plikowa dla testów w podanym (tymczasowym) katalogu. Ustawienia KonfiguracjaBazy są statyczne,
+ * więc utworz() zapamiętuje je i kieruje DAO do katalogu testu, a close() przywraca je i czyści PamiecTabel.
+ * Rezerwacje 1-5 leżą w trzech miesiącach 2030 r.; użytkownik 2 jest pracownikiem.
+ */
+public final class BazaTestowa implements AutoCloseable {
+
+    public static final String CENNIKI = """
+            id;kategoria;stawkaZaDobe;procentDodatkowyKierowca
+            1;SPORTOWY;300.00;0.25
+            2;MIEJSKI;150.00;0.10
+            3;SUV;220.00;0.15
+            """;
+
+    public static final String DODATKI = """
+            id;nazwa;cena;typRozliczania;kategorie
+            1;Fotelik dziecięcy;30.00;ZA_DOBE;
+            2;Dodatkowy kierowca;0.25;PROCENT_OD_STAWKI;MIEJSKI,SPORTOWY,SUV
+            """;
+
+    public static final String UZYTKOWNICY = """
+            typ;id;login;haslo;imie;nazwisko;email
+            KLIENT;1;klient;klient;Jan;Kowalski;jan@example.com
+            PRACOWNIK;2;pracownik;pracownik;Anna;Nowak;
+            KLIENT;3;klient3;haslo;Ewa;Wiśniewska;ewa@example.com
+            """;
+
+    public static final String SAMOCHODY = """
+            id;marka;model;numerRejestracyjny;mocKM;rocznik;kategoria;cennikId
+            1;BMW;M3;WX12345;480;2022;SPORTOWY;1
+            2;Toyota;Corolla;WX55555;120;2019;MIEJSKI;2
+            3;Volvo;XC60;WX99999;190;2021;SUV;3
+            """;
+
+    public static final String REZERWACJE = """
+            id;klientId;samochodId;dataOd;dataDo;status;cenaCalkowita;dodatkiIds
+            1;1;1;2030-01-10;2030-01-14;NOWA;1650.00;1
+            2;3;2;2030-01-20;2030-01-28;NOWA;1350.00;
+            3;1;1;2030-02-01;2030-02-03;ANULOWANA;900.00;
+            4;3;3;2030-02-15;2030-02-20;W_TRAKCIE;1830.00;1,2
+            5;1;2;2030-03-05;2030-03-06;ZAKONCZONA;375.00;2
+            """;
+
+    private final Path katalog;
+
+    private final String katalogPrzed = KonfiguracjaBazy.getKatalogBazy();
+    private final boolean dziennikPrzed = KonfiguracjaBazy.isDziennikRezerwacji();
+    private final boolean partycjePrzed = KonfiguracjaBazy.isPartycjonowanieRezerwacji();
+    private final boolean pamiecPrzed = KonfiguracjaBazy.isPamiecTabel();
+    private final boolean stalaSzerokoscPrzed = KonfiguracjaBazy.isStalaSzerokoscRezerwacji();
+    private final boolean leniwePrzed = KonfiguracjaBazy.isLeniweRelacje();
+    private final boolean odroczonyPrzed = KonfiguracjaBazy.isZapisOdroczony();
+
+    private BazaTestowa(Path katalog) {
+        this.katalog = katalog;
+    }
+
+    /** Zapisuje tabele w katalogu i ustawia go jako katalog bazy (pozostałe ustawienia bez zmian). */
+    public static BazaTestowa utworz(Path katalog) throws IOException {
+        BazaTestowa baza = new BazaTestowa(katalog);
+        baza.zapisz("cenniki.csv", CENNIKI);
+        baza.zapisz("dodatki.csv", DODATKI);
+        baza.zapisz("uzytkownicy.csv", UZYTKOWNICY);
+        baza.zapisz("samochody.csv", SAMOCHODY);
+        baza.zapisz("rezerwacje.csv", REZERWACJE);
+
+        KonfiguracjaBazy.setKatalogBazy(katalog.toString());
+        PamiecTabel.wyczysc();
+        return baza;
+    }
+
+    public Path plik(String nazwa) {
+        return katalog.resolve(nazwa);
+    }
+
+    /** Nadpisuje plik tabeli z pominięciem DAO (jak edycja pliku poza aplikacją). */
+    public void zapisz(String nazwa, String tresc) throws IOException {
+        Files.writeString(plik(nazwa), tresc, StandardCharsets.UTF_8);
+    }
+
+    public void dopisz(String nazwa, String linia) throws IOException {
+        Files.writeString(plik(nazwa), Files.readString(plik(nazwa), StandardCharsets.UTF_8) + linia + "\n",
+                StandardCharsets.UTF_8);
+    }
+
+    public String czytaj(String nazwa) throws IOException {
+        return Files.readString(plik(nazwa), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        KonfiguracjaBazy.setKatalogBazy(katalogPrzed);
+        KonfiguracjaBazy.setDziennikRezerwacji(dziennikPrzed);
+        KonfiguracjaBazy.setPartycjonowanieRezerwacji(partycjePrzed);
+        KonfiguracjaBazy.setPamiecTabel(pamiecPrzed);
+        KonfiguracjaBazy.setStalaSzerokoscRezerwacji(stalaSzerokoscPrzed);
+        KonfiguracjaBazy.setLeniweRelacje(leniwePrzed);
+        KonfiguracjaBazy.setZapisOdroczony(odroczonyPrzed);
+        PamiecTabel.wyczysc();
+    }
+}
@@ -0,0 +1,141 @@
+package pl.pjatk.mas.dao;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Pomiar map relacji rezerwacji (rezerwacjaId -> klientId, -> samochodId, -> ID dodatków) dla dużej tabeli:
+ * czas wczytania, czas GC w trakcie wczytywania i pamięć zajmowana przez gotowe mapy.
+ * Tryb "prymitywne" wczytuje mapy metodami RezerwacjaDAO (MapaLongLong / MapaLongTablic), tryb "hashmap" -
+ * tym samym przebiegiem po pliku do HashMap<Long, Long> / HashMap<Long, List<Long>>, więc różnica pochodzi
+ * wyłącznie z reprezentacji map. Każdy tryb należy uruchamiać w osobnej JVM, np.:
+ * <pre>
+ * java -Xmx3g -XX:+UseG1GC -cp klasy pl.pjatk.mas.dao.BenchmarkMapRelacji hashmap 5000000
+ * java -Xmx3g -XX:+UseG1GC -cp klasy pl.pjatk.mas.dao.BenchmarkMapRelacji prymitywne 5000000
+ * </pre>
+ * Plik z danymi (stałe ziarno losowania) powstaje przy pierwszym uruchomieniu w katalogu tymczasowym
+ * (albo w katalogu podanym jako trzeci argument) i jest używany ponownie.
+ */
+public final class BenchmarkMapRelacji {
+
+    private BenchmarkMapRelacji() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        String tryb = args.length > 0 ? args[0] : "prymitywne";
+        int liczbaWierszy = args.length > 1 ? Integer.parseInt(args[1]) : 5_000_000;
+        Path katalog = args.length > 2 ? Path.of(args[2])
+                : Path.of(System.getProperty("java.io.tmpdir"), "mas-benchmark-" + liczbaWierszy);
+
+        przygotujDane(katalog, liczbaWierszy);
+        KonfiguracjaBazy.setKatalogBazy(katalog.toString());
+        KonfiguracjaBazy.setPamiecTabel(false);
+
+        long pamiecPrzed = zajetaPamiec();
+        long gcPrzed = czasGcMs();
+        long start = System.nanoTime();
+
+        Object[] mapy = switch (tryb) {
+            case "prymitywne" -> wczytajPrymitywne();
+            case "hashmap" -> wczytajHashMap(katalog.resolve("rezerwacje.csv").toString());
+            default -> throw new IllegalArgumentException("Nieznany tryb: " + tryb + " (prymitywne|hashmap)");
+        };
+
+        long czasMs = (System.nanoTime() - start) / 1_000_000;
+        long gcMs = czasGcMs() - gcPrzed;
+        long zajete = zajetaPamiec() - pamiecPrzed;
+
+        System.out.printf("%s: wierszy=%d, wczytanie=%d ms, GC=%d ms, pamięć map=%d MB%n",
+                tryb, liczbaWierszy, czasMs, gcMs, zajete / (1024 * 1024));
+        System.out.println("kontrolnie: " + mapy.length + " mapy"); // mapy muszą być osiągalne do pomiaru pamięci
+    }
+
+    private static Object[] wczytajPrymitywne() {
+        RezerwacjaDAO dao = new RezerwacjaDAO();
+        return new Object[]{
+                dao.wczytajMapeKlientIdPoRezerwacjaId(),
+                dao.wczytajMapeSamochodIdPoRezerwacjaId(),
+                dao.wczytajMapeDodatekIdsPoRezerwacjaId()
+        };
+    }
+
+    private static Object[] wczytajHashMap(String sciezka) {
+        RezerwacjaDAO dao = new RezerwacjaDAO();
+        Map<Long, Long> klienci = new HashMap<>();
+        Map<Long, Long> samochody = new HashMap<>();
+        Map<Long, List<Long>> dodatki = new HashMap<>();
+
+        dao.przegladajLinie(sciezka, linia -> {
+            KursorCsv pola = linia.kursor();
+            long id = pola.nastepnyLong();
+            klienci.put(id, pola.nastepnyLong());
+            samochody.put(id, pola.nastepnyLong());
+            for (int i = 3; i < 7; i++) {
+                pola.pominPole();
+            }
+            dodatki.put(id, pola.nastepnaListaId());
+        });
+        return new Object[]{klienci, samochody, dodatki};
+    }
+
+    private static void przygotujDane(Path katalog, int liczbaWierszy) throws IOException {
+        Path plik = katalog.resolve("rezerwacje.csv");
+        if (Files.exists(plik)) {
+            return;
+        }
+        Files.createDirectories(katalog);
+
+        Random losowe = new Random(2024);
+        LocalDate poczatek = LocalDate.of(2024, 1, 1);
+        Path tymczasowy = katalog.resolve("rezerwacje.csv.tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tymczasowy, StandardCharsets.UTF_8)) {
+            out.write("id;klientId;samochodId;dataOd;dataDo;status;cenaCalkowita;dodatkiIds\n");
+            StringBuilder linia = new StringBuilder();
+            for (int id = 1; id <= liczbaWierszy; id++) {
+                LocalDate od = poczatek.plusDays(losowe.nextInt(1000));
+                linia.setLength(0);
+                linia.append(id).append(';')
+                        .append(1 + losowe.nextInt(100_000)).append(';')
+                        .append(1 + losowe.nextInt(50_000)).append(';')
+                        .append(od).append(';').append(od.plusDays(1 + losowe.nextInt(14))).append(';')
+                        .append("NOWA;").append(100 + losowe.nextInt(5000)).append(".00;");
+                List<Integer> ids = new ArrayList<>();
+                for (int d = losowe.nextInt(4); d > 0; d--) {
+                    ids.add(1 + losowe.nextInt(7));
+                }
+                for (int i = 0; i < ids.size(); i++) {
+                    linia.append(i > 0 ? "," : "").append(ids.get(i));
+                }
+                out.append(linia).append('\n');
+            }
+        }
+        Files.move(tymczasowy, plik);
+    }
+
+    private static long zajetaPamiec() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long czasGcMs() {
+        long suma = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            suma += Math.max(0, gc.getCollectionTime());
+        }
+        return suma;
+    }
+}
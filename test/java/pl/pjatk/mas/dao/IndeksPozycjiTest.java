@@ -0,0 +1,93 @@
+package pl.pjatk.mas.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IndeksPozycjiTest {
+
+    private static final String NAGLOWEK = "id;klientId;samochodId;dataOd;dataDo;status;cenaCalkowita;dodatkiIds\n";
+    private static final String W1 = "1;1;1;2030-01-10;2030-01-14;NOWA;1650.00;1";
+    private static final String W2 = "2;3;2;2030-01-20;2030-01-28;NOWA;1350.00;";
+    private static final String W3 = "3;1;1;2030-02-01;2030-02-03;NOWA;1350.00;";
+
+    @TempDir
+    Path katalog;
+
+    @Test
+    void czytaWierszePoIdIZapisujeIndeksObokPliku() throws IOException {
+        Path plik = zapisz(W1, W2, W3);
+
+        assertEquals(W2, wiersz(plik, 2));
+        assertEquals(W1, wiersz(plik, 1));
+        assertNull(IndeksPozycji.czytajWiersz(plik, 4));
+        assertTrue(Files.exists(katalog.resolve("rezerwacje.csv.idx")));
+    }
+
+    @Test
+    void edycjaZmieniajacaDlugoscPlikuPrzebudowujeIndeks() throws IOException {
+        Path plik = zapisz(W1, W2, W3);
+        assertEquals(W3, wiersz(plik, 3));
+
+        String dluzszy = "1;1;1;2030-01-10;2030-01-14;ZAKONCZONA;1650.00;1,2";
+        zapisz(dluzszy, W2, W3);
+
+        assertEquals(dluzszy, wiersz(plik, 1));
+        assertEquals(W3, wiersz(plik, 3));
+    }
+
+    @Test
+    void edycjaZZachowaniemDlugosciPlikuPrzebudowujeIndeks() throws IOException {
+        Path plik = zapisz(W1, W2, W3);
+        assertEquals(W2, wiersz(plik, 2));
+        long rozmiar = Files.size(plik);
+
+        // Wiersze 2 i 3 mają tę samą długość - po zamianie plik ma ten sam rozmiar, ale inne pozycje ID.
+        zapisz(W1, W3, W2);
+        assertEquals(rozmiar, Files.size(plik));
+
+        assertEquals(W2, wiersz(plik, 2));
+        assertEquals(W3, wiersz(plik, 3));
+    }
+
+    @Test
+    void wierszUsunietyPozaAplikacjaNieJestZwracany() throws IOException {
+        Path plik = zapisz(W1, W2, W3);
+        assertEquals(W3, wiersz(plik, 3));
+
+        zapisz(W1, W2);
+
+        assertNull(IndeksPozycji.czytajWiersz(plik, 3));
+        assertEquals(W2, wiersz(plik, 2));
+    }
+
+    @Test
+    void uszkodzonyIndeksJestBudowanyOdNowa() throws IOException {
+        Path plik = zapisz(W1, W2, W3);
+        assertEquals(W1, wiersz(plik, 1));
+
+        Files.write(katalog.resolve("rezerwacje.csv.idx"), new byte[]{1, 2, 3});
+
+        assertEquals(W3, wiersz(plik, 3));
+    }
+
+    private Path zapisz(String... wiersze) throws IOException {
+        Path plik = katalog.resolve("rezerwacje.csv");
+        Files.writeString(plik, NAGLOWEK + String.join("\n", wiersze) + "\n", StandardCharsets.UTF_8);
+        return plik;
+    }
+
+    private static String wiersz(Path plik, long id) throws IOException {
+        ByteBuffer bajty = IndeksPozycji.czytajWiersz(plik, id);
+        return bajty == null ? null : StandardCharsets.UTF_8.decode(bajty).toString();
+    }
+}
@@ -0,0 +1,185 @@
+package pl.pjatk.mas.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.pjatk.mas.model.Rezerwacja;
+import pl.pjatk.mas.model.StatusRezerwacji;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RezerwacjaDAOTest {
+
+    @TempDir
+    Path katalog;
+
+    private BazaTestowa baza;
+    private RezerwacjaDAO dao;
+
+    @BeforeEach
+    void przygotuj() throws IOException {
+        baza = BazaTestowa.utworz(katalog);
+        dao = new RezerwacjaDAO();
+    }
+
+    @AfterEach
+    void sprzataj() {
+        baza.close();
+    }
+
+    @Test
+    void dziennikUsuwaWierszDopisanyDoPlikuBazowego() {
+        KonfiguracjaBazy.setDziennikRezerwacji(true);
+
+        dao.dodaj(rezerwacja(6L, "2030-04-01", "2030-04-03"));
+        dao.usunPoId(6L);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(dao.wczytajWszystkie()));
+        assertNull(dao.znajdzPoId(6L));
+        assertEquals(6, dao.najwiekszeIdWDzienniku());
+    }
+
+    @Test
+    void wierszZNowymIdPoUsunieciuJestWidocznyPrzedIPoKompaktowaniu() {
+        KonfiguracjaBazy.setDziennikRezerwacji(true);
+
+        dao.dodaj(rezerwacja(6L, "2030-04-01", "2030-04-03"));
+        dao.usunPoId(6L);
+        dao.dodaj(rezerwacja(7L, "2030-04-01", "2030-04-03"));
+        dao.zmienStatus(7L, StatusRezerwacji.W_TRAKCIE);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 7L), ids(dao.wczytajWszystkie()));
+        assertEquals(StatusRezerwacji.W_TRAKCIE, dao.znajdzPoId(7L).getStatus());
+        assertEquals(7, dao.najwiekszeIdWDzienniku());
+
+        dao.kompaktuj();
+
+        assertFalse(baza.plik("rezerwacje.dziennik.csv").toFile().exists());
+        assertEquals(0, dao.najwiekszeIdWDzienniku());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 7L), ids(dao.wczytajWszystkie()));
+        assertEquals(StatusRezerwacji.W_TRAKCIE, dao.znajdzPoId(7L).getStatus());
+        assertNull(dao.znajdzPoId(6L));
+    }
+
+    @Test
+    void usuniecieNajwiekszegoIdZostajeWDziennikuPoPonownymOdczycie() throws IOException {
+        KonfiguracjaBazy.setDziennikRezerwacji(true);
+
+        dao.usunPoId(5L);
+        PamiecTabel.wyczysc();
+        RezerwacjaDAO ponownie = new RezerwacjaDAO();
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), ids(ponownie.wczytajWszystkie()));
+        assertEquals(5, ponownie.najwiekszeIdWDzienniku());
+        assertTrue(baza.czytaj("rezerwacje.csv").contains("\n5;"));
+    }
+
+    @Test
+    void migracjaDoPartycjiZachowujeWiersze() throws IOException {
+        List<String> przed = opisy(dao.wczytajWszystkieZKluczami());
+
+        KonfiguracjaBazy.setPartycjonowanieRezerwacji(true);
+        List<String> po = opisy(dao.wczytajWszystkieZKluczami());
+
+        assertEquals(przed, po);
+        assertFalse(Files.exists(baza.plik("rezerwacje.csv")));
+        assertEquals(List.of("2030-01.csv", "2030-02.csv", "2030-03.csv", "manifest.csv"), plikiPartycji());
+        assertEquals(List.of("1;1;1;2030-01-10;2030-01-14;NOWA;1650.00;1", "2;3;2;2030-01-20;2030-01-28;NOWA;1350.00;"),
+                wierszeDanych("rezerwacje/2030-01.csv"));
+    }
+
+    @Test
+    void partycjeWracajaDoJednegoPlikuBezZmianWDanych() throws IOException {
+        KonfiguracjaBazy.setPartycjonowanieRezerwacji(true);
+        // Rezerwacja 1 przenoszona z partycji 2030-01 do 2030-03.
+        Rezerwacja przeniesiona = new Rezerwacja(1L, 1L, 1L, List.of(1L),
+                LocalDate.parse("2030-03-10"), LocalDate.parse("2030-03-12"), null);
+        przeniesiona.setCenaCalkowita(new BigDecimal("1650.00"));
+        dao.aktualizuj(przeniesiona);
+        dao.dodaj(rezerwacja(6L, "2030-04-01", "2030-04-03"));
+
+        List<String> oczekiwane = List.of(
+                "2;3;2;2030-01-20;2030-01-28;NOWA;1350.00;",
+                "3;1;1;2030-02-01;2030-02-03;ANULOWANA;900.00;",
+                "4;3;3;2030-02-15;2030-02-20;W_TRAKCIE;1830.00;1,2",
+                "5;1;2;2030-03-05;2030-03-06;ZAKONCZONA;375.00;2",
+                "1;1;1;2030-03-10;2030-03-12;NOWA;1650.00;1",
+                "6;1;2;2030-04-01;2030-04-03;NOWA;450.00;1");
+        assertEquals(oczekiwane, opisy(dao.wczytajWszystkieZKluczami()));
+        assertEquals(List.of("2030-01.csv", "2030-02.csv", "2030-03.csv", "2030-04.csv", "manifest.csv"), plikiPartycji());
+
+        // Eksport do zwykłego pliku i odczyt bez partycji w nowym katalogu - te same wiersze.
+        Path kopia = Files.createDirectory(katalog.resolve("kopia"));
+        dao.eksportujCsv(kopia.resolve("rezerwacje.csv").toString());
+        KonfiguracjaBazy.setPartycjonowanieRezerwacji(false);
+        KonfiguracjaBazy.setKatalogBazy(kopia.toString());
+
+        assertEquals(oczekiwane, opisy(new RezerwacjaDAO().wczytajWszystkieZKluczami()));
+    }
+
+    @Test
+    void zmianaWierszaPrzepisujeTylkoJegoPartycje() throws IOException {
+        KonfiguracjaBazy.setPartycjonowanieRezerwacji(true);
+        dao.wczytajWszystkieZKluczami();
+        FileTime dawno = FileTime.from(Instant.parse("2001-01-01T00:00:00Z"));
+        for (String partycja : List.of("2030-01.csv", "2030-02.csv", "2030-03.csv")) {
+            Files.setLastModifiedTime(baza.plik("rezerwacje/" + partycja), dawno);
+        }
+
+        dao.zmienStatus(4L, StatusRezerwacji.ZAKONCZONA);
+        dao.usunPoId(3L);
+
+        assertEquals(dawno, Files.getLastModifiedTime(baza.plik("rezerwacje/2030-01.csv")));
+        assertEquals(dawno, Files.getLastModifiedTime(baza.plik("rezerwacje/2030-03.csv")));
+        assertEquals(List.of("4;3;3;2030-02-15;2030-02-20;ZAKONCZONA;1830.00;1,2"), wierszeDanych("rezerwacje/2030-02.csv"));
+        assertEquals(List.of(1L, 2L, 4L, 5L), ids(dao.wczytajWszystkie()));
+    }
+
+    static Rezerwacja rezerwacja(Long id, String dataOd, String dataDo) {
+        Rezerwacja r = new Rezerwacja(id, 1L, 2L, List.of(1L), LocalDate.parse(dataOd), LocalDate.parse(dataDo), null);
+        r.setCenaCalkowita(new BigDecimal("450.00"));
+        return r;
+    }
+
+    private List<String> plikiPartycji() throws IOException {
+        try (Stream<Path> pliki = Files.list(baza.plik("rezerwacje"))) {
+            return pliki.map(p -> p.getFileName().toString()).filter(n -> n.endsWith(".csv")).sorted().toList();
+        }
+    }
+
+    /** Wiersze pliku bez nagłówka CSV. */
+    private List<String> wierszeDanych(String nazwa) throws IOException {
+        List<String> linie = Files.readAllLines(baza.plik(nazwa), StandardCharsets.UTF_8);
+        return linie.subList(1, linie.size());
+    }
+
+    /** Wiersze w postaci pliku CSV - do porównywania wszystkich pól naraz. */
+    static List<String> opisy(List<WierszRezerwacji> wiersze) {
+        return wiersze.stream().map(w -> {
+            Rezerwacja r = w.getRezerwacja();
+            return r.getId() + ";" + w.getKlientId() + ";" + w.getSamochodId() + ";" + r.getDataOd() + ";"
+                    + r.getDataDo() + ";" + r.getStatus() + ";" + r.getCenaCalkowita() + ";"
+                    + w.getDodatkiIds().stream().map(String::valueOf).collect(Collectors.joining(","));
+        }).collect(Collectors.toList());
+    }
+
+    static List<Long> ids(List<Rezerwacja> rezerwacje) {
+        return rezerwacje.stream().map(Rezerwacja::getId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,171 @@
+package pl.pjatk.mas.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TerminyRezerwacjiTest {
+
+    private final TerminyRezerwacji terminy = new TerminyRezerwacji();
+
+    @Test
+    void pustyZbiorNieBlokujeZadnegoTerminu() {
+        assertFalse(terminy.nachodzi(0, 0));
+        assertFalse(terminy.nachodzi(-100, 100));
+    }
+
+    @Test
+    void konceTerminuLiczaSieWlacznie() {
+        dodaj(10, 14);
+        dodaj(20, 28);
+
+        assertTrue(terminy.nachodzi(14, 14));
+        assertTrue(terminy.nachodzi(9, 10));
+        assertTrue(terminy.nachodzi(28, 28));
+        assertTrue(terminy.nachodzi(14, 20));
+        assertFalse(terminy.nachodzi(9, 9));
+        assertFalse(terminy.nachodzi(15, 19));
+        assertFalse(terminy.nachodzi(29, 30));
+    }
+
+    @Test
+    void terminObejmujacyLubZawartyWRezerwacjiNachodzi() {
+        dodaj(10, 14);
+
+        assertTrue(terminy.nachodzi(1, 100));
+        assertTrue(terminy.nachodzi(11, 12));
+    }
+
+    @Test
+    void dlugaRezerwacjaBlokujeTerminZaPozniejszymiKrotkimi() {
+        dodaj(1, 30);
+        dodaj(5, 6);
+        dodaj(8, 9);
+
+        // Ostatni przedział zaczynający się przed terminem kończy się wcześniej - blokuje ten z pozycji 0.
+        assertTrue(terminy.nachodzi(20, 25));
+        assertFalse(terminy.nachodzi(31, 40));
+    }
+
+    @Test
+    void usunietyPrzedzialPrzestajeBlokowac() {
+        Rezerwacja dluga = dodaj(1, 30);
+        dodaj(5, 6);
+
+        assertTrue(terminy.usun(dluga));
+        assertFalse(terminy.usun(dluga));
+
+        assertFalse(terminy.nachodzi(20, 25));
+        assertTrue(terminy.nachodzi(6, 7));
+        assertEquals(1, terminy.rozmiar());
+    }
+
+    @Test
+    void wynikZgodnyZPorownaniemZKazdymPrzedzialem() {
+        Random losowe = new Random(23);
+        List<long[]> przedzialy = new ArrayList<>();
+        List<Rezerwacja> rezerwacje = new ArrayList<>();
+
+        for (int krok = 0; krok < 2000; krok++) {
+            if (!rezerwacje.isEmpty() && losowe.nextInt(4) == 0) {
+                int i = losowe.nextInt(rezerwacje.size());
+                terminy.usun(rezerwacje.remove(i));
+                przedzialy.remove(i);
+            } else {
+                long od = losowe.nextInt(365);
+                long doDnia = od + losowe.nextInt(losowe.nextInt(10) == 0 ? 60 : 7);
+                rezerwacje.add(dodaj(od, doDnia));
+                przedzialy.add(new long[]{od, doDnia});
+            }
+
+            long od = losowe.nextInt(380) - 5;
+            long doDnia = od + losowe.nextInt(10);
+            assertEquals(nachodziWprost(przedzialy, od, doDnia), terminy.nachodzi(od, doDnia), "krok " + krok);
+        }
+    }
+
+    @Test
+    void pierwszyWolnyWPustymZbiorzeToDzienStartu() {
+        assertEquals(7, terminy.pierwszyWolny(7, 30));
+    }
+
+    @Test
+    void pierwszyWolnyMiesciSieDokladnieWLuce() {
+        dodaj(10, 14);
+        dodaj(20, 28);
+
+        assertEquals(0, terminy.pierwszyWolny(0, 10));
+        assertEquals(15, terminy.pierwszyWolny(15, 5));
+        assertEquals(15, terminy.pierwszyWolny(12, 5));
+        assertEquals(15, terminy.pierwszyWolny(14, 1));
+        assertEquals(29, terminy.pierwszyWolny(0, 11));
+        assertEquals(29, terminy.pierwszyWolny(15, 6));
+        assertEquals(29, terminy.pierwszyWolny(28, 1));
+        assertEquals(40, terminy.pierwszyWolny(40, 100));
+    }
+
+    @Test
+    void pierwszyWolnyPrzeskakujeDlugaRezerwacjeZaKrotkimi() {
+        dodaj(1, 30);
+        dodaj(5, 6);
+        dodaj(31, 32);
+
+        assertEquals(33, terminy.pierwszyWolny(10, 1));
+        assertEquals(0, terminy.pierwszyWolny(0, 1));
+        assertEquals(33, terminy.pierwszyWolny(0, 2));
+    }
+
+    @Test
+    void pierwszyWolnyZgodnyZPrzegladaniemKolejnychDni() {
+        Random losowe = new Random(25);
+        List<long[]> przedzialy = new ArrayList<>();
+
+        for (int krok = 0; krok < 500; krok++) {
+            long od = losowe.nextInt(200);
+            long doDnia = od + losowe.nextInt(losowe.nextInt(10) == 0 ? 40 : 5);
+            dodaj(od, doDnia);
+            przedzialy.add(new long[]{od, doDnia});
+
+            long start = losowe.nextInt(220) - 10;
+            int liczbaDni = 1 + losowe.nextInt(6);
+            long oczekiwany = start;
+            while (nachodziWprost(przedzialy, oczekiwany, oczekiwany + liczbaDni - 1)) {
+                oczekiwany++;
+            }
+            assertEquals(oczekiwany, terminy.pierwszyWolny(start, liczbaDni), "krok " + krok);
+        }
+    }
+
+    @Test
+    void najblizszyWolnyTerminWymagaCoNajmniejJednegoDnia() {
+        Samochod samochod = new Samochod(1L, "BMW", "M3", "WX12345", 480, Year.of(2022), KategoriaSamochodu.SPORTOWY);
+        LocalDate dzien = LocalDate.of(2030, 1, 1);
+
+        assertThrows(IllegalArgumentException.class, () -> samochod.najblizszyWolnyTermin(dzien, 0));
+        assertEquals(dzien, samochod.najblizszyWolnyTermin(dzien, 1));
+    }
+
+    private Rezerwacja dodaj(long od, long doDnia) {
+        Rezerwacja r = new Rezerwacja(null, null, null, LocalDate.ofEpochDay(od), LocalDate.ofEpochDay(doDnia));
+        terminy.dodaj(r);
+        return r;
+    }
+
+    private static boolean nachodziWprost(List<long[]> przedzialy, long od, long doDnia) {
+        for (long[] p : przedzialy) {
+            if (p[0] <= doDnia && od <= p[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
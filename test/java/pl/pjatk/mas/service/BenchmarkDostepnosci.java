@@ -0,0 +1,141 @@
+package pl.pjatk.mas.service;
+
+import pl.pjatk.mas.dao.KonfiguracjaBazy;
+import pl.pjatk.mas.model.Samochod;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Pomiar wyszukiwania wolnych samochodów na syntetycznej flocie (domyślnie 50 000 samochodów, 2 000 000 rezerwacji):
+ * FlotaService.pobierzDostepneSamochody (indeks dni IndeksDostepnosci) wobec sprawdzania czyDostepny samochód
+ * po samochodzie. Oba sposoby dostają te same losowe terminy; wyniki są porównywane. Uruchomienie, np.:
+ * <pre>
+ * java -Xmx2g -cp klasy pl.pjatk.mas.service.BenchmarkDostepnosci 50000 2000000
+ * </pre>
+ * Baza (stałe ziarno losowania) powstaje przy pierwszym uruchomieniu w katalogu tymczasowym
+ * (albo w katalogu podanym jako trzeci argument) i jest używana ponownie.
+ */
+public final class BenchmarkDostepnosci {
+
+    private static final int ZAPYTANIA = 200;
+    private static final int KLIENCI = 1000;
+    private static final LocalDate POCZATEK = LocalDate.of(2026, 1, 1);
+
+    private BenchmarkDostepnosci() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        int liczbaSamochodow = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int liczbaRezerwacji = args.length > 1 ? Integer.parseInt(args[1]) : 2_000_000;
+        Path katalog = args.length > 2 ? Path.of(args[2]) : Path.of(System.getProperty("java.io.tmpdir"),
+                "mas-benchmark-flota-" + liczbaSamochodow + "-" + liczbaRezerwacji);
+
+        przygotujDane(katalog, liczbaSamochodow, liczbaRezerwacji);
+        KonfiguracjaBazy.setKatalogBazy(katalog.toString());
+        Repozytorium.instancja().przeladuj();
+
+        FlotaService flota = new FlotaService();
+        long start = System.nanoTime();
+        List<Samochod> wszystkie = flota.pobierzWszystkieSamochody();
+        System.out.printf("wczytanie: %d samochodów w %d ms%n", wszystkie.size(), (System.nanoTime() - start) / 1_000_000);
+
+        Random losowe = new Random(7);
+        List<LocalDate[]> terminy = new ArrayList<>();
+        for (int i = 0; i < ZAPYTANIA; i++) {
+            LocalDate od = POCZATEK.plusDays(losowe.nextInt(700));
+            terminy.add(new LocalDate[]{od, od.plusDays(losowe.nextInt(10))});
+        }
+
+        // Rozgrzewka JIT dla obu sposobów.
+        for (int i = 0; i < 3; i++) {
+            for (LocalDate[] t : terminy) {
+                flota.pobierzDostepneSamochody(t[0], t[1]);
+                przegladajFlote(flota.pobierzWszystkieSamochody(), t[0], t[1]);
+            }
+        }
+
+        long czasIndeksu = 0;
+        long czasPrzegladania = 0;
+        for (LocalDate[] t : terminy) {
+            long t0 = System.nanoTime();
+            List<Samochod> zIndeksu = flota.pobierzDostepneSamochody(t[0], t[1]);
+            long t1 = System.nanoTime();
+            List<Samochod> przegladane = przegladajFlote(flota.pobierzWszystkieSamochody(), t[0], t[1]);
+            long t2 = System.nanoTime();
+
+            if (!zIndeksu.equals(przegladane)) {
+                throw new IllegalStateException("Różne wyniki dla terminu " + t[0] + " - " + t[1]);
+            }
+            czasIndeksu += t1 - t0;
+            czasPrzegladania += t2 - t1;
+        }
+
+        System.out.printf("indeks dni: %.3f ms/zapytanie, czyDostepny po kolei: %.3f ms/zapytanie (%d zapytań, wyniki zgodne)%n",
+                czasIndeksu / 1e6 / ZAPYTANIA, czasPrzegladania / 1e6 / ZAPYTANIA, ZAPYTANIA);
+    }
+
+    private static List<Samochod> przegladajFlote(List<Samochod> flota, LocalDate od, LocalDate doDnia) {
+        List<Samochod> wolne = new ArrayList<>();
+        for (Samochod s : flota) {
+            if (s.czyDostepny(od, doDnia)) {
+                wolne.add(s);
+            }
+        }
+        return wolne;
+    }
+
+    private static void przygotujDane(Path katalog, int liczbaSamochodow, int liczbaRezerwacji) throws IOException {
+        if (Files.exists(katalog.resolve("rezerwacje.csv"))) {
+            return;
+        }
+        Files.createDirectories(katalog);
+
+        Files.writeString(katalog.resolve("cenniki.csv"), """
+                id;kategoria;stawkaZaDobe;procentDodatkowyKierowca
+                1;SPORTOWY;300.00;0.25
+                2;MIEJSKI;150.00;0.10
+                3;SUV;220.00;0.15
+                4;LUKSUSOWY;400.00;0.20
+                """, StandardCharsets.UTF_8);
+        Files.writeString(katalog.resolve("dodatki.csv"), """
+                id;nazwa;cena;typRozliczania;kategorie
+                1;Fotelik dziecięcy;30.00;ZA_DOBE;
+                """, StandardCharsets.UTF_8);
+        try (BufferedWriter out = Files.newBufferedWriter(katalog.resolve("uzytkownicy.csv"), StandardCharsets.UTF_8)) {
+            out.write("typ;id;login;haslo;imie;nazwisko;email\n");
+            for (int id = 1; id <= KLIENCI; id++) {
+                out.write("KLIENT;" + id + ";klient" + id + ";haslo;Klient;Testowy;klient" + id + "@example.com\n");
+            }
+        }
+
+        String[] kategorie = {"SPORTOWY", "MIEJSKI", "SUV", "LUKSUSOWY"};
+        try (BufferedWriter out = Files.newBufferedWriter(katalog.resolve("samochody.csv"), StandardCharsets.UTF_8)) {
+            out.write("id;marka;model;numerRejestracyjny;mocKM;rocznik;kategoria;cennikId\n");
+            for (int id = 1; id <= liczbaSamochodow; id++) {
+                int k = id % kategorie.length;
+                out.write(id + ";Marka;Model;WB" + id + ";150;2022;" + kategorie[k] + ";" + (k + 1) + "\n");
+            }
+        }
+
+        Random losowe = new Random(2024);
+        Path tymczasowy = katalog.resolve("rezerwacje.csv.tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(tymczasowy, StandardCharsets.UTF_8)) {
+            out.write("id;klientId;samochodId;dataOd;dataDo;status;cenaCalkowita;dodatkiIds\n");
+            for (int id = 1; id <= liczbaRezerwacji; id++) {
+                LocalDate od = POCZATEK.plusDays(losowe.nextInt(730));
+                String status = losowe.nextInt(10) == 0 ? "ANULOWANA" : "NOWA";
+                out.write(id + ";" + (1 + losowe.nextInt(KLIENCI)) + ";" + (1 + losowe.nextInt(liczbaSamochodow))
+                        + ";" + od + ";" + od.plusDays(losowe.nextInt(7)) + ";" + status + ";300.00;\n");
+            }
+        }
+        Files.move(tymczasowy, katalog.resolve("rezerwacje.csv"));
+    }
+}
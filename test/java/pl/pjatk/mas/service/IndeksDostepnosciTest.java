@@ -0,0 +1,158 @@
+package pl.pjatk.mas.service;
+
+import org.junit.jupiter.api.Test;
+import pl.pjatk.mas.model.KategoriaSamochodu;
+import pl.pjatk.mas.model.Rezerwacja;
+import pl.pjatk.mas.model.Samochod;
+import pl.pjatk.mas.model.StatusRezerwacji;
+
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class IndeksDostepnosciTest {
+
+    private static final LocalDate POCZATEK = LocalDate.of(2030, 1, 1);
+
+    private final IndeksDostepnosci indeks = new IndeksDostepnosci();
+    private final List<Samochod> flota = new ArrayList<>();
+    private final List<Rezerwacja> rezerwacje = new ArrayList<>();
+    private final Random losowe = new Random(24);
+    private long noweId = 1;
+
+    @Test
+    void terminyNaStykuRezerwacji() {
+        Samochod s = dodajSamochod();
+        dodajSamochod();
+        indeks.przebuduj(flota);
+        rezerwuj(s, 10, 14);
+
+        assertEquals(List.of(flota.get(1)), dostepne(14, 14));
+        assertEquals(List.of(flota.get(1)), dostepne(5, 10));
+        assertEquals(flota, dostepne(15, 20));
+        assertEquals(flota, dostepne(9, 9));
+    }
+
+    @Test
+    void anulowanieZwalniaDzienTylkoGdyNieBlokujeGoInnaRezerwacja() {
+        Samochod s = dodajSamochod();
+        indeks.przebuduj(flota);
+        Rezerwacja pierwsza = rezerwuj(s, 10, 14);
+        rezerwuj(s, 12, 20); // przedziały nachodzą na siebie (plik edytowany ręcznie)
+
+        anuluj(pierwsza);
+
+        assertEquals(flota, dostepne(10, 11));
+        assertEquals(List.of(), dostepne(12, 12));
+    }
+
+    @Test
+    void wynikZgodnyZCzyDostepnyPoKazdejZmianie() {
+        for (int i = 0; i < 40; i++) {
+            Samochod s = dodajSamochod();
+            for (int r = losowe.nextInt(6); r > 0; r--) {
+                Rezerwacja rezerwacja = nowaRezerwacja(s, losowyDzien(), losowe.nextInt(8));
+                if (losowe.nextInt(5) == 0) {
+                    rezerwacja.setStatus(StatusRezerwacji.ANULOWANA);
+                }
+                s.dodajRezerwacje(rezerwacja);
+                rezerwacje.add(rezerwacja);
+            }
+        }
+        indeks.przebuduj(flota);
+        porownaj(-1);
+
+        for (int krok = 0; krok < 1500; krok++) {
+            int operacja = losowe.nextInt(10);
+            if (operacja < 4 || rezerwacje.isEmpty()) {
+                long od = losowyDzien();
+                rezerwuj(flota.get(losowe.nextInt(flota.size())), od, od + losowe.nextInt(8));
+            } else if (operacja < 6) {
+                anuluj(rezerwacje.get(losowe.nextInt(rezerwacje.size())));
+            } else if (operacja < 7) {
+                usun(rezerwacje.get(losowe.nextInt(rezerwacje.size())));
+            } else if (operacja < 8) {
+                przesun(rezerwacje.get(losowe.nextInt(rezerwacje.size())));
+            } else if (operacja < 9 && flota.size() > 1) {
+                usunSamochod(flota.get(losowe.nextInt(flota.size())));
+            } else {
+                indeks.dodajSamochod(dodajSamochod());
+            }
+            porownaj(krok);
+        }
+    }
+
+    private void porownaj(int krok) {
+        for (int z = 0; z < 5; z++) {
+            long od = losowe.nextInt(130) - 5;
+            long doDnia = od + losowe.nextInt(12);
+            List<Samochod> wolne = new ArrayList<>();
+            for (Samochod s : flota) {
+                if (s.czyDostepny(POCZATEK.plusDays(od), POCZATEK.plusDays(doDnia))) {
+                    wolne.add(s);
+                }
+            }
+            assertEquals(wolne, dostepne(od, doDnia), "krok " + krok + ", dni " + od + "-" + doDnia);
+        }
+    }
+
+    // Zmiany w tej samej kolejności co w Repozytorium: najpierw samochód, potem indeks dni.
+
+    private Rezerwacja rezerwuj(Samochod s, long od, long doDnia) {
+        Rezerwacja r = nowaRezerwacja(s, od, doDnia - od);
+        s.dodajRezerwacje(r);
+        rezerwacje.add(r);
+        indeks.odswiez(s, r.getDataOd(), r.getDataDo());
+        return r;
+    }
+
+    private void anuluj(Rezerwacja r) {
+        r.setStatus(StatusRezerwacji.ANULOWANA);
+        r.getSamochod().odswiezTermin(r);
+        indeks.odswiez(r.getSamochod(), r.getDataOd(), r.getDataDo());
+    }
+
+    private void usun(Rezerwacja r) {
+        rezerwacje.remove(r);
+        r.getSamochod().usunRezerwacje(r);
+        indeks.odswiez(r.getSamochod(), r.getDataOd(), r.getDataDo());
+    }
+
+    private void przesun(Rezerwacja stara) {
+        Samochod s = stara.getSamochod();
+        Rezerwacja nowa = nowaRezerwacja(s, losowyDzien(), losowe.nextInt(8));
+        usun(stara);
+        s.dodajRezerwacje(nowa);
+        rezerwacje.add(nowa);
+        indeks.odswiez(s, nowa.getDataOd(), nowa.getDataDo());
+    }
+
+    private void usunSamochod(Samochod s) {
+        flota.remove(s);
+        rezerwacje.removeIf(r -> r.getSamochod() == s);
+        indeks.usunSamochod(s);
+    }
+
+    private Samochod dodajSamochod() {
+        long id = noweId++;
+        Samochod s = new Samochod(id, "Marka", "Model", "WB" + id, 150, Year.of(2022), KategoriaSamochodu.MIEJSKI);
+        flota.add(s);
+        return s;
+    }
+
+    private Rezerwacja nowaRezerwacja(Samochod s, long od, long dlugosc) {
+        return new Rezerwacja(noweId++, null, s, POCZATEK.plusDays(od), POCZATEK.plusDays(od + dlugosc));
+    }
+
+    private long losowyDzien() {
+        return losowe.nextInt(120);
+    }
+
+    private List<Samochod> dostepne(long od, long doDnia) {
+        return indeks.dostepne(POCZATEK.plusDays(od), POCZATEK.plusDays(doDnia));
+    }
+}
@@ -0,0 +1,128 @@
+package pl.pjatk.mas.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import pl.pjatk.mas.dao.BazaTestowa;
+import pl.pjatk.mas.dao.KonfiguracjaBazy;
+import pl.pjatk.mas.model.Dodatek;
+import pl.pjatk.mas.model.KategoriaSamochodu;
+import pl.pjatk.mas.model.Klient;
+import pl.pjatk.mas.model.Rezerwacja;
+import pl.pjatk.mas.model.Samochod;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RepozytoriumTest {
+
+    private static final LocalDate OD = LocalDate.of(2030, 5, 1);
+    private static final LocalDate DO = LocalDate.of(2030, 5, 3);
+
+    @TempDir
+    Path katalog;
+
+    private BazaTestowa baza;
+    private final Repozytorium repozytorium = Repozytorium.instancja();
+    private final RezerwacjaService rezerwacje = new RezerwacjaService();
+
+    @BeforeEach
+    void przygotuj() throws IOException {
+        baza = BazaTestowa.utworz(katalog);
+        repozytorium.przeladuj();
+    }
+
+    @AfterEach
+    void sprzataj() {
+        baza.close();
+        repozytorium.przeladuj();
+    }
+
+    @Test
+    void idUsunietejRezerwacjiNieJestNadawanePonowniePoPrzeladowaniu() {
+        KonfiguracjaBazy.setDziennikRezerwacji(true);
+
+        Rezerwacja pierwsza = zarezerwuj();
+        assertEquals(6L, pierwsza.getId());
+        rezerwacje.usunRezerwacje(6L);
+
+        repozytorium.przeladuj();
+        Rezerwacja druga = zarezerwuj();
+        assertEquals(7L, druga.getId());
+
+        repozytorium.przeladuj();
+        assertNull(repozytorium.rezerwacja(6L));
+        assertNotNull(repozytorium.rezerwacja(7L));
+        assertEquals(List.of(1L, 3L, 5L, 7L), idsKlienta(1L));
+    }
+
+    @Test
+    void leniweRelacjeDajaTenSamGrafCoPelneWczytanie() throws IOException {
+        List<String> pelne = przebiegZmian(false);
+        List<String> leniwe = przebiegZmian(true);
+
+        assertEquals(pelne, leniwe);
+        // Wiersze bez klienta (brak ID 99, pracownik 2) i bez samochodu (ID 9) są pomijane w obu trybach.
+        assertEquals("rezerwacje: [1, 2, 3, 4, 5, 8]", pelne.get(0));
+    }
+
+    /**
+     * Wczytuje bazę z wierszami bez klienta lub samochodu, zmienia samochód i usuwa dodatek; po każdym kroku zapisuje
+     * opis grafu. Każdy tryb dostaje własną kopię bazy, bo zmiany trafiają do plików.
+     */
+    private List<String> przebiegZmian(boolean leniwe) throws IOException {
+        Path katalogTrybu = Files.createDirectory(katalog.resolve(leniwe ? "leniwe" : "pelne"));
+        try (BazaTestowa bazaTrybu = BazaTestowa.utworz(katalogTrybu)) {
+            bazaTrybu.dopisz("rezerwacje.csv", "6;99;1;2030-06-01;2030-06-02;NOWA;600.00;");
+            bazaTrybu.dopisz("rezerwacje.csv", "7;2;2;2030-06-01;2030-06-02;NOWA;300.00;1");
+            bazaTrybu.dopisz("rezerwacje.csv", "8;3;1;2030-06-10;2030-06-12;NOWA;900.00;2,7");
+            bazaTrybu.dopisz("rezerwacje.csv", "9;1;9;2030-06-10;2030-06-12;NOWA;900.00;");
+            KonfiguracjaBazy.setLeniweRelacje(leniwe);
+            repozytorium.przeladuj();
+
+            List<String> opis = new ArrayList<>();
+            opis.add("rezerwacje: " + repozytorium.rezerwacje().stream().map(Rezerwacja::getId).toList());
+            opisz(opis);
+
+            new FlotaService().aktualizujSamochod(1L, "BMW", "M4", "WX12345", 510, Year.of(2023),
+                    KategoriaSamochodu.SPORTOWY);
+            opisz(opis);
+
+            repozytorium.usunDodatek(1L);
+            opisz(opis);
+            return opis;
+        }
+    }
+
+    private void opisz(List<String> opis) {
+        for (Rezerwacja r : repozytorium.rezerwacje()) {
+            opis.add(r.getId() + ": klient=" + r.getKlient().getLogin() + ", samochod=" + r.getSamochod()
+                    + ", dodatki=" + r.getDodatki().stream().map(Dodatek::getNazwa).toList()
+                    + ", " + r.getDataOd() + " - " + r.getDataDo() + ", " + r.getStatus() + ", " + r.getCenaCalkowita());
+        }
+        for (Samochod s : repozytorium.samochody()) {
+            opis.add(s + ": " + s.getRezerwacje().stream().map(Rezerwacja::getId).toList());
+        }
+        opis.add("klient 1: " + idsKlienta(1L) + ", klient 3: " + idsKlienta(3L));
+        opis.add("wolne 2030-01-12: " + repozytorium.dostepneSamochody(LocalDate.of(2030, 1, 12), LocalDate.of(2030, 1, 12)));
+    }
+
+    private Rezerwacja zarezerwuj() {
+        Klient klient = (Klient) repozytorium.uzytkownikPoLoginie("klient");
+        return rezerwacje.utworzRezerwacje(klient, repozytorium.samochod(1L), OD, DO, List.of());
+    }
+
+    private List<Long> idsKlienta(long klientId) {
+        return repozytorium.rezerwacjeKlienta(klientId).stream().map(Rezerwacja::getId).toList();
+    }
+}